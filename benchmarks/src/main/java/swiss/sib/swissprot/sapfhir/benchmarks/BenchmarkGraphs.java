@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.benchmarks;
+
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ * Builds the graphs the benchmarks run against, using the default settings of
+ * the {@link SyntheticPangenomeGenerator}.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class BenchmarkGraphs {
+
+	/**
+	 * The base used for all IRIs in the benchmarks
+	 */
+	static final String BASE = "http://example.org/vg/";
+
+	private BenchmarkGraphs() {
+
+	}
+
+	/**
+	 * Build a graph with the given number of nodes, always the same for the same
+	 * node count.
+	 * 
+	 * @param nodeCount the number of nodes in the graph
+	 * @return a new graph
+	 */
+	static SimplePathGraph build(int nodeCount) {
+		return SyntheticPangenomeGenerator.ofSize(nodeCount).build();
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.benchmarks;
+
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+
+import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+
+/**
+ * A fixed set of representative queries, run against the graphs from
+ * {@link BenchmarkGraphs}.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+enum BenchmarkQueries {
+	/**
+	 * README: the ten most forward to forward connected nodes
+	 */
+	MOST_CONNECTED_NODES("""
+			SELECT ?node
+			WHERE {
+			  ?node vg:linksForwardToForward ?node2 .
+			}
+			GROUP BY ?node
+			ORDER BY (COUNT(?node2))
+			LIMIT 10"""),
+	/**
+	 * README: count the sequences of length 1
+	 */
+	LENGTH_ONE_SEQUENCES("""
+			SELECT (COUNT(?n) AS ?c)
+			WHERE {
+			  ?n rdf:value ?sequence .
+			  FILTER(strlen(?sequence) = 1)
+			}"""),
+	/**
+	 * README: count the sequences with an R ambiguous nucleotide code
+	 */
+	CONTAINS_AMBIGUOUS("""
+			SELECT (COUNT(?n) AS ?c)
+			WHERE {
+			  ?n rdf:value ?sequence .
+			  FILTER(contains(?sequence, 'r'))
+			}"""),
+	/**
+	 * README: list all paths with their labels
+	 */
+	PATH_LISTING("""
+			SELECT ?path ?pathLabel
+			WHERE {
+			  ?path a vg:Path ;
+			        rdfs:label ?pathLabel .
+			}"""),
+	/**
+	 * The degree of every node, grouped over the links
+	 */
+	LINK_DEGREE("""
+			SELECT ?node (COUNT(?other) AS ?degree)
+			WHERE {
+			  ?node vg:links ?other .
+			}
+			GROUP BY ?node"""),
+	/**
+	 * All steps of one path with their rank
+	 */
+	STEPS_OF_PATH("""
+			SELECT ?step ?rank
+			WHERE {
+			  ?step vg:path <http://example.org/vg/path/sample0#1#chr1> ;
+			        vg:rank ?rank .
+			}"""),
+	/**
+	 * The node of a step given by its IRI
+	 */
+	NODE_OF_STEP("""
+			SELECT ?node
+			WHERE {
+			  <http://example.org/vg/path/sample0#1#chr1/step/1000> vg:node ?node .
+			}"""),
+	/**
+	 * The steps at a rank
+	 */
+	STEP_BY_RANK("""
+			SELECT ?step ?path
+			WHERE {
+			  ?step vg:rank 1000 ;
+			        vg:path ?path .
+			}"""),
+	/**
+	 * The steps visiting a node
+	 */
+	STEPS_ON_NODE("""
+			SELECT ?step
+			WHERE {
+			  ?step vg:node <http://example.org/vg/node/1000> .
+			}"""),
+	/**
+	 * The steps in a region of a path
+	 */
+	STEPS_IN_REGION("""
+			SELECT ?step ?position
+			WHERE {
+			  ?step faldo:begin ?begin .
+			  ?begin faldo:position ?position ;
+			         faldo:reference <http://example.org/vg/path/sample0#1#chr1> .
+			  FILTER(?position >= 1000 && ?position < 2000)
+			}"""),
+	/**
+	 * Begin and end positions of the steps of a node
+	 */
+	POSITIONS_OF_NODE("""
+			SELECT ?step ?begin ?end
+			WHERE {
+			  ?step vg:node <http://example.org/vg/node/1000> ;
+			        faldo:begin/faldo:position ?begin ;
+			        faldo:end/faldo:position ?end .
+			}""");
+
+	private static final String PREFIXES = "PREFIX vg:<" + VG.NAMESPACE + ">\n" + "PREFIX faldo:<" + FALDO.NAMESPACE
+			+ ">\n" + "PREFIX rdf:<" + RDF.NAMESPACE + ">\n" + "PREFIX rdfs:<" + RDFS.NAMESPACE + ">\n";
+
+	private final String query;
+
+	BenchmarkQueries(String query) {
+		this.query = query;
+	}
+
+	/**
+	 * @return the query with all prefixes declared
+	 */
+	String query() {
+		return PREFIXES + query;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler always enabled, so that every
+ * result reports the bytes allocated next to the throughput. Accepts the normal
+ * JMH command line options.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+
+	}
+
+	/**
+	 * @param args JMH command line options e.g. a benchmark regex or -p nodes=10000
+	 * @throws RunnerException            if a benchmark fails
+	 * @throws CommandLineOptionException if the options can not be parsed
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		var commandLine = new CommandLineOptions(args);
+		var options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
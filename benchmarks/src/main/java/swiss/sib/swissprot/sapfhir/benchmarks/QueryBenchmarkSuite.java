@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.explanation.Explanation;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+
+/**
+ * A standalone runner for the {@link BenchmarkQueries}. For each query it
+ * writes the optimized plan to "query_name.plan.txt" and a line with the
+ * latency percentiles and results per second to "timings.tsv", both in the
+ * output directory. Comparing the plans between two runs shows query planning
+ * regressions even when the timings are noisy.
+ * 
+ * Usage: QueryBenchmarkSuite [nodes] [repetitions] [output directory]
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class QueryBenchmarkSuite {
+
+	private static final int WARMUPS = 3;
+
+	private QueryBenchmarkSuite() {
+
+	}
+
+	/**
+	 * @param args the node count, number of repetitions and output directory
+	 * @throws IOException if the results can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		Path output = Path.of(args.length > 2 ? args[2] : "query-benchmark-results");
+		Files.createDirectories(output);
+
+		var repository = new SailRepository(
+				new PathHandleGraphSail<>(BenchmarkGraphs.build(nodes), BenchmarkGraphs.BASE));
+		try (RepositoryConnection connection = repository.getConnection();
+				PrintWriter timings = new PrintWriter(
+						Files.newBufferedWriter(output.resolve("timings.tsv"), StandardCharsets.UTF_8))) {
+			timings.println("query\tnodes\trepetitions\tresults\tp50_ms\tp90_ms\tp99_ms\tmax_ms\tresults_per_s");
+			for (BenchmarkQueries query : BenchmarkQueries.values()) {
+				TupleQuery tupleQuery = connection.prepareTupleQuery(QueryLanguage.SPARQL, query.query());
+				Explanation plan = tupleQuery.explain(Explanation.Level.Optimized);
+				Files.writeString(output.resolve(query.name() + ".plan.txt"), plan.toString(),
+						StandardCharsets.UTF_8);
+
+				for (int i = 0; i < WARMUPS; i++) {
+					count(tupleQuery);
+				}
+				long[] nanos = new long[repetitions];
+				long results = 0;
+				for (int i = 0; i < repetitions; i++) {
+					long start = System.nanoTime();
+					results = count(tupleQuery);
+					nanos[i] = System.nanoTime() - start;
+				}
+				Arrays.sort(nanos);
+				double totalSeconds = Arrays.stream(nanos).sum() / 1e9;
+				String line = String.format(Locale.ROOT, "%s\t%d\t%d\t%d\t%.3f\t%.3f\t%.3f\t%.3f\t%.1f", query.name(),
+						nodes, repetitions, results, millis(percentile(nanos, 50)), millis(percentile(nanos, 90)),
+						millis(percentile(nanos, 99)), millis(nanos[nanos.length - 1]),
+						results * repetitions / totalSeconds);
+				timings.println(line);
+				timings.flush();
+				System.out.println(line);
+			}
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	private static long count(TupleQuery tupleQuery) {
+		long results = 0;
+		try (TupleQueryResult result = tupleQuery.evaluate()) {
+			while (result.hasNext()) {
+				result.next();
+				results++;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Nearest rank percentile of a sorted array
+	 */
+	private static long percentile(long[] sorted, int percentile) {
+		int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+
+/**
+ * Runs the {@link BenchmarkQueries} end to end through a SailRepository. The
+ * sample time mode reports the latency percentiles, the results counter the
+ * results per second.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx32g" })
+public class SparqlQueryBenchmark {
+
+	@Param({ "10000", "1000000" })
+	private int nodes;
+
+	@Param
+	private BenchmarkQueries query;
+
+	private SailRepository repository;
+	private RepositoryConnection connection;
+
+	/**
+	 * Counts the results returned, reported as results per second.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class ResultCounter {
+		/**
+		 * Results seen in this iteration
+		 */
+		public long results;
+
+		/**
+		 * Start counting from zero for each iteration
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			results = 0;
+		}
+	}
+
+	/**
+	 * Build the graph and open a connection to it
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		repository = new SailRepository(new PathHandleGraphSail<>(BenchmarkGraphs.build(nodes), BenchmarkGraphs.BASE));
+		connection = repository.getConnection();
+	}
+
+	/**
+	 * Close the connection and the repository
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		connection.close();
+		repository.shutDown();
+	}
+
+	/**
+	 * Evaluate the query and consume all results
+	 * 
+	 * @param counter   to count the results
+	 * @param blackhole to consume the results
+	 */
+	@Benchmark
+	public void evaluate(ResultCounter counter, Blackhole blackhole) {
+		try (TupleQueryResult result = connection.prepareTupleQuery(QueryLanguage.SPARQL, query.query())
+				.evaluate()) {
+			while (result.hasNext()) {
+				blackhole.consume(result.next());
+				counter.results++;
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleEdgeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleStepHandle;
+import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+import swiss.sib.swissprot.sapfhir.statements.NodeRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.PathRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StepPositionStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StepRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.values.NodeIRI;
+import swiss.sib.swissprot.sapfhir.values.PathIRI;
+import swiss.sib.swissprot.sapfhir.values.StepBeginPositionIRI;
+import swiss.sib.swissprot.sapfhir.values.StepIRI;
+
+/**
+ * Measures {@link StatementProvider#getStatements(Resource, IRI, Value)} for
+ * each provider and each combination of bound and unbound subject, predicate
+ * and object.
+ * 
+ * The pattern parameter has one character per position, a letter when it is
+ * bound and a '?' when it is not. e.g. "s?o" binds the subject and the object.
+ * Run with the gc profiler (see {@link BenchmarkRunner}) and divide
+ * gc.alloc.rate.norm by the statements per operation to get the bytes
+ * allocated per statement.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx32g" })
+public class StatementProviderBenchmark {
+
+	@Param({ "10000", "1000000", "10000000" })
+	private int nodes;
+
+	@Param({ "node", "step", "position", "path" })
+	private String provider;
+
+	@Param({ "???", "s??", "?p?", "??o", "sp?", "s?o", "?po", "spo" })
+	private String pattern;
+
+	private StatementProvider statementProvider;
+	private Resource subject;
+	private IRI predicate;
+	private Value object;
+
+	/**
+	 * Counts the statements generated, so that allocation can be normalized per
+	 * statement instead of per operation.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class StatementCounter {
+		/**
+		 * Statements seen in this iteration
+		 */
+		public long statements;
+
+		/**
+		 * Start counting from zero for each iteration
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			statements = 0;
+		}
+	}
+
+	/**
+	 * Build the graph and select the sample subject, predicate and object.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		SimplePathGraph graph = BenchmarkGraphs.build(nodes);
+		var sail = new PathHandleGraphSail<>(graph, BenchmarkGraphs.BASE);
+		SimplePathHandle path;
+		try (var paths = graph.paths()) {
+			path = paths.next();
+		}
+		long rank = graph.stepCount() / 4;
+		Resource sampleSubject;
+		IRI samplePredicate;
+		switch (provider) {
+		case "node":
+			statementProvider = new NodeRelatedStatementProvider<>(sail);
+			sampleSubject = new NodeIRI<>(nodes / 2, sail);
+			samplePredicate = VG.linksForwardToForward;
+			break;
+		case "step":
+			statementProvider = new StepRelatedStatementProvider<>(sail);
+			sampleSubject = new StepIRI<>(path, rank, sail);
+			samplePredicate = VG.node;
+			break;
+		case "position":
+			statementProvider = new StepPositionStatementProvider<>(sail);
+			sampleSubject = new StepBeginPositionIRI<SimplePathHandle, SimpleStepHandle>(path, rank, sail);
+			samplePredicate = FALDO.position;
+			break;
+		case "path":
+			statementProvider = new PathRelatedStatementProvider<>(sail);
+			sampleSubject = new PathIRI<>(path, sail);
+			samplePredicate = RDFS.LABEL;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown provider: " + provider);
+		}
+		Value sampleObject = sampleObject(sampleSubject, samplePredicate);
+		subject = pattern.charAt(0) == '?' ? null : sampleSubject;
+		predicate = pattern.charAt(1) == '?' ? null : samplePredicate;
+		object = pattern.charAt(2) == '?' ? null : sampleObject;
+	}
+
+	private Value sampleObject(Resource sampleSubject, IRI samplePredicate) {
+		try (AutoClosedIterator<Statement> statements = statementProvider.getStatements(sampleSubject,
+				samplePredicate, null)) {
+			if (statements.hasNext()) {
+				return statements.next().getObject();
+			}
+		}
+		throw new IllegalStateException(
+				"No sample object for " + sampleSubject + ' ' + samplePredicate + " in " + provider);
+	}
+
+	/**
+	 * Consume all statements matching the pattern
+	 * 
+	 * @param counter to count the statements
+	 * @param blackhole to consume the statements
+	 */
+	@Benchmark
+	public void getStatements(StatementCounter counter, Blackhole blackhole) {
+		try (AutoClosedIterator<Statement> statements = statementProvider.getStatements(subject, predicate,
+				object)) {
+			while (statements.hasNext()) {
+				blackhole.consume(statements.next());
+				counter.statements++;
+			}
+		}
+	}
+}
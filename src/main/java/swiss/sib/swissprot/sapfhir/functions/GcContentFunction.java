@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.functions;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+
+/**
+ * <code>vg:gcContent(?sequence)</code> the fraction of G, C and S bases in a
+ * sequence, ignoring case. Gives an error for an empty sequence.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class GcContentFunction extends SequenceFunction {
+
+	/**
+	 * The function as vg:gcContent
+	 */
+	public GcContentFunction() {
+		super("gcContent");
+	}
+
+	@Override
+	public Value evaluate(TripleSource tripleSource, Value... args) throws ValueExprEvaluationException {
+		ValueFactory vf = tripleSource.getValueFactory();
+		if (args.length != 1) {
+			throw new ValueExprEvaluationException("gcContent expects one argument, got " + args.length);
+		}
+		Bases bases = basesOf("gcContent", args[0]);
+		int length = bases.length();
+		if (length == 0) {
+			throw new ValueExprEvaluationException("gcContent of an empty sequence");
+		}
+		int gc = 0;
+		for (int i = 0; i < length; i++) {
+			switch (bases.byteAt(i)) {
+			case 'g', 'G', 'c', 'C', 's', 'S' -> gc++;
+			default -> {
+			}
+			}
+		}
+		return vf.createLiteral((double) gc / length);
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.functions;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+
+/**
+ * <code>vg:kmerCount(?sequence, "ACGT")</code> how often a k-mer occurs in a
+ * sequence, counting overlapping occurrences and ignoring case.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class KmerCountFunction extends SequenceFunction {
+
+	/**
+	 * The function as vg:kmerCount
+	 */
+	public KmerCountFunction() {
+		super("kmerCount");
+	}
+
+	@Override
+	public Value evaluate(TripleSource tripleSource, Value... args) throws ValueExprEvaluationException {
+		ValueFactory vf = tripleSource.getValueFactory();
+		if (args.length != 2) {
+			throw new ValueExprEvaluationException("kmerCount expects two arguments, got " + args.length);
+		}
+		Bases bases = basesOf("kmerCount", args[0]);
+		Bases kmer = basesOf("kmerCount", args[1]);
+		int k = kmer.length();
+		if (k == 0) {
+			throw new ValueExprEvaluationException("kmerCount of an empty k-mer");
+		}
+		long count = 0;
+		for (int i = 0; i + k <= bases.length(); i++) {
+			int j = 0;
+			while (j < k && upper(bases.byteAt(i + j)) == upper(kmer.byteAt(j))) {
+				j++;
+			}
+			if (j == k) {
+				count++;
+			}
+		}
+		return vf.createLiteral(count);
+	}
+
+	private static int upper(byte base) {
+		return base >= 'a' && base <= 'z' ? base - ('a' - 'A') : base;
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.functions;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+
+/**
+ * <code>vg:reverseComplement(?sequence)</code> the sequence of the other
+ * strand, keeping the case and the IUPAC ambiguity codes of each base.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class ReverseComplementFunction extends SequenceFunction {
+
+	private static final byte[] COMPLEMENT = new byte[128];
+	static {
+		for (int i = 0; i < COMPLEMENT.length; i++) {
+			COMPLEMENT[i] = (byte) i;
+		}
+		String from = "ACGTURYKMBVDHacgturykmbvdh";
+		String to = "TGCAAYRMKVBHDtgcaayrmkvbhd";
+		for (int i = 0; i < from.length(); i++) {
+			COMPLEMENT[from.charAt(i)] = (byte) to.charAt(i);
+		}
+	}
+
+	/**
+	 * The function as vg:reverseComplement
+	 */
+	public ReverseComplementFunction() {
+		super("reverseComplement");
+	}
+
+	@Override
+	public Value evaluate(TripleSource tripleSource, Value... args) throws ValueExprEvaluationException {
+		ValueFactory vf = tripleSource.getValueFactory();
+		if (args.length != 1) {
+			throw new ValueExprEvaluationException("reverseComplement expects one argument, got " + args.length);
+		}
+		Bases bases = basesOf("reverseComplement", args[0]);
+		int length = bases.length();
+		byte[] reverse = new byte[length];
+		for (int i = 0; i < length; i++) {
+			byte base = bases.byteAt(i);
+			reverse[length - 1 - i] = base >= 0 ? COMPLEMENT[base] : base;
+		}
+		return sequenceLiteral(vf, reverse);
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.functions;
+
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XSD;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.function.Function;
+
+import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
+import io.github.jervenbolleman.handlegraph4j.sequences.SequenceType;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.values.SequenceLiteral;
+import swiss.sib.swissprot.sapfhir.values.SequenceLiteralWithNodeHandle;
+
+/**
+ * A SPARQL function in the vg namespace that works on the bases of a
+ * sequence. Node sequences are read from their Sequence object, byte by byte,
+ * without turning them into a String first. Any other plain string literal
+ * works too. The functions are registered through
+ * META-INF/services, like the functions that come with rdf4j.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public abstract class SequenceFunction implements Function {
+
+	private final String uri;
+
+	/**
+	 * @param localName of the function in the vg namespace
+	 */
+	protected SequenceFunction(String localName) {
+		this.uri = VG.NAMESPACE + localName;
+	}
+
+	@Override
+	public String getURI() {
+		return uri;
+	}
+
+	@Override
+	public abstract Value evaluate(TripleSource tripleSource, Value... args) throws ValueExprEvaluationException;
+
+	/**
+	 * The sequence functions only use the value factory of the triple source, so
+	 * callers without one can still use them this way.
+	 */
+	@Deprecated
+	@Override
+	public Value evaluate(ValueFactory vf, Value... args) throws ValueExprEvaluationException {
+		return evaluate(new ValuesOnly(vf), args);
+	}
+
+	/**
+	 * A triple source without any statements
+	 */
+	private record ValuesOnly(ValueFactory vf) implements TripleSource {
+
+		@Override
+		public CloseableIteration<? extends Statement> getStatements(Resource subj, IRI pred, Value obj,
+				Resource... contexts) {
+			return TripleSource.EMPTY_ITERATION;
+		}
+
+		@Override
+		public ValueFactory getValueFactory() {
+			return vf;
+		}
+	}
+
+	/**
+	 * @param function the name to use in errors
+	 * @param value    that should be a sequence
+	 * @return the bases of the value
+	 * @throws ValueExprEvaluationException if the value is not a plain string
+	 */
+	static Bases basesOf(String function, Value value) {
+		if (value instanceof SequenceLiteral<?, ?> sl) {
+			return Bases.of(sl.s());
+		} else if (value instanceof SequenceLiteralWithNodeHandle<?, ?> slwnh) {
+			return Bases.of(slwnh.sequence());
+		} else if (value instanceof Literal literal && literal.getLanguage().isEmpty()
+				&& XSD.STRING.equals(literal.getDatatype())) {
+			return Bases.of(literal.getLabel());
+		}
+		throw new ValueExprEvaluationException(function + " expects a sequence but got: " + value);
+	}
+
+	/**
+	 * @param function the name to use in errors
+	 * @param value    that should be a whole number
+	 * @return the number
+	 * @throws ValueExprEvaluationException if the value is not a number
+	 */
+	static long wholeNumber(String function, Value value) {
+		if (value instanceof Literal literal) {
+			try {
+				return literal.longValue();
+			} catch (NumberFormatException e) {
+				throw new ValueExprEvaluationException(function + " expects a whole number but got: " + value, e);
+			}
+		}
+		throw new ValueExprEvaluationException(function + " expects a whole number but got: " + value);
+	}
+
+	/**
+	 * A sequence literal for bases that are not in the graph
+	 * 
+	 * @param vf    to create a plain literal if the bases are not a DNA
+	 *              sequence
+	 * @param bases the ASCII bases
+	 * @return the literal
+	 */
+	static Literal sequenceLiteral(ValueFactory vf, byte[] bases) {
+		String label = new String(bases, StandardCharsets.US_ASCII);
+		if (Sequence.stringCanBeDNASequence(label)) {
+			Sequence sequence = SequenceType.fromByteArray(bases);
+			if (sequence != null) {
+				return new SequenceLiteral<>(sequence);
+			}
+		}
+		return vf.createLiteral(label);
+	}
+
+	/**
+	 * The bases of a sequence or a string, read one at a time.
+	 */
+	interface Bases {
+		/**
+		 * @return the number of bases
+		 */
+		int length();
+
+		/**
+		 * @param index of the base
+		 * @return the ASCII byte of the base
+		 */
+		byte byteAt(int index);
+
+		static Bases of(Sequence sequence) {
+			return new Bases() {
+
+				@Override
+				public int length() {
+					return sequence.length();
+				}
+
+				@Override
+				public byte byteAt(int index) {
+					return sequence.byteAt(index);
+				}
+			};
+		}
+
+		static Bases of(String string) {
+			byte[] bytes = string.getBytes(StandardCharsets.US_ASCII);
+			return new Bases() {
+
+				@Override
+				public int length() {
+					return bytes.length;
+				}
+
+				@Override
+				public byte byteAt(int index) {
+					return bytes[index];
+				}
+			};
+		}
+	}
+}
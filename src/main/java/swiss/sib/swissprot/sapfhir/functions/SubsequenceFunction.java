@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.functions;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+
+/**
+ * <code>vg:subsequence(?sequence, start [, length])</code> part of a sequence,
+ * counting from 1 like the SPARQL SUBSTR function. Only the requested bases are
+ * read.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SubsequenceFunction extends SequenceFunction {
+
+	/**
+	 * The function as vg:subsequence
+	 */
+	public SubsequenceFunction() {
+		super("subsequence");
+	}
+
+	@Override
+	public Value evaluate(TripleSource tripleSource, Value... args) throws ValueExprEvaluationException {
+		ValueFactory vf = tripleSource.getValueFactory();
+		if (args.length < 2 || args.length > 3) {
+			throw new ValueExprEvaluationException("subsequence expects two or three arguments, got " + args.length);
+		}
+		Bases bases = basesOf("subsequence", args[0]);
+		long start = wholeNumber("subsequence", args[1]) - 1;
+		long end = bases.length();
+		if (args.length == 3) {
+			end = Math.min(end, start + wholeNumber("subsequence", args[2]));
+		}
+		start = Math.max(0, start);
+		byte[] part = new byte[(int) Math.max(0, end - start)];
+		for (int i = 0; i < part.length; i++) {
+			part[i] = bases.byteAt((int) start + i);
+		}
+		return sequenceLiteral(vf, part);
+	}
+}
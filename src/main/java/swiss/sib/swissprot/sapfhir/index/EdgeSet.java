@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import java.util.Arrays;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.HandleGraph;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+
+/**
+ * All edges of a graph as (left, right) pairs of node handles in their long
+ * form, in an open addressing hash table. Checks if an edge exists in constant
+ * time instead of following all edges of a node.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public final class EdgeSet {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final long MAX_EDGES = 1 << 29;
+	private final long[] lefts;
+	private final long[] rights;
+	private final int mask;
+	private int size;
+
+	private EdgeSet(int capacity) {
+		this.lefts = new long[capacity];
+		this.rights = new long[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(lefts, EMPTY);
+	}
+
+	/**
+	 * Read all edges of the graph
+	 * 
+	 * @param <N>   the type of NodeHandle
+	 * @param <E>   the type of EdgeHandle
+	 * @param graph to read the edges of
+	 * @return the set of edges
+	 */
+	public static <N extends NodeHandle, E extends EdgeHandle<N>> EdgeSet build(HandleGraph<N, E> graph) {
+		EdgeSet set = new EdgeSet(capacityFor(graph.edgeCount()));
+		try (AutoClosedIterator<E> edges = graph.edges()) {
+			while (edges.hasNext()) {
+				E edge = edges.next();
+				set = set.add(graph.asLong(edge.left()), graph.asLong(edge.right()));
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * @param edgeCount of a graph
+	 * @return true if that many edges can be kept in an edge set
+	 */
+	public static boolean fits(long edgeCount) {
+		return edgeCount <= MAX_EDGES;
+	}
+
+	private static int capacityFor(long edgeCount) {
+		if (!fits(edgeCount)) {
+			throw new IllegalStateException("Too many edges to keep in an edge set: " + edgeCount);
+		}
+		// At most half full
+		return Integer.highestOneBit((int) Math.max(1, edgeCount) * 2 - 1) << 1;
+	}
+
+	/**
+	 * @return this set, or a larger copy if the edge count of the graph was too
+	 *         low
+	 */
+	private EdgeSet add(long left, long right) {
+		int slot = slot(left, right, mask);
+		while (lefts[slot] != EMPTY) {
+			if (lefts[slot] == left && rights[slot] == right) {
+				return this;
+			}
+			slot = (slot + 1) & mask;
+		}
+		lefts[slot] = left;
+		rights[slot] = right;
+		size++;
+		if (size * 2 > lefts.length) {
+			EdgeSet larger = new EdgeSet(capacityFor(size * 2L));
+			for (int i = 0; i < lefts.length; i++) {
+				if (lefts[i] != EMPTY) {
+					larger.add(lefts[i], rights[i]);
+				}
+			}
+			return larger;
+		}
+		return this;
+	}
+
+	/**
+	 * @param left  the long form of the node handle on the left of the edge
+	 * @param right the long form of the node handle on the right of the edge
+	 * @return true if the graph has the edge from left to right
+	 */
+	public boolean contains(long left, long right) {
+		int slot = slot(left, right, mask);
+		while (lefts[slot] != EMPTY) {
+			if (lefts[slot] == left && rights[slot] == right) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of distinct edges
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static int slot(long left, long right, int mask) {
+		long h = left * 0x9E3779B97F4A7C15L + right;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return (int) h & mask;
+	}
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+
+/**
+ * For every node the steps that visit it, kept apart for steps on the forward
+ * and on the reverse strand of the node.
+ * 
+ * The steps of a node are sorted by path and rank, and stored as variable
+ * length encoded differences between consecutive (path, rank) pairs packed in
+ * a long. Steps of the same path are therefore mostly one or two bytes. The
+ * encoded steps are kept in pages addressed by a long offset, as a large graph
+ * has more of them than fit in one array.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ */
+public final class NodeStepIndex<P extends PathHandle> {
+
+	private static final int RANK_BITS = 40;
+	private static final long RANK_MASK = (1L << RANK_BITS) - 1;
+	private static final int PAGE_BITS = 30;
+
+	/**
+	 * Creates the value for a step that is found in the index.
+	 *
+	 * @param <P> the type of PathHandle
+	 * @param <T> the type of value
+	 */
+	@FunctionalInterface
+	public interface StepFactory<P extends PathHandle, T> {
+		/**
+		 * @param path the step is on
+		 * @param rank of the step
+		 * @return a value for the step
+		 */
+		T create(P path, long rank);
+	}
+
+	private final List<P> paths;
+	private final long[] nodeIds;
+	private final boolean denseNodeIds;
+	private final Strand forward;
+	private final Strand reverse;
+
+	private NodeStepIndex(List<P> paths, long[] nodeIds, Strand forward, Strand reverse) {
+		this.paths = paths;
+		this.nodeIds = nodeIds;
+		this.denseNodeIds = isDense(nodeIds);
+		this.forward = forward;
+		this.reverse = reverse;
+	}
+
+	/**
+	 * The steps visiting one strand of all nodes
+	 * 
+	 * @param offsets where the steps of a node start in the encoded steps
+	 * @param counts  how many steps visit a node
+	 * @param steps   the encoded steps
+	 */
+	private record Strand(long[] offsets, int[] counts, Pages steps) {
+
+	}
+
+	/**
+	 * Bytes addressed by a long, in pages of 2^bits bytes
+	 */
+	private static final class Pages {
+		private final byte[][] pages;
+		private final int bits;
+		private final long mask;
+
+		Pages(long size, int bits) {
+			this.bits = bits;
+			this.mask = (1L << bits) - 1;
+			this.pages = new byte[Math.toIntExact((size + mask) >>> bits)][];
+			for (int i = 0; i < pages.length; i++) {
+				pages[i] = new byte[(int) Math.min(1L << bits, size - ((long) i << bits))];
+			}
+		}
+
+		byte get(long at) {
+			return pages[(int) (at >>> bits)][(int) (at & mask)];
+		}
+
+		void set(long at, byte value) {
+			pages[(int) (at >>> bits)][(int) (at & mask)] = value;
+		}
+	}
+
+	/**
+	 * Build the index, reading all steps of all paths three times.
+	 * 
+	 * @param <P>       the type of PathHandle
+	 * @param <S>       the type of StepHandle
+	 * @param <N>       the type of NodeHandle
+	 * @param <E>       the type of EdgeHandle
+	 * @param pathGraph to index
+	 * @return an index of the steps on every node
+	 */
+	public static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> NodeStepIndex<P> build(
+			PathGraph<P, S, N, E> pathGraph) {
+		return build(pathGraph, PAGE_BITS);
+	}
+
+	/**
+	 * @param pageBits the log2 of the number of bytes in a page of encoded steps
+	 */
+	static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> NodeStepIndex<P> build(
+			PathGraph<P, S, N, E> pathGraph, int pageBits) {
+		List<P> paths = new ArrayList<>();
+		try (AutoClosedIterator<P> iter = pathGraph.paths()) {
+			while (iter.hasNext()) {
+				paths.add(iter.next());
+			}
+		}
+		if (paths.size() > (1 << (Long.SIZE - RANK_BITS - 1))) {
+			throw new IllegalStateException("Too many paths to index: " + paths.size());
+		}
+		long[] nodeIds = nodeIds(pathGraph);
+		boolean dense = isDense(nodeIds);
+		int nodeCount = nodeIds.length;
+		int[][] counts = new int[2][nodeCount];
+		long[][] sizes = new long[2][nodeCount + 1];
+		long[][] previous = new long[2][nodeCount];
+		// First pass the number of steps and bytes per node, second pass the
+		// encoded steps.
+		for (int pass = 0; pass < 2; pass++) {
+			Pages[] steps = new Pages[2];
+			if (pass == 1) {
+				for (int strand = 0; strand < 2; strand++) {
+					steps[strand] = new Pages(sizes[strand][nodeCount], pageBits);
+					Arrays.fill(previous[strand], 0);
+				}
+			}
+			for (int p = 0; p < paths.size(); p++) {
+				try (AutoClosedIterator<S> iter = pathGraph.stepsOf(paths.get(p))) {
+					while (iter.hasNext()) {
+						S step = iter.next();
+						N node = pathGraph.nodeOfStep(step);
+						int strand = pathGraph.isReverseNodeHandle(node) ? 1 : 0;
+						int index = indexOf(nodeIds, dense, Math.abs(node.id()));
+						long packed = ((long) p << RANK_BITS) | pathGraph.rankOfStep(step);
+						long delta = packed - previous[strand][index];
+						previous[strand][index] = packed;
+						if (pass == 0) {
+							counts[strand][index]++;
+							sizes[strand][index + 1] += VarLong.size(delta);
+						} else {
+							sizes[strand][index] = VarLong.write(delta, steps[strand], sizes[strand][index]);
+						}
+					}
+				}
+			}
+			if (pass == 0) {
+				for (int strand = 0; strand < 2; strand++) {
+					for (int i = 0; i < nodeCount; i++) {
+						sizes[strand][i + 1] += sizes[strand][i];
+					}
+				}
+			} else {
+				// The write positions now point at the start of the next node.
+				Strand[] strands = new Strand[2];
+				for (int strand = 0; strand < 2; strand++) {
+					long[] offsets = new long[nodeCount + 1];
+					System.arraycopy(sizes[strand], 0, offsets, 1, nodeCount);
+					strands[strand] = new Strand(offsets, counts[strand], steps[strand]);
+				}
+				return new NodeStepIndex<>(List.copyOf(paths), nodeIds, strands[0], strands[1]);
+			}
+		}
+		throw new IllegalStateException("unreachable");
+	}
+
+	private static long[] nodeIds(PathGraph<?, ?, ?, ?> pathGraph) {
+		long[] ids = new long[Math.toIntExact(pathGraph.nodeCount())];
+		int i = 0;
+		try (AutoClosedIterator<? extends NodeHandle> nodes = pathGraph.nodes()) {
+			while (nodes.hasNext()) {
+				if (i == ids.length) {
+					ids = Arrays.copyOf(ids, ids.length * 2 + 1);
+				}
+				ids[i++] = Math.abs(nodes.next().id());
+			}
+		}
+		ids = Arrays.copyOf(ids, i);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	private static boolean isDense(long[] nodeIds) {
+		return nodeIds.length == 0 || nodeIds[nodeIds.length - 1] - nodeIds[0] == nodeIds.length - 1;
+	}
+
+	private static int indexOf(long[] nodeIds, boolean dense, long id) {
+		if (dense) {
+			long index = nodeIds.length == 0 ? -1 : id - nodeIds[0];
+			return index >= 0 && index < nodeIds.length ? (int) index : -1;
+		}
+		int index = Arrays.binarySearch(nodeIds, id);
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 * How many steps visit a node
+	 * 
+	 * @param nodeId  the id of the node
+	 * @param reverse true for the steps visiting the reverse strand
+	 * @return the number of steps
+	 */
+	public int stepCount(long nodeId, boolean reverse) {
+		int index = indexOf(nodeIds, denseNodeIds, Math.abs(nodeId));
+		if (index < 0) {
+			return 0;
+		}
+		return (reverse ? this.reverse : forward).counts()[index];
+	}
+
+	/**
+	 * The steps that visit a node, ordered by path and rank.
+	 * 
+	 * @param <T>     the type of value returned
+	 * @param nodeId  the id of the node
+	 * @param reverse true for the steps visiting the reverse strand
+	 * @param factory to create a value for each step
+	 * @return the steps
+	 */
+	public <T> AutoClosedIterator<T> steps(long nodeId, boolean reverse, StepFactory<P, T> factory) {
+		int index = indexOf(nodeIds, denseNodeIds, Math.abs(nodeId));
+		if (index < 0) {
+			return AutoClosedIterator.empty();
+		}
+		Strand strand = reverse ? this.reverse : forward;
+		return new StepIterator<>(strand.steps(), strand.offsets()[index], strand.counts()[index], factory);
+	}
+
+	private final class StepIterator<T> implements AutoClosedIterator<T> {
+		private final Pages steps;
+		private final StepFactory<P, T> factory;
+		private long offset;
+		private int remaining;
+		private long packed;
+
+		StepIterator(Pages steps, long offset, int remaining, StepFactory<P, T> factory) {
+			this.steps = steps;
+			this.offset = offset;
+			this.remaining = remaining;
+			this.factory = factory;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public T next() {
+			if (remaining <= 0) {
+				throw new NoSuchElementException();
+			}
+			long delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = steps.get(offset++);
+				delta |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			packed += delta;
+			remaining--;
+			return factory.create(paths.get((int) (packed >>> RANK_BITS)), packed & RANK_MASK);
+		}
+
+		@Override
+		public void close() {
+			// Nothing to close
+		}
+	}
+
+	/**
+	 * Unsigned variable length longs, seven bits per byte with the high bit set
+	 * when more bytes follow.
+	 */
+	private static final class VarLong {
+
+		private VarLong() {
+
+		}
+
+		static int size(long value) {
+			int size = 1;
+			while ((value >>>= 7) != 0) {
+				size++;
+			}
+			return size;
+		}
+
+		static long write(long value, Pages into, long at) {
+			while ((value & ~0x7FL) != 0) {
+				into.set(at++, (byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			into.set(at++, (byte) value);
+			return at;
+		}
+	}
+}
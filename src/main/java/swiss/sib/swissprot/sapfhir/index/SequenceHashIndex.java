@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.HandleGraph;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeSequence;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
+
+/**
+ * The nodes of a graph by a 64 bit hash of their sequence, so that the nodes
+ * with a known sequence are found without comparing every sequence. Case is
+ * ignored by the hash, and different sequences can share a hash, so the nodes
+ * found are candidates that still need to be compared.
+ * 
+ * The hashes and node ids are kept sorted by hash, and can be written to a
+ * sidecar file laid out as
+ * 
+ * <pre>
+ * magic, version, node count, edge count
+ * count, hashes, node ids
+ * </pre>
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public final class SequenceHashIndex {
+
+	private static final long MAGIC = 0x5341504653485348L; // SAPFSHSH
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final LongBuffer hashes;
+	private final LongBuffer nodeIds;
+
+	private SequenceHashIndex(LongBuffer hashes, LongBuffer nodeIds) {
+		this.hashes = hashes;
+		this.nodeIds = nodeIds;
+	}
+
+	/**
+	 * Build the index in memory, reading all sequences once.
+	 * 
+	 * @param <N>   the type of NodeHandle
+	 * @param <E>   the type of EdgeHandle
+	 * @param graph to index
+	 * @return the index of all node sequences
+	 */
+	public static <N extends NodeHandle, E extends EdgeHandle<N>> SequenceHashIndex build(HandleGraph<N, E> graph) {
+		long[] hashes = new long[(int) Math.max(16, graph.nodeCount())];
+		long[] nodeIds = new long[hashes.length];
+		int count = 0;
+		try (AutoClosedIterator<NodeSequence<N>> nodes = graph.nodesWithTheirSequence()) {
+			while (nodes.hasNext()) {
+				NodeSequence<N> node = nodes.next();
+				if (count == hashes.length) {
+					hashes = Arrays.copyOf(hashes, count * 2);
+					nodeIds = Arrays.copyOf(nodeIds, count * 2);
+				}
+				hashes[count] = hash(node.sequence());
+				nodeIds[count] = graph.asLong(node.node());
+				count++;
+			}
+		}
+		sort(hashes, nodeIds, 0, count);
+		return new SequenceHashIndex(LongBuffer.wrap(Arrays.copyOf(hashes, count)),
+				LongBuffer.wrap(Arrays.copyOf(nodeIds, count)));
+	}
+
+	/**
+	 * Load the index from a sidecar file, (re)building the file first if it is
+	 * missing or was built for a different graph.
+	 * 
+	 * @param <N>   the type of NodeHandle
+	 * @param <E>   the type of EdgeHandle
+	 * @param graph to index
+	 * @param file  the sidecar file
+	 * @return an index backed by the memory mapped file
+	 * @throws IOException if the file can not be written or read
+	 */
+	public static <N extends NodeHandle, E extends EdgeHandle<N>> SequenceHashIndex buildOrLoad(HandleGraph<N, E> graph,
+			Path file) throws IOException {
+		if (!Files.exists(file) || !matches(graph, file)) {
+			write(graph, build(graph), file);
+		}
+		return load(file);
+	}
+
+	private static boolean matches(HandleGraph<?, ?> graph, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			return header.getLong() == MAGIC && header.getInt() == VERSION && header.getLong() == graph.nodeCount()
+					&& header.getLong() == graph.edgeCount();
+		}
+	}
+
+	private static void write(HandleGraph<?, ?> graph, SequenceHashIndex index, Path file) throws IOException {
+		Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(graph.nodeCount());
+			out.writeLong(graph.edgeCount());
+			out.writeLong(index.size());
+			for (int i = 0; i < index.size(); i++) {
+				out.writeLong(index.hashes.get(i));
+			}
+			for (int i = 0; i < index.size(); i++) {
+				out.writeLong(index.nodeIds.get(i));
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static SequenceHashIndex load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long offset = HEADER_SIZE;
+			long count = channel.map(MapMode.READ_ONLY, offset, Long.BYTES).getLong();
+			offset += Long.BYTES;
+			LongBuffer hashes = channel.map(MapMode.READ_ONLY, offset, count * Long.BYTES).asLongBuffer();
+			offset += count * Long.BYTES;
+			LongBuffer nodeIds = channel.map(MapMode.READ_ONLY, offset, count * Long.BYTES).asLongBuffer();
+			return new SequenceHashIndex(hashes, nodeIds);
+		}
+	}
+
+	/**
+	 * @param sequence to hash
+	 * @return the FNV-1a hash of the upper case bases
+	 */
+	public static long hash(Sequence sequence) {
+		long hash = FNV_OFFSET;
+		int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			hash = (hash ^ upper(sequence.byteAt(i))) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * @param sequence to hash
+	 * @return the same hash as for a Sequence with these bases
+	 */
+	public static long hash(String sequence) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < sequence.length(); i++) {
+			hash = (hash ^ upper((byte) sequence.charAt(i))) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static int upper(byte base) {
+		return base >= 'a' && base <= 'z' ? base - ('a' - 'A') : base & 0xff;
+	}
+
+	/**
+	 * @param hash of a sequence
+	 * @return the long form of the handles of the nodes whose sequence has this
+	 *         hash
+	 */
+	public long[] nodeIds(long hash) {
+		int first = first(hash);
+		int end = end(hash);
+		long[] ids = new long[end - first];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = nodeIds.get(first + i);
+		}
+		return ids;
+	}
+
+	/**
+	 * @param hash of a sequence
+	 * @return how many nodes have a sequence with this hash
+	 */
+	public int count(long hash) {
+		return end(hash) - first(hash);
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return hashes.limit();
+	}
+
+	private int first(long hash) {
+		int low = 0;
+		int high = size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (hashes.get(mid) < hash) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int end(long hash) {
+		return hash == Long.MAX_VALUE ? size() : first(hash + 1);
+	}
+
+	/**
+	 * Sort the hashes in [from, to) keeping the node ids at the same place
+	 */
+	private static void sort(long[] hashes, long[] nodeIds, int from, int to) {
+		while (to - from > 16) {
+			long pivot = median(hashes[from], hashes[(from + to) >>> 1], hashes[to - 1]);
+			int lt = from;
+			int gt = to - 1;
+			int i = from;
+			// Three way partition, many nodes share a short sequence
+			while (i <= gt) {
+				if (hashes[i] < pivot) {
+					swap(hashes, nodeIds, lt++, i++);
+				} else if (hashes[i] > pivot) {
+					swap(hashes, nodeIds, i, gt--);
+				} else {
+					i++;
+				}
+			}
+			// Recurse into the smaller part to keep the stack shallow
+			if (lt - from < to - gt - 1) {
+				sort(hashes, nodeIds, from, lt);
+				from = gt + 1;
+			} else {
+				sort(hashes, nodeIds, gt + 1, to);
+				to = lt;
+			}
+		}
+		for (int i = from + 1; i < to; i++) {
+			for (int j = i; j > from && hashes[j - 1] > hashes[j]; j--) {
+				swap(hashes, nodeIds, j - 1, j);
+			}
+		}
+	}
+
+	private static long median(long a, long b, long c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	private static void swap(long[] hashes, long[] nodeIds, int i, int j) {
+		long hash = hashes[i];
+		hashes[i] = hashes[j];
+		hashes[j] = hash;
+		long id = nodeIds[i];
+		nodeIds[i] = nodeIds[j];
+		nodeIds[j] = id;
+	}
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.HandleGraph;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeSequence;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
+
+/**
+ * For every k-mer of {@value #K} nucleotides the nodes whose sequence contains
+ * it. Used to find the few nodes that might contain, start or end with a
+ * fragment instead of testing every sequence.
+ * 
+ * Only k-mers of a, c, g and t are indexed and case is ignored, so the nodes
+ * found are candidates that still need to be tested. A fragment shorter than
+ * {@value #K} or without a k-mer of only a, c, g and t can not be looked up.
+ * 
+ * The nodes are numbered in the order the graph lists them. The postings of a
+ * k-mer are the variable length encoded differences between those numbers. The
+ * index is written to a sidecar file laid out as
+ * 
+ * <pre>
+ * magic, version, k, node count, edge count
+ * node ids, 4^k + 1 offsets into the postings, postings
+ * </pre>
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public final class SequenceKmerIndex {
+
+	/**
+	 * The length of the indexed k-mers
+	 */
+	public static final int K = 8;
+	private static final int KMERS = 1 << (2 * K);
+	private static final int KMER_MASK = KMERS - 1;
+	private static final long MAGIC = 0x534150464b4d4552L; // SAPFKMER
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+
+	private final LongBuffer nodeIds;
+	private final LongBuffer offsets;
+	private final ByteBuffer postings;
+
+	private SequenceKmerIndex(LongBuffer nodeIds, LongBuffer offsets, ByteBuffer postings) {
+		this.nodeIds = nodeIds;
+		this.offsets = offsets;
+		this.postings = postings;
+	}
+
+	/**
+	 * Build the index in memory, reading all sequences twice.
+	 * 
+	 * @param <N>   the type of NodeHandle
+	 * @param <E>   the type of EdgeHandle
+	 * @param graph to index
+	 * @return an index of the k-mers in all node sequences
+	 */
+	public static <N extends NodeHandle, E extends EdgeHandle<N>> SequenceKmerIndex build(HandleGraph<N, E> graph) {
+		long[] offsets = new long[KMERS + 1];
+		int[] last = new int[KMERS];
+		long[] nodeIds = new long[(int) Math.max(16, graph.nodeCount())];
+		int nodeCount = 0;
+		// First pass: the size of the postings of each k-mer
+		Arrays.fill(last, -1);
+		try (AutoClosedIterator<NodeSequence<N>> nodes = graph.nodesWithTheirSequence()) {
+			while (nodes.hasNext()) {
+				NodeSequence<N> node = nodes.next();
+				if (nodeCount == nodeIds.length) {
+					nodeIds = Arrays.copyOf(nodeIds, nodeIds.length * 2);
+				}
+				nodeIds[nodeCount] = graph.asLong(node.node());
+				int ordinal = nodeCount++;
+				forEachKmer(node.sequence(), kmer -> {
+					if (last[kmer] != ordinal) {
+						offsets[kmer + 1] += VarInt.size(ordinal - last[kmer]);
+						last[kmer] = ordinal;
+					}
+				});
+			}
+		}
+		for (int kmer = 0; kmer < KMERS; kmer++) {
+			offsets[kmer + 1] += offsets[kmer];
+		}
+		if (offsets[KMERS] > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many k-mers to index in one buffer: " + offsets[KMERS]);
+		}
+		// Second pass: write the postings
+		byte[] postings = new byte[(int) offsets[KMERS]];
+		int[] at = new int[KMERS];
+		for (int kmer = 0; kmer < KMERS; kmer++) {
+			at[kmer] = (int) offsets[kmer];
+		}
+		Arrays.fill(last, -1);
+		int expectedNodes = nodeCount;
+		try (AutoClosedIterator<NodeSequence<N>> nodes = graph.nodesWithTheirSequence()) {
+			for (int i = 0; i < expectedNodes && nodes.hasNext(); i++) {
+				NodeSequence<N> node = nodes.next();
+				int ordinal = i;
+				forEachKmer(node.sequence(), kmer -> {
+					if (last[kmer] != ordinal) {
+						at[kmer] = VarInt.write(ordinal - last[kmer], postings, at[kmer]);
+						last[kmer] = ordinal;
+					}
+				});
+			}
+		}
+		return new SequenceKmerIndex(LongBuffer.wrap(Arrays.copyOf(nodeIds, nodeCount)), LongBuffer.wrap(offsets),
+				ByteBuffer.wrap(postings));
+	}
+
+	/**
+	 * Load the index from a sidecar file, (re)building the file first if it is
+	 * missing or was built for a different graph.
+	 * 
+	 * @param <N>   the type of NodeHandle
+	 * @param <E>   the type of EdgeHandle
+	 * @param graph to index
+	 * @param file  the sidecar file
+	 * @return an index backed by the memory mapped file
+	 * @throws IOException if the file can not be written or read
+	 */
+	public static <N extends NodeHandle, E extends EdgeHandle<N>> SequenceKmerIndex buildOrLoad(HandleGraph<N, E> graph,
+			Path file) throws IOException {
+		if (!Files.exists(file) || !matches(graph, file)) {
+			write(graph, build(graph), file);
+		}
+		return load(file);
+	}
+
+	private static boolean matches(HandleGraph<?, ?> graph, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			return header.getLong() == MAGIC && header.getInt() == VERSION && header.getInt() == K
+					&& header.getLong() == graph.nodeCount() && header.getLong() == graph.edgeCount();
+		}
+	}
+
+	private static void write(HandleGraph<?, ?> graph, SequenceKmerIndex index, Path file) throws IOException {
+		Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(K);
+			out.writeLong(graph.nodeCount());
+			out.writeLong(graph.edgeCount());
+			out.writeLong(index.nodeIds.limit());
+			for (int i = 0; i < index.nodeIds.limit(); i++) {
+				out.writeLong(index.nodeIds.get(i));
+			}
+			for (int i = 0; i < index.offsets.limit(); i++) {
+				out.writeLong(index.offsets.get(i));
+			}
+			out.write(index.postings.array());
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static SequenceKmerIndex load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long offset = HEADER_SIZE;
+			long nodeCount = channel.map(MapMode.READ_ONLY, offset, Long.BYTES).getLong();
+			offset += Long.BYTES;
+			LongBuffer nodeIds = channel.map(MapMode.READ_ONLY, offset, nodeCount * Long.BYTES).asLongBuffer();
+			offset += nodeCount * Long.BYTES;
+			LongBuffer offsets = channel.map(MapMode.READ_ONLY, offset, (KMERS + 1L) * Long.BYTES).asLongBuffer();
+			offset += (KMERS + 1L) * Long.BYTES;
+			ByteBuffer postings = channel.map(MapMode.READ_ONLY, offset, offsets.get(KMERS));
+			return new SequenceKmerIndex(nodeIds, offsets, postings);
+		}
+	}
+
+	/**
+	 * The nodes whose sequence might contain the fragment, the nodes that do are
+	 * certainly in there.
+	 * 
+	 * @param fragment of a sequence
+	 * @return the long form of the candidate node handles, or null if the
+	 *         fragment has no k-mer that can be looked up
+	 */
+	public long[] candidates(String fragment) {
+		int[] kmers = kmersOf(fragment);
+		if (kmers.length == 0) {
+			return null;
+		}
+		// Start with the rarest k-mer, the other k-mers can only remove nodes
+		int rarest = kmers[0];
+		for (int kmer : kmers) {
+			if (postingsSize(kmer) < postingsSize(rarest)) {
+				rarest = kmer;
+			}
+		}
+		int[] ordinals = ordinals(rarest);
+		int found = ordinals.length;
+		for (int kmer : kmers) {
+			if (kmer != rarest && found > 0) {
+				found = retainAll(ordinals, found, ordinals(kmer));
+			}
+		}
+		long[] ids = new long[found];
+		for (int i = 0; i < found; i++) {
+			ids[i] = nodeIds.get(ordinals[i]);
+		}
+		return ids;
+	}
+
+	private long postingsSize(int kmer) {
+		return offsets.get(kmer + 1) - offsets.get(kmer);
+	}
+
+	private int[] ordinals(int kmer) {
+		int at = (int) offsets.get(kmer);
+		int end = (int) offsets.get(kmer + 1);
+		int[] ordinals = new int[end - at];
+		int count = 0;
+		int ordinal = -1;
+		while (at < end) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = postings.get(at++);
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			ordinal += delta;
+			ordinals[count++] = ordinal;
+		}
+		return Arrays.copyOf(ordinals, count);
+	}
+
+	/**
+	 * Keep the first count sorted ordinals that are also in other
+	 * 
+	 * @return the number of ordinals kept
+	 */
+	private static int retainAll(int[] ordinals, int count, int[] other) {
+		int kept = 0;
+		int j = 0;
+		for (int i = 0; i < count && j < other.length; i++) {
+			while (j < other.length && other[j] < ordinals[i]) {
+				j++;
+			}
+			if (j < other.length && other[j] == ordinals[i]) {
+				ordinals[kept++] = ordinals[i];
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * The distinct k-mers of only a, c, g and t in a fragment
+	 */
+	static int[] kmersOf(String fragment) {
+		int[] kmers = new int[Math.max(0, fragment.length() - K + 1)];
+		int count = 0;
+		int kmer = 0;
+		int valid = 0;
+		for (int i = 0; i < fragment.length(); i++) {
+			int code = code(fragment.charAt(i));
+			if (code < 0) {
+				valid = 0;
+			} else {
+				kmer = ((kmer << 2) | code) & KMER_MASK;
+				if (++valid >= K) {
+					kmers[count++] = kmer;
+				}
+			}
+		}
+		return Arrays.stream(kmers, 0, count).distinct().toArray();
+	}
+
+	private static void forEachKmer(Sequence sequence, IntConsumer consumer) {
+		int kmer = 0;
+		int valid = 0;
+		for (int i = 0; i < sequence.length(); i++) {
+			int code = code((char) sequence.byteAt(i));
+			if (code < 0) {
+				valid = 0;
+			} else {
+				kmer = ((kmer << 2) | code) & KMER_MASK;
+				if (++valid >= K) {
+					consumer.accept(kmer);
+				}
+			}
+		}
+	}
+
+	private static int code(char nucleotide) {
+		return switch (nucleotide) {
+		case 'a', 'A' -> 0;
+		case 'c', 'C' -> 1;
+		case 'g', 'G' -> 2;
+		case 't', 'T' -> 3;
+		default -> -1;
+		};
+	}
+
+	/**
+	 * Unsigned variable length ints, seven bits per byte with the high bit set
+	 * when more bytes follow.
+	 */
+	private static final class VarInt {
+
+		private VarInt() {
+
+		}
+
+		static int size(int value) {
+			int size = 1;
+			while ((value >>>= 7) != 0) {
+				size++;
+			}
+			return size;
+		}
+
+		static int write(int value, byte[] into, int at) {
+			while ((value & ~0x7F) != 0) {
+				into[at++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			into[at++] = (byte) value;
+			return at;
+		}
+	}
+}
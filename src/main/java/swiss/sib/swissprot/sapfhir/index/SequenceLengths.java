@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.HandleGraph;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+
+/**
+ * The sequence length of every node, with the nodes ordered by that length.
+ * The nodes of a range of lengths are a slice of that order, and the size of
+ * the slice is the length histogram. No sequence is read, only their lengths.
+ * 
+ * The node ids are also kept sorted, to tell if a node is in the graph, unless
+ * they are a dense range.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public final class SequenceLengths {
+
+	private final int[] lengths;
+	private final long[] nodeIds;
+	private final long firstNodeId;
+	private final long lastNodeId;
+	private final long[] sortedNodeIds;
+
+	private SequenceLengths(int[] lengths, long[] nodeIds, long[] sortedNodeIds) {
+		this.lengths = lengths;
+		this.nodeIds = nodeIds;
+		this.firstNodeId = sortedNodeIds.length == 0 ? 0 : sortedNodeIds[0];
+		this.lastNodeId = sortedNodeIds.length == 0 ? -1 : sortedNodeIds[sortedNodeIds.length - 1];
+		boolean dense = lastNodeId - firstNodeId == sortedNodeIds.length - 1;
+		this.sortedNodeIds = dense ? null : sortedNodeIds;
+	}
+
+	/**
+	 * Read the sequence length of all nodes of the graph
+	 * 
+	 * @param <N>   the type of NodeHandle
+	 * @param <E>   the type of EdgeHandle
+	 * @param graph to read the nodes of
+	 * @return the lengths
+	 */
+	public static <N extends NodeHandle, E extends EdgeHandle<N>> SequenceLengths build(HandleGraph<N, E> graph) {
+		long nodeCount = graph.nodeCount();
+		if (nodeCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Too many nodes to keep their lengths: " + nodeCount);
+		}
+		// Length in the high bits, the position in the node order in the low
+		// so that one sort orders both
+		long[] order = new long[(int) nodeCount];
+		long[] ids = new long[(int) nodeCount];
+		int count = 0;
+		try (AutoClosedIterator<N> nodes = graph.nodes()) {
+			while (nodes.hasNext()) {
+				N node = nodes.next();
+				if (count == ids.length) {
+					ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+					order = Arrays.copyOf(order, ids.length);
+				}
+				ids[count] = graph.asLong(node);
+				order[count] = ((long) graph.sequenceLengthOf(node) << 32) | count;
+				count++;
+			}
+		}
+		Arrays.sort(order, 0, count);
+		int[] lengths = new int[count];
+		long[] nodeIds = new long[count];
+		for (int i = 0; i < count; i++) {
+			lengths[i] = (int) (order[i] >>> 32);
+			nodeIds[i] = ids[(int) order[i]];
+		}
+		long[] sortedNodeIds = Arrays.copyOf(ids, count);
+		Arrays.sort(sortedNodeIds);
+		return new SequenceLengths(lengths, nodeIds, sortedNodeIds);
+	}
+
+	/**
+	 * @param from the shortest length
+	 * @param to   the length after the longest
+	 * @return how many nodes have a sequence length in the range
+	 */
+	public int count(long from, long to) {
+		return Math.max(0, first(to) - first(from));
+	}
+
+	/**
+	 * @param from the shortest length
+	 * @param to   the length after the longest
+	 * @return the long form of the node handles with a sequence length in the
+	 *         range, shortest first
+	 */
+	public LongStream nodeIds(long from, long to) {
+		int start = first(from);
+		int end = Math.max(start, first(to));
+		return Arrays.stream(nodeIds, start, end);
+	}
+
+	/**
+	 * @param nodeId the long form of a node handle
+	 * @return true if the graph has the node
+	 */
+	public boolean contains(long nodeId) {
+		if (nodeId < firstNodeId || nodeId > lastNodeId) {
+			return false;
+		}
+		return sortedNodeIds == null || Arrays.binarySearch(sortedNodeIds, nodeId) >= 0;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return lengths.length;
+	}
+
+	/**
+	 * @return the index of the first node with at least this length
+	 */
+	private int first(long length) {
+		if (length <= 0) {
+			return 0;
+		} else if (length > Integer.MAX_VALUE) {
+			return lengths.length;
+		}
+		int low = 0;
+		int high = lengths.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (lengths[mid] < length) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+
+/**
+ * For each path the begin position of every step, indexed by rank. A step
+ * begins at 0 or one after the end of the previous step, and ends its sequence
+ * length after its begin. So the end of a step is the begin of the next minus
+ * one, and one array per path answers both.
+ * 
+ * The arrays can be written to a sidecar file that is memory mapped when the
+ * sail is opened again. The file is laid out as
+ * 
+ * <pre>
+ * magic, version, node count, step count, path count
+ * per path: length of name, name (utf-8), number of begins, padding to 8 bytes, begins
+ * </pre>
+ * 
+ * Closing the index drops the mapped buffers, after which it contains no path.
+ * The file is unmapped once the buffers are garbage collected.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ */
+public final class StepPositionIndex<P extends PathHandle> implements Closeable {
+
+	private static final long MAGIC = 0x5341504650534958L; // SAPFPSIX
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+	/**
+	 * The largest number of begins we can map in one buffer
+	 */
+	private static final long MAX_BEGINS_PER_PATH = Integer.MAX_VALUE / Long.BYTES;
+
+	private volatile Map<P, LongBuffer> beginsPerPath;
+
+	private StepPositionIndex(Map<P, LongBuffer> beginsPerPath) {
+		this.beginsPerPath = Map.copyOf(beginsPerPath);
+	}
+
+	/**
+	 * Build the index in memory
+	 * 
+	 * @param <P>       the type of PathHandle
+	 * @param <S>       the type of StepHandle
+	 * @param <N>       the type of NodeHandle
+	 * @param <E>       the type of EdgeHandle
+	 * @param pathGraph to index
+	 * @return an index over all paths in the graph
+	 */
+	public static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> StepPositionIndex<P> build(
+			PathGraph<P, S, N, E> pathGraph) {
+		Map<P, LongBuffer> beginsPerPath = new HashMap<>();
+		try (AutoClosedIterator<P> paths = pathGraph.paths()) {
+			while (paths.hasNext()) {
+				P path = paths.next();
+				beginsPerPath.put(path, LongBuffer.wrap(begins(pathGraph, path)));
+			}
+		}
+		return new StepPositionIndex<>(beginsPerPath);
+	}
+
+	/**
+	 * Load the index from a sidecar file, (re)building the file first if it is
+	 * missing or was built for a different graph.
+	 * 
+	 * @param <P>       the type of PathHandle
+	 * @param <S>       the type of StepHandle
+	 * @param <N>       the type of NodeHandle
+	 * @param <E>       the type of EdgeHandle
+	 * @param pathGraph to index
+	 * @param file      the sidecar file
+	 * @return an index backed by the memory mapped file
+	 * @throws IOException if the file can not be written or read
+	 */
+	public static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> StepPositionIndex<P> buildOrLoad(
+			PathGraph<P, S, N, E> pathGraph, Path file) throws IOException {
+		if (!Files.exists(file) || !matches(pathGraph, file)) {
+			write(pathGraph, file);
+		}
+		return load(pathGraph, file);
+	}
+
+	private static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> long[] begins(
+			PathGraph<P, S, N, E> pathGraph, P path) {
+		long[] begins = new long[1024];
+		int rank = 0;
+		long begin = 0;
+		try (AutoClosedIterator<S> steps = pathGraph.stepsOf(path)) {
+			while (steps.hasNext()) {
+				S step = steps.next();
+				if (rank + 1 == begins.length) {
+					if (begins.length >= MAX_BEGINS_PER_PATH) {
+						throw new IllegalStateException(
+								"Path " + pathGraph.nameOfPath(path) + " has too many steps to index");
+					}
+					begins = Arrays.copyOf(begins, (int) Math.min(MAX_BEGINS_PER_PATH, begins.length * 2L));
+				}
+				begins[rank++] = begin;
+				begin = begin + pathGraph.sequenceLengthOf(pathGraph.nodeOfStep(step)) + 1;
+			}
+		}
+		begins[rank++] = begin;
+		return Arrays.copyOf(begins, rank);
+	}
+
+	private static boolean matches(PathGraph<?, ?, ?, ?> pathGraph, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			return header.getLong() == MAGIC && header.getInt() == VERSION
+					&& header.getLong() == pathGraph.nodeCount() && header.getLong() == pathGraph.stepCount()
+					&& header.getInt() == pathGraph.pathCount();
+		}
+	}
+
+	private static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> void write(
+			PathGraph<P, S, N, E> pathGraph, Path file) throws IOException {
+		Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(pathGraph.nodeCount());
+			out.writeLong(pathGraph.stepCount());
+			out.writeInt(pathGraph.pathCount());
+			try (AutoClosedIterator<P> paths = pathGraph.paths()) {
+				while (paths.hasNext()) {
+					P path = paths.next();
+					byte[] name = pathGraph.nameOfPath(path).getBytes(StandardCharsets.UTF_8);
+					long[] begins = begins(pathGraph, path);
+					out.writeInt(name.length);
+					out.write(name);
+					out.writeLong(begins.length);
+					out.write(new byte[padding(out.size())]);
+					for (long begin : begins) {
+						out.writeLong(begin);
+					}
+				}
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static <P extends PathHandle> StepPositionIndex<P> load(PathGraph<P, ?, ?, ?> pathGraph, Path file)
+			throws IOException {
+		Map<P, LongBuffer> beginsPerPath = new HashMap<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			int pathCount = header.getInt(HEADER_SIZE - Integer.BYTES);
+			long offset = HEADER_SIZE;
+			for (int i = 0; i < pathCount; i++) {
+				ByteBuffer nameLength = ByteBuffer.allocate(Integer.BYTES);
+				offset = readFully(channel, nameLength, offset);
+				ByteBuffer name = ByteBuffer.allocate(nameLength.getInt());
+				offset = readFully(channel, name, offset);
+				ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+				offset = readFully(channel, count, offset);
+				long numberOfBegins = count.getLong();
+				offset += padding(offset);
+				P path = pathGraph.pathByName(new String(name.array(), StandardCharsets.UTF_8));
+				long size = numberOfBegins * Long.BYTES;
+				if (path != null) {
+					beginsPerPath.put(path, channel.map(MapMode.READ_ONLY, offset, size).asLongBuffer());
+				}
+				offset += size;
+			}
+		}
+		return new StepPositionIndex<>(beginsPerPath);
+	}
+
+	private static long readFully(FileChannel channel, ByteBuffer into, long offset) throws IOException {
+		while (into.hasRemaining()) {
+			int read = channel.read(into, offset);
+			if (read < 0) {
+				throw new IOException("Position index file is truncated");
+			}
+			offset += read;
+		}
+		into.flip();
+		return offset;
+	}
+
+	private static int padding(long offset) {
+		return (int) ((Long.BYTES - (offset % Long.BYTES)) % Long.BYTES);
+	}
+
+	/**
+	 * @param path to test
+	 * @return true if the path is in this index
+	 */
+	public boolean contains(P path) {
+		return beginsPerPath.containsKey(path);
+	}
+
+	/**
+	 * @param path that must be in this index
+	 * @return the number of steps of the path
+	 */
+	public long stepCount(P path) {
+		return beginsPerPath.get(path).limit() - 1;
+	}
+
+	/**
+	 * @param path that must be in this index
+	 * @param rank of the step
+	 * @return where the step begins on the path
+	 */
+	public long beginPosition(P path, long rank) {
+		return beginsPerPath.get(path).get((int) rank);
+	}
+
+	/**
+	 * @param path that must be in this index
+	 * @param rank of the step
+	 * @return where the step ends on the path
+	 */
+	public long endPosition(P path, long rank) {
+		return beginsPerPath.get(path).get((int) rank + 1) - 1;
+	}
+
+	/**
+	 * @param path     that must be in this index
+	 * @param position on the path
+	 * @return the rank of the step beginning at the position, or -1 if there is
+	 *         none
+	 */
+	public long rankByBeginPosition(P path, long position) {
+		LongBuffer begins = beginsPerPath.get(path);
+		int rank = search(begins, 0, begins.limit() - 1, position);
+		return rank >= 0 ? rank : -1;
+	}
+
+	/**
+	 * @param path     that must be in this index
+	 * @param position on the path
+	 * @return the rank of the step ending at the position, or -1 if there is none
+	 */
+	public long rankByEndPosition(P path, long position) {
+		LongBuffer begins = beginsPerPath.get(path);
+		int next = search(begins, 1, begins.limit(), position + 1);
+		return next >= 0 ? next - 1 : -1;
+	}
+
+	/**
+	 * @param path     that must be in this index
+	 * @param position on the path
+	 * @return the rank of the first step beginning at or after the position, or
+	 *         the step count if there is none
+	 */
+	public long firstRankBeginningAtOrAfter(P path, long position) {
+		LongBuffer begins = beginsPerPath.get(path);
+		return insertionPoint(search(begins, 0, begins.limit() - 1, position));
+	}
+
+	/**
+	 * @param path     that must be in this index
+	 * @param position on the path
+	 * @return the rank of the first step ending at or after the position, or the
+	 *         step count if there is none
+	 */
+	public long firstRankEndingAtOrAfter(P path, long position) {
+		LongBuffer begins = beginsPerPath.get(path);
+		return insertionPoint(search(begins, 1, begins.limit(), position + 1)) - 1;
+	}
+
+	@Override
+	public void close() {
+		beginsPerPath = Map.of();
+	}
+
+	private static int insertionPoint(int found) {
+		return found >= 0 ? found : -(found + 1);
+	}
+
+	/**
+	 * Binary search for a begin, the begins are strictly increasing.
+	 * 
+	 * @return the index of the begin or (-(insertion point) - 1) if not present
+	 */
+	static int search(LongBuffer begins, int from, int to, long begin) {
+		int low = from;
+		int high = to - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long atMid = begins.get(mid);
+			if (atMid < begin) {
+				low = mid + 1;
+			} else if (atMid > begin) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+}
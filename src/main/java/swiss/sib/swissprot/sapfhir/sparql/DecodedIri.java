@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+
+/**
+ * What an IRI string refers to in the graph, as found by
+ * {@link PathHandleGraphSail#decodeIri(String)}. Only the syntax is decoded,
+ * e.g. a step rank may still be past the end of its path.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P>   the type of PathHandle
+ * @param kind  of value the IRI represents
+ * @param path  the path of a path, step or position IRI, null for a node
+ * @param value the node id, the step rank or the position. Not used for paths
+ */
+public record DecodedIri<P extends PathHandle>(Kind kind, P path, long value) {
+
+	/**
+	 * The kinds of IRIs that are generated for a graph
+	 */
+	public enum Kind {
+		/**
+		 * base/node/id
+		 */
+		NODE,
+		/**
+		 * base/path/name or a path name that is an IRI itself
+		 */
+		PATH,
+		/**
+		 * path IRI/step/rank
+		 */
+		STEP,
+		/**
+		 * path IRI/position/position, either the begin or end of a step
+		 */
+		POSITION
+	}
+}
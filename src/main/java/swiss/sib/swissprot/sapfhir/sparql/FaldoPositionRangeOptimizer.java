@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractSimpleQueryModelVisitor;
+
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
+import swiss.sib.swissprot.sapfhir.statements.StatementProvider;
+
+/**
+ * Finds <code>?p faldo:position ?pos ; faldo:reference &lt;path&gt;</code>
+ * with filters comparing <code>?pos</code> to constants and replaces the
+ * position pattern with a {@link StepPositionRange}, dropping the reference
+ * pattern it implies. The filters are kept, the range only makes sure we look
+ * at far fewer steps.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ */
+class FaldoPositionRangeOptimizer<P extends PathHandle> implements QueryOptimizer {
+
+	private final PathHandleGraphSail<P, ?, ?, ?> sail;
+
+	FaldoPositionRangeOptimizer(PathHandleGraphSail<P, ?, ?, ?> sail) {
+		this.sail = sail;
+	}
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		tupleExpr.visit(new AbstractSimpleQueryModelVisitor<RuntimeException>(false) {
+
+			@Override
+			public void meet(Filter filter) {
+				if (filter.getCondition() instanceof Compare compare) {
+					pushDown(filter, compare);
+				}
+				super.meet(filter);
+			}
+		});
+	}
+
+	private void pushDown(Filter filter, Compare compare) {
+		VariableRange range = VariableRange.of(compare);
+		if (range == null) {
+			return;
+		}
+		Var var = range.var();
+		List<TupleExpr> patterns = new ArrayList<>();
+		VariableRange.collectPatterns(filter.getArg(), patterns);
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StepPositionRange<?> existing
+					&& existing.getPositionVar().getName().equals(var.getName())) {
+				existing.intersect(range.from(), range.to());
+				return;
+			}
+		}
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StatementPattern position && isPositionOf(position, var)) {
+				StatementPattern reference = referencePattern(position.getSubjectVar(), patterns);
+				if (reference != null) {
+					P path = StatementProvider.pathIriFromIri((IRI) reference.getObjectVar().getValue(), sail).path();
+					position.replaceWith(new StepPositionRange<>(position.getSubjectVar().clone(),
+							position.getObjectVar().clone(), path, range.from(), range.to()));
+					// Every position in the range is on the path, so the reference
+					// pattern can only repeat what the range returns.
+					VariableRange.removeFromJoin(reference);
+					return;
+				}
+			}
+		}
+	}
+
+	private static boolean isPositionOf(StatementPattern pattern, Var position) {
+		return FALDO.position.equals(pattern.getPredicateVar().getValue()) && pattern.getContextVar() == null
+				&& !pattern.getSubjectVar().hasValue() && !pattern.getObjectVar().hasValue()
+				&& pattern.getObjectVar().getName().equals(position.getName())
+				&& !pattern.getSubjectVar().getName().equals(position.getName());
+	}
+
+	private StatementPattern referencePattern(Var subject, List<TupleExpr> patterns) {
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StatementPattern reference
+					&& FALDO.reference.equals(reference.getPredicateVar().getValue())
+					&& reference.getContextVar() == null
+					&& reference.getSubjectVar().getName().equals(subject.getName())
+					&& reference.getObjectVar().getValue() instanceof IRI iri
+					&& StatementProvider.pathIriFromIri(iri, sail) != null) {
+				return reference;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri.Kind;
+import swiss.sib.swissprot.sapfhir.values.StepPositionIRI;
+
+/**
+ * Decodes IRI strings in a single pass over a prefix trie of the node namespace
+ * and all path namespaces. Built once per sail, as the graph is read only.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ */
+final class IriDecoder<P extends PathHandle> {
+
+	private static final String STEP = '/' + PathHandleGraphSail.STEP_IRI_PART;
+	private static final String POSITION = StepPositionIRI.POSITION;
+	/**
+	 * The digits of Long.MAX_VALUE, more always overflow a long
+	 */
+	private static final int MAX_DIGITS = 19;
+
+	private final TrieNode<P> root = new TrieNode<>();
+
+	/**
+	 * @param nodeNameSpace  the namespace all node IRIs start with
+	 * @param pathNameSpaces the IRI of every path
+	 */
+	IriDecoder(String nodeNameSpace, Map<P, String> pathNameSpaces) {
+		root.add(nodeNameSpace, 0).nodeNameSpace = true;
+		for (var en : pathNameSpaces.entrySet()) {
+			root.add(en.getValue(), 0).path = en.getKey();
+		}
+	}
+
+	/**
+	 * Decode an IRI string
+	 * 
+	 * @param iri to decode
+	 * @return what the IRI represents or null if it is not an IRI from this graph
+	 */
+	DecodedIri<P> decode(String iri) {
+		DecodedIri<P> found = null;
+		TrieNode<P> at = root;
+		int i = 0;
+		while (at != null) {
+			// A path name may be the prefix of another one so the longest namespace
+			// that leaves a valid remainder wins.
+			if (at.nodeNameSpace || at.path != null) {
+				DecodedIri<P> decoded = decodeRemainder(at, iri, i);
+				if (decoded != null) {
+					found = decoded;
+				}
+			}
+			if (i == iri.length()) {
+				break;
+			}
+			at = at.child(iri.charAt(i++));
+		}
+		return found;
+	}
+
+	private DecodedIri<P> decodeRemainder(TrieNode<P> at, String iri, int offset) {
+		if (at.nodeNameSpace) {
+			long id = parseNumber(iri, offset);
+			if (id >= 0) {
+				return new DecodedIri<>(Kind.NODE, null, id);
+			}
+		}
+		if (at.path != null) {
+			if (offset == iri.length()) {
+				return new DecodedIri<>(Kind.PATH, at.path, 0);
+			} else if (iri.startsWith(STEP, offset)) {
+				long rank = parseNumber(iri, offset + STEP.length());
+				if (rank >= 0) {
+					return new DecodedIri<>(Kind.STEP, at.path, rank);
+				}
+			} else if (iri.startsWith(POSITION, offset)) {
+				long position = parseNumber(iri, offset + POSITION.length());
+				if (position >= 0) {
+					return new DecodedIri<>(Kind.POSITION, at.path, position);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse the rest of the string as a number, in the same form as we generate
+	 * them. So no sign and no leading zeros.
+	 * 
+	 * @return the number or -1 if the rest of the string is not such a number
+	 */
+	private static long parseNumber(String iri, int offset) {
+		int digits = iri.length() - offset;
+		if (digits < 1 || digits > MAX_DIGITS || (digits > 1 && iri.charAt(offset) == '0')) {
+			return -1;
+		}
+		long number = 0;
+		for (int i = offset; i < iri.length(); i++) {
+			char c = iri.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			int digit = c - '0';
+			if (number > (Long.MAX_VALUE - digit) / 10) {
+				// Not a number we could have generated
+				return -1;
+			}
+			number = number * 10 + digit;
+		}
+		return number;
+	}
+
+	private static final class TrieNode<P> {
+		private char[] keys = new char[0];
+		private TrieNode<P>[] children = newChildren(0);
+		private P path;
+		private boolean nodeNameSpace;
+
+		TrieNode<P> child(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index < 0) {
+				return null;
+			}
+			return children[index];
+		}
+
+		/**
+		 * Add the rest of the string to the trie
+		 * 
+		 * @return the trie node at the end of the string
+		 */
+		TrieNode<P> add(String s, int offset) {
+			if (offset == s.length()) {
+				return this;
+			}
+			char c = s.charAt(offset);
+			int index = Arrays.binarySearch(keys, c);
+			if (index < 0) {
+				index = -index - 1;
+				char[] newKeys = new char[keys.length + 1];
+				TrieNode<P>[] newChildren = newChildren(keys.length + 1);
+				System.arraycopy(keys, 0, newKeys, 0, index);
+				System.arraycopy(children, 0, newChildren, 0, index);
+				newKeys[index] = c;
+				newChildren[index] = new TrieNode<>();
+				System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+				System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+				keys = newKeys;
+				children = newChildren;
+			}
+			return children[index].add(s, offset + 1);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <P> TrieNode<P>[] newChildren(int size) {
+			return (TrieNode<P>[]) new TrieNode<?>[size];
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import org.eclipse.rdf4j.query.algebra.AbstractQueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+/**
+ * Replaces the pattern <code>?node rdf:value ?sequence</code> when filters
+ * require the sequence to contain a fragment. Evaluated for the candidate nodes
+ * that the sequence index found, the filters are still needed to remove the
+ * nodes that do not match.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class NodeSequenceCandidates extends AbstractQueryModelNode implements TupleExpr {
+
+	private static final long serialVersionUID = 1;
+	private Var nodeVar;
+	private Var sequenceVar;
+	private long[] nodeIds;
+
+	/**
+	 * @param nodeVar     bound to the node IRI
+	 * @param sequenceVar bound to the sequence
+	 * @param nodeIds     the long form of the candidate node handles, in index
+	 *                    order
+	 */
+	NodeSequenceCandidates(Var nodeVar, Var sequenceVar, long[] nodeIds) {
+		setNodeVar(nodeVar);
+		setSequenceVar(sequenceVar);
+		this.nodeIds = nodeIds;
+	}
+
+	Var getNodeVar() {
+		return nodeVar;
+	}
+
+	private void setNodeVar(Var nodeVar) {
+		nodeVar.setParentNode(this);
+		this.nodeVar = nodeVar;
+	}
+
+	Var getSequenceVar() {
+		return sequenceVar;
+	}
+
+	private void setSequenceVar(Var sequenceVar) {
+		sequenceVar.setParentNode(this);
+		this.sequenceVar = sequenceVar;
+	}
+
+	long[] getNodeIds() {
+		return nodeIds;
+	}
+
+	/**
+	 * Keep only the candidates that are also candidates for another fragment
+	 * 
+	 * @param otherIds the candidates for the other fragment, in index order
+	 */
+	void retainAll(long[] otherIds) {
+		long[] sorted = otherIds.clone();
+		Arrays.sort(sorted);
+		retainIf(id -> Arrays.binarySearch(sorted, id) >= 0);
+	}
+
+	/**
+	 * Keep only the candidates that pass a test
+	 * 
+	 * @param test on the long form of the node handle
+	 */
+	void retainIf(LongPredicate test) {
+		nodeIds = Arrays.stream(nodeIds).filter(test).toArray();
+		resetCardinality();
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		return Set.of(nodeVar.getName(), sequenceVar.getName());
+	}
+
+	@Override
+	public Set<String> getAssuredBindingNames() {
+		return getBindingNames();
+	}
+
+	@Override
+	public <X extends Exception> void visit(QueryModelVisitor<X> visitor) throws X {
+		visitor.meetOther(this);
+	}
+
+	@Override
+	public <X extends Exception> void visitChildren(QueryModelVisitor<X> visitor) throws X {
+		nodeVar.visit(visitor);
+		sequenceVar.visit(visitor);
+	}
+
+	@Override
+	public void replaceChildNode(QueryModelNode current, QueryModelNode replacement) {
+		if (nodeVar == current) {
+			setNodeVar((Var) replacement);
+		} else if (sequenceVar == current) {
+			setSequenceVar((Var) replacement);
+		}
+	}
+
+	@Override
+	public String getSignature() {
+		return super.getSignature() + " (" + nodeIds.length + " candidates)";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof NodeSequenceCandidates o) {
+			return nodeVar.equals(o.nodeVar) && sequenceVar.equals(o.sequenceVar)
+					&& Arrays.equals(nodeIds, o.nodeIds);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(nodeVar, sequenceVar, Arrays.hashCode(nodeIds));
+	}
+
+	@Override
+	public NodeSequenceCandidates clone() {
+		NodeSequenceCandidates clone = (NodeSequenceCandidates) super.clone();
+		clone.setNodeVar(nodeVar.clone());
+		clone.setSequenceVar(sequenceVar.clone());
+		return clone;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+
+/**
+ * Replaces the patterns describing one node, e.g.
+ * <code>?node a vg:Node ; rdf:value ?sequence ; vg:linksForwardToForward ?next</code>.
+ * Evaluated by reading each node with its sequence and its edges once, instead
+ * of joining one pattern at a time.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class NodeStar extends StarJoin<NodeStar.Attribute> {
+
+	/**
+	 * What can be bound for a node, a node has one sequence but can have many
+	 * links of each kind
+	 */
+	enum Attribute {
+		VALUE(RDF.VALUE), LINKS(VG.links), LINKS_FORWARD_TO_FORWARD(VG.linksForwardToForward),
+		LINKS_FORWARD_TO_REVERSE(VG.linksForwardToReverse), LINKS_REVERSE_TO_FORWARD(VG.linksReverseToForward),
+		LINKS_REVERSE_TO_REVERSE(VG.linksReverseToReverse);
+
+		private final IRI predicate;
+
+		Attribute(IRI predicate) {
+			this.predicate = predicate;
+		}
+
+		/**
+		 * @return the predicate linking the node to the attribute
+		 */
+		IRI predicate() {
+			return predicate;
+		}
+
+		/**
+		 * @param predicate of a pattern on a node
+		 * @return the attribute or null
+		 */
+		static Attribute of(IRI predicate) {
+			for (Attribute attribute : values()) {
+				if (attribute.predicate.equals(predicate)) {
+					return attribute;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final long serialVersionUID = 1;
+
+	/**
+	 * @param subjectVar bound to the node IRI
+	 */
+	NodeStar(Var subjectVar) {
+		super(subjectVar, Attribute.class);
+	}
+
+	@Override
+	public NodeStar clone() {
+		return (NodeStar) super.clone();
+	}
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.concat;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.empty;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.flatMap;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.from;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.of;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.nodeIriFromIri;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.MutableBindingSet;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.QueryEvaluationContext;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.NodeStar.Attribute;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphTripleSource.CloseableIterationFromAutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.statements.NodeRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.values.NodeIRI;
+import swiss.sib.swissprot.sapfhir.values.SequenceLiteral;
+
+/**
+ * Evaluates a {@link NodeStar}. The nodes are found from the node itself, its
+ * sequence, or a node it links to. Otherwise all nodes are read together with
+ * their sequence. The links of each node are then read once from the edges to
+ * the right of both its strands, and every combination of the links that are
+ * asked for is bound.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ * @param <S> the type of StepHandle
+ * @param <E> the type of EdgeHandle
+ * @param <N> the type of NodeHandle
+ */
+final class NodeStarEvaluationStep<P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>>
+		implements QueryEvaluationStep {
+
+	/**
+	 * A node and its sequence, if that was read with it
+	 */
+	private record Found<N>(N node, Literal sequence) {
+	}
+
+	private final PathHandleGraphSail<P, S, N, E> sail;
+	private final PathGraph<P, S, N, E> pg;
+	private final QueryEvaluationContext context;
+	private final String subjectName;
+	private final BiConsumer<Value, MutableBindingSet> setSubject;
+	private final Map<Attribute, Var> vars;
+	private final Map<Attribute, BiConsumer<Value, MutableBindingSet>> setters = new EnumMap<>(Attribute.class);
+	private final List<Attribute> links = new ArrayList<>();
+
+	NodeStarEvaluationStep(NodeStar star, PathHandleGraphSail<P, S, N, E> sail, QueryEvaluationContext context) {
+		this.sail = sail;
+		this.pg = sail.pathGraph();
+		this.context = context;
+		this.subjectName = star.getSubjectVar().getName();
+		this.setSubject = context.setBinding(subjectName);
+		this.vars = new EnumMap<>(star.getAttributeVars());
+		for (Map.Entry<Attribute, Var> entry : vars.entrySet()) {
+			if (!entry.getValue().hasValue()) {
+				setters.put(entry.getKey(), context.setBinding(entry.getValue().getName()));
+			}
+			if (entry.getKey() != Attribute.VALUE) {
+				links.add(entry.getKey());
+			}
+		}
+	}
+
+	@Override
+	public CloseableIteration<BindingSet> evaluate(BindingSet bindings) {
+		Map<Attribute, Value> known = new EnumMap<>(Attribute.class);
+		for (Map.Entry<Attribute, Var> entry : vars.entrySet()) {
+			Var var = entry.getValue();
+			Value value = var.hasValue() ? var.getValue() : bindings.getValue(var.getName());
+			if (value != null) {
+				known.put(entry.getKey(), value);
+			}
+		}
+		AutoClosedIterator<Found<N>> nodes = nodes(bindings.getValue(subjectName), known);
+		AutoClosedIterator<BindingSet> solutions = flatMap(map(nodes, n -> solutions(n, bindings)));
+		return new CloseableIterationFromAutoClosedIterator<>(solutions);
+	}
+
+	private AutoClosedIterator<Found<N>> nodes(Value subject, Map<Attribute, Value> known) {
+		if (subject != null) {
+			NodeIRI<N> node = subject instanceof IRI iri ? nodeIriFromIri(iri, sail) : null;
+			return node == null ? empty() : of(new Found<>(node.node(), null));
+		}
+		var provider = new NodeRelatedStatementProvider<>(sail);
+		Value sequence = known.get(Attribute.VALUE);
+		if (sequence != null) {
+			if (!(sequence instanceof Literal)) {
+				return empty();
+			}
+			// From the sequence hash index
+			return map(provider.getStatements(null, Attribute.VALUE.predicate(), sequence),
+					s -> new Found<>(subjectOf(s).node(), (Literal) s.getObject()));
+		}
+		for (Attribute link : links) {
+			Value target = known.get(link);
+			if (target != null) {
+				if (!(target instanceof IRI iri) || nodeIriFromIri(iri, sail) == null) {
+					return empty();
+				}
+				// A node can link to the target from either strand, each is found once
+				Set<Long> ids = new LinkedHashSet<>();
+				try (var statements = provider.getStatements(null, link.predicate(), target)) {
+					while (statements.hasNext()) {
+						ids.add(Math.abs(subjectOf(statements.next()).id()));
+					}
+				}
+				return map(from(ids.iterator()), id -> new Found<>(pg.fromLong(id), null));
+			}
+		}
+		if (vars.containsKey(Attribute.VALUE)) {
+			return map(pg.nodesWithTheirSequence(), ns -> new Found<>(ns.node(), new SequenceLiteral<N, E>(ns.sequence())));
+		}
+		return map(pg.nodes(), n -> new Found<>(n, null));
+	}
+
+	@SuppressWarnings("unchecked")
+	private NodeIRI<N> subjectOf(Statement statement) {
+		return (NodeIRI<N>) statement.getSubject();
+	}
+
+	private AutoClosedIterator<BindingSet> solutions(Found<N> found, BindingSet bindings) {
+		N node = found.node();
+		MutableBindingSet solution = context.createBindingSet(bindings);
+		if (!StarJoin.bind(subjectName, new NodeIRI<>(pg.asLong(node), sail), setSubject, solution)) {
+			return empty();
+		}
+		if (vars.containsKey(Attribute.VALUE)) {
+			Literal sequence = found.sequence();
+			if (sequence == null) {
+				sequence = sail.getValueFactory().createSequenceLiteral(node, pg);
+			}
+			if (!matches(Attribute.VALUE, sequence, solution)) {
+				return empty();
+			}
+		}
+		if (links.isEmpty()) {
+			return of(solution);
+		}
+		Map<Attribute, List<Value>> linked = linksOf(node);
+		List<MutableBindingSet> solutions = List.of(solution);
+		for (Attribute link : links) {
+			List<MutableBindingSet> extended = new ArrayList<>();
+			for (MutableBindingSet partial : solutions) {
+				for (Value target : linked.get(link)) {
+					MutableBindingSet next = context.createBindingSet(partial);
+					if (matches(link, target, next)) {
+						extended.add(next);
+					}
+				}
+			}
+			solutions = extended;
+		}
+		return from(new ArrayList<BindingSet>(solutions).iterator());
+	}
+
+	/**
+	 * The nodes linked to, for each kind of link that is asked for. Each edge to
+	 * the right of either strand is both a vg:links and one oriented link.
+	 */
+	private Map<Attribute, List<Value>> linksOf(N node) {
+		Map<Attribute, List<Value>> linked = new EnumMap<>(Attribute.class);
+		for (Attribute link : links) {
+			linked.put(link, new ArrayList<>());
+		}
+		try (AutoClosedIterator<E> edges = concat(pg.followEdgesToWardsTheRight(node),
+				pg.followEdgesToWardsTheRight(pg.flip(node)))) {
+			while (edges.hasNext()) {
+				E edge = edges.next();
+				NodeIRI<N> target = new NodeIRI<>(pg.asLong(edge.right()), sail);
+				List<Value> any = linked.get(Attribute.LINKS);
+				if (any != null) {
+					any.add(target);
+				}
+				List<Value> oriented = linked.get(orientation(edge));
+				if (oriented != null) {
+					oriented.add(target);
+				}
+			}
+		}
+		return linked;
+	}
+
+	private Attribute orientation(E edge) {
+		boolean leftIsReverse = pg.isReverseNodeHandle(edge.left());
+		boolean rightIsReverse = pg.isReverseNodeHandle(edge.right());
+		if (leftIsReverse) {
+			return rightIsReverse ? Attribute.LINKS_REVERSE_TO_REVERSE : Attribute.LINKS_REVERSE_TO_FORWARD;
+		}
+		return rightIsReverse ? Attribute.LINKS_FORWARD_TO_REVERSE : Attribute.LINKS_FORWARD_TO_FORWARD;
+	}
+
+	private boolean matches(Attribute attribute, Value value, MutableBindingSet solution) {
+		Var var = vars.get(attribute);
+		if (var.hasValue()) {
+			return value.equals(var.getValue());
+		}
+		return StarJoin.bind(var.getName(), value, setters.get(attribute), solution);
+	}
+}
@@ -20,12 +20,16 @@
 package swiss.sib.swissprot.sapfhir.sparql;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.rdf4j.model.BNode;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.vocabulary.RDF4J;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
 import org.eclipse.rdf4j.query.algebra.StatementPattern;
 import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
@@ -34,9 +38,19 @@ import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
 import io.github.jervenbolleman.handlegraph4j.NodeHandle;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import swiss.sib.swissprot.sapfhir.statements.AccessPath;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics;
+import swiss.sib.swissprot.sapfhir.statements.StarPattern;
+import swiss.sib.swissprot.sapfhir.statements.StepPositionStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StepRelatedStatementProvider;
 
 /**
- * Specialized statistics for query planning
+ * Specialized statistics for query planning. The statements a pattern matches
+ * are weighed by the cost of how they are read from the graph, so that the
+ * join optimizer compares what patterns cost and not only how many statements
+ * they match. Patterns on the same subject variable are estimated together,
+ * as the statements generated for a step, node, path or position follow a
+ * fixed schema.
  * 
  * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
  */
@@ -62,6 +76,10 @@ class PathHandleEvaluationStatistics<P extends PathHandle, S extends StepHandle,
 
 		@Override
 		protected double getCardinality(StatementPattern sp) {
+			return independentCardinality(sp) * starSelectivity(sp);
+		}
+
+		private double independentCardinality(StatementPattern sp) {
 			try {
 				Value subj = getConstantValue(sp.getSubjectVar());
 				if (!(subj instanceof Resource)) {
@@ -90,15 +108,179 @@ class PathHandleEvaluationStatistics<P extends PathHandle, S extends StepHandle,
 			}
 		}
 
+		/**
+		 * A star join, all patterns on the same unbound subject, matches as many
+		 * subjects as its characteristic set, each with the statements of every
+		 * pattern.
+		 */
+		@Override
+		public void meet(Join node) {
+			List<StatementPattern> patterns = new ArrayList<>();
+			if (!joinedPatterns(node, patterns) || !isStar(patterns)) {
+				super.meet(node);
+				return;
+			}
+			List<StarPattern> star = patterns.stream().map(this::starPattern).toList();
+			double estimate = ts.estimateStarSubjectCount(star);
+			for (StatementPattern sp : patterns) {
+				double subjects = ts.estimateStarSubjectCount(List.of(starPattern(sp)));
+				estimate *= subjects > 0 ? independentCardinality(sp) / subjects : 0;
+			}
+			cardinality = estimate;
+		}
+
+		/**
+		 * The fraction of the subjects matching a pattern that also match the other
+		 * patterns joined on the same subject variable. Patterns are otherwise
+		 * estimated as if independent of each other, while the schema of a step or
+		 * node ties them together.
+		 */
+		private double starSelectivity(StatementPattern sp) {
+			Var subject = sp.getSubjectVar();
+			if (subject.hasValue() || sp.getContextVar() != null) {
+				return 1;
+			}
+			QueryModelNode top = sp;
+			while (top.getParentNode() instanceof Join join) {
+				top = join;
+			}
+			List<StatementPattern> patterns = new ArrayList<>();
+			joinedPatterns(top, patterns);
+			List<StarPattern> star = new ArrayList<>();
+			for (StatementPattern pattern : patterns) {
+				if (isStar(List.of(sp, pattern))) {
+					star.add(starPattern(pattern));
+				}
+			}
+			if (star.size() < 2) {
+				return 1;
+			}
+			double alone = ts.estimateStarSubjectCount(List.of(starPattern(sp)));
+			if (alone <= 0) {
+				return 1;
+			}
+			return Math.min(1, ts.estimateStarSubjectCount(star) / alone);
+		}
+
+		private StarPattern starPattern(StatementPattern sp) {
+			Value pred = getConstantValue(sp.getPredicateVar());
+			Value obj = getConstantValue(sp.getObjectVar());
+			return new StarPattern(pred instanceof IRI iri ? iri : null, obj instanceof BNode ? null : obj);
+		}
+
+		/**
+		 * @return false if anything but statement patterns is joined
+		 */
+		private static boolean joinedPatterns(QueryModelNode node, List<StatementPattern> patterns) {
+			if (node instanceof Join join) {
+				boolean left = joinedPatterns(join.getLeftArg(), patterns);
+				boolean right = joinedPatterns(join.getRightArg(), patterns);
+				return left && right;
+			} else if (node instanceof StatementPattern sp) {
+				patterns.add(sp);
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		private static boolean isStar(List<StatementPattern> patterns) {
+			String subject = null;
+			for (StatementPattern sp : patterns) {
+				Var var = sp.getSubjectVar();
+				if (var.hasValue() || sp.getContextVar() != null) {
+					return false;
+				} else if (subject == null) {
+					subject = var.getName();
+				} else if (!subject.equals(var.getName())) {
+					return false;
+				}
+			}
+			return subject != null;
+		}
+
 		private double cardinality(Resource subj, IRI pred, Value obj, Resource context) throws IOException {
 			if (subj instanceof BNode || obj instanceof BNode || context != null || RDF4J.NIL.equals(context)) {
 				return 0;
 			}
 			double estimate = Double.MAX_VALUE;
-			estimate = Math.min(estimate, ts.estimateCardinality(subj, pred, obj));
+			estimate = Math.min(estimate, ts.estimateCost(subj, pred, obj));
 			return estimate;
 		}
 
+		@Override
+		public void meetOther(QueryModelNode node) {
+			if (node instanceof StepPositionRange<?> range) {
+				@SuppressWarnings("unchecked")
+				P path = (P) range.getPath();
+				var provider = new StepPositionStatementProvider<>(ts.vf().graph());
+				cardinality = provider.estimatePositionStatementsInRange(path, range.getFrom(), range.getTo());
+			} else if (node instanceof StepRankRange<?> range) {
+				@SuppressWarnings("unchecked")
+				P path = (P) range.getPath();
+				var provider = new StepRelatedStatementProvider<>(ts.vf().graph());
+				cardinality = provider.estimateRankStatementsInRange(path, range.getFrom(), range.getTo());
+			} else if (node instanceof NodeSequenceCandidates candidates) {
+				cardinality = candidates.getNodeIds().length * sequenceLookupCost();
+			} else if (node instanceof SequenceLengthRange range) {
+				GraphStatistics statistics = ts.vf().graph().statistics();
+				if (statistics != null) {
+					// Avoids building the sequence lengths just to plan
+					cardinality = statistics.sequenceLengths().count(range.getFrom(), range.getTo());
+				} else {
+					cardinality = ts.vf().graph().sequenceLengths().count(range.getFrom(), range.getTo());
+				}
+				cardinality *= sequenceLookupCost();
+			} else if (node instanceof StepStar star) {
+				cardinality = stepCardinality(star);
+			} else if (node instanceof StepWindow window) {
+				// One window per step, but no more than the most selective step allows
+				cardinality = Double.MAX_VALUE;
+				for (StepStar star : window.getSteps()) {
+					cardinality = Math.min(cardinality, stepCardinality(star));
+				}
+			} else if (node instanceof NodeStar star) {
+				List<StarPattern> patterns = new ArrayList<>();
+				double links = 1;
+				for (var entry : star.getAttributeVars().entrySet()) {
+					StarPattern pattern = new StarPattern(entry.getKey().predicate(), entry.getValue().getValue());
+					patterns.add(pattern);
+					if (entry.getKey() != NodeStar.Attribute.VALUE) {
+						// A node has a row for every link it has of each kind
+						double subjects = ts.estimateStarSubjectCount(List.of(pattern));
+						if (subjects > 0) {
+							links *= Math.max(1, ts.estimateCardinality(null, pattern.predicate(), pattern.object())
+									/ subjects);
+						}
+					}
+				}
+				cardinality = ts.estimateStarSubjectCount(patterns) * links;
+			} else {
+				super.meetOther(node);
+			}
+		}
+
+		/**
+		 * Each step has one of every attribute
+		 */
+		private double stepCardinality(StepStar star) {
+			List<StarPattern> patterns = new ArrayList<>();
+			for (var entry : star.getAttributeVars().entrySet()) {
+				IRI predicate = entry.getKey().predicate();
+				if (predicate != null) {
+					patterns.add(new StarPattern(predicate, entry.getValue().getValue()));
+				}
+			}
+			return ts.estimateStarSubjectCount(patterns);
+		}
+
+		/**
+		 * The nodes found in an index are generated with their sequence
+		 */
+		private double sequenceLookupCost() {
+			return ts.vf().graph().accessCosts().cost(AccessPath.SEQUENCE_LOOKUP);
+		}
+
 		protected Value getConstantValue(Var var) {
 			return (var != null) ? var.getValue() : null;
 		}
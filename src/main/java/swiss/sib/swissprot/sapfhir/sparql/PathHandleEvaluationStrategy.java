@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.filter;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.flatMap;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.from;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.nodeIriFromIri;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.stream.LongStream;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.MutableBindingSet;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.DefaultEvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.QueryEvaluationContext;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphTripleSource.CloseableIterationFromAutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.statements.NodeRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StepPositionStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StepRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.values.NodeIRI;
+import swiss.sib.swissprot.sapfhir.values.StepIRI;
+import swiss.sib.swissprot.sapfhir.values.StepPositionIRI;
+
+/**
+ * Evaluates the plan nodes that our optimizers introduce, everything else is
+ * evaluated as usual.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ * @param <S> the type of StepHandle
+ * @param <E> the type of EdgeHandle
+ * @param <N> the type of NodeHandle
+ */
+class PathHandleEvaluationStrategy<P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>>
+		extends DefaultEvaluationStrategy {
+
+	private final PathHandleGraphSail<P, S, N, E> sail;
+
+	PathHandleEvaluationStrategy(PathHandleGraphTripleSource<P, S, N, E> tripleSource,
+			FederatedServiceResolver serviceResolver) {
+		super(tripleSource, serviceResolver);
+		this.sail = tripleSource.vf().graph();
+	}
+
+	@Override
+	public QueryEvaluationStep precompile(TupleExpr expr, QueryEvaluationContext context) {
+		if (expr instanceof StepPositionRange<?> range) {
+			@SuppressWarnings("unchecked")
+			StepPositionRange<P> pathRange = (StepPositionRange<P>) range;
+			return prepare(pathRange, context);
+		} else if (expr instanceof StepRankRange<?> range) {
+			@SuppressWarnings("unchecked")
+			StepRankRange<P> rankRange = (StepRankRange<P>) range;
+			return prepare(rankRange, context);
+		} else if (expr instanceof NodeSequenceCandidates candidates) {
+			return prepare(candidates, context);
+		} else if (expr instanceof SequenceLengthRange range) {
+			return prepare(range, context);
+		} else if (expr instanceof StepStar star) {
+			return new StepStarEvaluationStep<>(star, sail, context);
+		} else if (expr instanceof NodeStar star) {
+			return new NodeStarEvaluationStep<>(star, sail, context);
+		} else if (expr instanceof StepWindow window) {
+			return new StepWindowEvaluationStep<>(window, sail, context);
+		}
+		return super.precompile(expr, context);
+	}
+
+	private QueryEvaluationStep prepare(StepPositionRange<P> range, QueryEvaluationContext context) {
+		var provider = new StepPositionStatementProvider<>(sail);
+		String subjectName = range.getSubjectVar().getName();
+		String positionName = range.getPositionVar().getName();
+		BiConsumer<Value, MutableBindingSet> setSubject = context.setBinding(subjectName);
+		BiConsumer<Value, MutableBindingSet> setPosition = context.setBinding(positionName);
+		P path = range.getPath();
+		long from = range.getFrom();
+		long to = range.getTo();
+		return bindings -> {
+			Value subject = bindings.getValue(subjectName);
+			Value position = bindings.getValue(positionName);
+			AutoClosedIterator<Statement> statements;
+			if (subject instanceof Resource) {
+				// A known begin or end has one position, cheaper to look up than to slice
+				statements = filter(provider.getStatements((Resource) subject, FALDO.position, position), s -> {
+					long p = ((Literal) s.getObject()).longValue();
+					return p >= from && p < to && path.equals(((StepPositionIRI<?, ?>) s.getSubject()).path());
+				});
+			} else {
+				statements = filter(provider.getPositionStatementsInRange(path, from, to),
+						s -> (subject == null || subject.equals(s.getSubject()))
+								&& (position == null || position.equals(s.getObject())));
+			}
+			AutoClosedIterator<BindingSet> solutions = map(statements, s -> {
+				MutableBindingSet solution = context.createBindingSet(bindings);
+				setSubject.accept(s.getSubject(), solution);
+				setPosition.accept(s.getObject(), solution);
+				return solution;
+			});
+			return new CloseableIterationFromAutoClosedIterator<>(solutions);
+		};
+	}
+
+	private QueryEvaluationStep prepare(StepRankRange<P> range, QueryEvaluationContext context) {
+		var provider = new StepRelatedStatementProvider<>(sail);
+		String subjectName = range.getSubjectVar().getName();
+		String rankName = range.getRankVar().getName();
+		BiConsumer<Value, MutableBindingSet> setSubject = context.setBinding(subjectName);
+		BiConsumer<Value, MutableBindingSet> setRank = context.setBinding(rankName);
+		P path = range.getPath();
+		long from = range.getFrom();
+		long to = range.getTo();
+		return bindings -> {
+			Value subject = bindings.getValue(subjectName);
+			Value rank = bindings.getValue(rankName);
+			AutoClosedIterator<Statement> statements;
+			if (subject instanceof Resource) {
+				// A known step has one rank, cheaper to look up than to slice
+				statements = filter(provider.getStatements((Resource) subject, VG.rank, rank), s -> {
+					long r = ((Literal) s.getObject()).longValue();
+					return r >= from && r < to && (path == null || path.equals(((StepIRI<?>) s.getSubject()).path()));
+				});
+			} else {
+				statements = filter(provider.getRankStatementsInRange(path, from, to),
+						s -> (subject == null || subject.equals(s.getSubject()))
+								&& (rank == null || rank.equals(s.getObject())));
+			}
+			AutoClosedIterator<BindingSet> solutions = map(statements, s -> {
+				MutableBindingSet solution = context.createBindingSet(bindings);
+				setSubject.accept(s.getSubject(), solution);
+				setRank.accept(s.getObject(), solution);
+				return solution;
+			});
+			return new CloseableIterationFromAutoClosedIterator<>(solutions);
+		};
+	}
+
+	private QueryEvaluationStep prepare(NodeSequenceCandidates candidates, QueryEvaluationContext context) {
+		var provider = new NodeRelatedStatementProvider<>(sail);
+		String nodeName = candidates.getNodeVar().getName();
+		String sequenceName = candidates.getSequenceVar().getName();
+		BiConsumer<Value, MutableBindingSet> setNode = context.setBinding(nodeName);
+		BiConsumer<Value, MutableBindingSet> setSequence = context.setBinding(sequenceName);
+		long[] nodeIds = candidates.getNodeIds();
+		// Sorted once, so a bound node is looked up instead of compared to all
+		long[] sortedNodeIds = nodeIds.clone();
+		Arrays.sort(sortedNodeIds);
+		return bindings -> {
+			Value node = bindings.getValue(nodeName);
+			Value sequence = bindings.getValue(sequenceName);
+			AutoClosedIterator<Statement> statements;
+			if (node != null) {
+				// Only the bound node, if it is a candidate at all
+				NodeIRI<N> ni = node instanceof IRI iri ? nodeIriFromIri(iri, sail) : null;
+				boolean candidate = ni != null && Arrays.binarySearch(sortedNodeIds, ni.id()) >= 0;
+				statements = candidate ? provider.getStatements((Resource) node, RDF.VALUE, sequence)
+						: AutoClosedIterator.empty();
+			} else {
+				statements = flatMap(map(from(Arrays.stream(nodeIds).iterator()),
+						id -> provider.getStatements(new NodeIRI<>(id, sail), RDF.VALUE, sequence)));
+			}
+			AutoClosedIterator<BindingSet> solutions = map(statements, s -> {
+				MutableBindingSet solution = context.createBindingSet(bindings);
+				setNode.accept(s.getSubject(), solution);
+				setSequence.accept(s.getObject(), solution);
+				return solution;
+			});
+			return new CloseableIterationFromAutoClosedIterator<>(solutions);
+		};
+	}
+
+	private QueryEvaluationStep prepare(SequenceLengthRange range, QueryEvaluationContext context) {
+		var provider = new NodeRelatedStatementProvider<>(sail);
+		String nodeName = range.getNodeVar().getName();
+		String sequenceName = range.getSequenceVar().getName();
+		BiConsumer<Value, MutableBindingSet> setNode = context.setBinding(nodeName);
+		BiConsumer<Value, MutableBindingSet> setSequence = context.setBinding(sequenceName);
+		long from = range.getFrom();
+		long to = range.getTo();
+		return bindings -> {
+			Value node = bindings.getValue(nodeName);
+			Value sequence = bindings.getValue(sequenceName);
+			AutoClosedIterator<Statement> statements;
+			if (node != null) {
+				NodeIRI<N> ni = node instanceof IRI iri ? nodeIriFromIri(iri, sail) : null;
+				// An IRI in the node namespace is not yet a node of the graph
+				boolean exists = ni != null && sail.sequenceLengths().contains(Math.abs(ni.id()));
+				long length = exists ? sail.pathGraph().sequenceLengthOf(ni.node()) : -1;
+				statements = length >= from && length < to ? provider.getStatements(ni, RDF.VALUE, sequence)
+						: AutoClosedIterator.empty();
+			} else {
+				LongStream nodeIds = sail.sequenceLengths().nodeIds(from, to);
+				statements = flatMap(map(from(nodeIds.iterator()),
+						id -> provider.getStatements(new NodeIRI<>(id, sail), RDF.VALUE, sequence)));
+			}
+			AutoClosedIterator<BindingSet> solutions = map(statements, s -> {
+				MutableBindingSet solution = context.createBindingSet(bindings);
+				setNode.accept(s.getSubject(), solution);
+				setSequence.accept(s.getObject(), solution);
+				return solution;
+			});
+			return new CloseableIterationFromAutoClosedIterator<>(solutions);
+		};
+	}
+}
@@ -19,9 +19,12 @@
  */
 package swiss.sib.swissprot.sapfhir.sparql;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.eclipse.rdf4j.collection.factory.api.CollectionFactory;
 import org.eclipse.rdf4j.collection.factory.impl.DefaultCollectionFactory;
@@ -34,7 +37,20 @@ import io.github.jervenbolleman.handlegraph4j.NodeHandle;
 import io.github.jervenbolleman.handlegraph4j.PathGraph;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.index.EdgeSet;
+import swiss.sib.swissprot.sapfhir.index.NodeStepIndex;
+import swiss.sib.swissprot.sapfhir.index.SequenceHashIndex;
+import swiss.sib.swissprot.sapfhir.index.SequenceKmerIndex;
+import swiss.sib.swissprot.sapfhir.index.SequenceLengths;
+import swiss.sib.swissprot.sapfhir.index.StepPositionIndex;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri.Kind;
+import swiss.sib.swissprot.sapfhir.statements.AccessCosts;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics;
 import swiss.sib.swissprot.sapfhir.values.HandleGraphValueFactory;
+import swiss.sib.swissprot.sapfhir.values.StepBeginPositionIRI;
+import swiss.sib.swissprot.sapfhir.values.StepEndPositionIRI;
+import swiss.sib.swissprot.sapfhir.values.StepPositionIRI;
 
 /**
  * A Sail that is backed by an HandleGraph that has paths embedded in it.
@@ -50,9 +66,33 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 
 	private static final String NODE_IRI_PART = "node/";
 	private static final String PATH_IRI_PART = "path/";
-	private static final String STEP_IRI_PART = "step/";
+	static final String STEP_IRI_PART = "step/";
 	private final PathGraph<P, S, N, E> pathGraph;
 	private final String base;
+	private final String nodeNameSpace;
+	private final Map<P, PathNameSpaces> pathNameSpaces;
+	private final IriDecoder<P> iriDecoder;
+	private final StepPositionIndex<P> positionIndex;
+	private volatile NodeStepIndex<P> nodeStepIndex;
+	private volatile EdgeSet edgeSet;
+	private volatile SequenceKmerIndex sequenceIndex;
+	private volatile SequenceLengths sequenceLengths;
+	private volatile SequenceHashIndex sequenceHashIndex;
+	private volatile GraphStatistics statistics;
+	private volatile AccessCosts accessCosts;
+	private final Map<P, Long> stepCounts = new ConcurrentHashMap<>();
+
+	/**
+	 * The prefixes of all IRIs related to one path. Built once as rendering step
+	 * and position IRIs would otherwise rebuild them for every value.
+	 * 
+	 * @param path     the IRI of the path
+	 * @param step     the IRI of the path followed by /step/
+	 * @param position the IRI of the path followed by /position/
+	 */
+	private record PathNameSpaces(String path, String step, String position) {
+
+	}
 
 	/**
 	 * A Sail wrapping an handlegraph with paths allowing SPARQL queries on an DNA
@@ -62,13 +102,84 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @param base      the base for all IRI's generated from this graph
 	 */
 	public PathHandleGraphSail(PathGraph<P, S, N, E> pathGraph, String base) {
+		this(pathGraph, base, (StepPositionIndex<P>) null);
+	}
+
+	/**
+	 * A Sail wrapping an handlegraph with paths, that looks up the begin and end
+	 * positions of steps in a memory mapped index instead of asking the graph.
+	 * 
+	 * @param pathGraph         the graph we are working on
+	 * @param base              the base for all IRI's generated from this graph
+	 * @param positionIndexFile where the step position index is stored, it is
+	 *                          built if missing or out of date
+	 */
+	public PathHandleGraphSail(PathGraph<P, S, N, E> pathGraph, String base, Path positionIndexFile) {
+		this(pathGraph, base, loadPositionIndex(pathGraph, positionIndexFile));
+	}
+
+	private PathHandleGraphSail(PathGraph<P, S, N, E> pathGraph, String base, StepPositionIndex<P> positionIndex) {
 		this.pathGraph = pathGraph;
 		this.base = base;
+		this.nodeNameSpace = base + NODE_IRI_PART;
+		this.pathNameSpaces = buildPathNameSpaces();
+		this.iriDecoder = buildIriDecoder();
+		this.positionIndex = positionIndex;
+	}
+
+	private static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> StepPositionIndex<P> loadPositionIndex(
+			PathGraph<P, S, N, E> pathGraph, Path positionIndexFile) {
+		try {
+			return StepPositionIndex.buildOrLoad(pathGraph, positionIndexFile);
+		} catch (IOException e) {
+			throw new SailException("Could not build or load the position index " + positionIndexFile, e);
+		}
+	}
+
+	private Map<P, PathNameSpaces> buildPathNameSpaces() {
+		Map<P, PathNameSpaces> nameSpaces = new HashMap<>();
+		try (AutoClosedIterator<P> paths = pathGraph.paths()) {
+			while (paths.hasNext()) {
+				P path = paths.next();
+				nameSpaces.put(path, buildPathNameSpaces(path));
+			}
+		}
+		return Map.copyOf(nameSpaces);
+	}
+
+	private IriDecoder<P> buildIriDecoder() {
+		Map<P, String> pathIris = new HashMap<>();
+		for (var en : pathNameSpaces.entrySet()) {
+			pathIris.put(en.getKey(), en.getValue().path());
+		}
+		return new IriDecoder<>(nodeNameSpace, pathIris);
+	}
+
+	private PathNameSpaces buildPathNameSpaces(P path) {
+		String nameOfPath = pathGraph.nameOfPath(path);
+		String pathNameSpace;
+		if (mightBeHttpOrFtpIri(nameOfPath)) {
+			pathNameSpace = nameOfPath;
+		} else {
+			pathNameSpace = base + PATH_IRI_PART + nameOfPath;
+		}
+		return new PathNameSpaces(pathNameSpace, pathNameSpace + '/' + STEP_IRI_PART,
+				pathNameSpace + StepPositionIRI.POSITION);
+	}
+
+	private PathNameSpaces pathNameSpaces(P path) {
+		PathNameSpaces nameSpaces = pathNameSpaces.get(path);
+		if (nameSpaces == null) {
+			return buildPathNameSpaces(path);
+		}
+		return nameSpaces;
 	}
 
 	@Override
 	protected void shutDownInternal() throws SailException {
-
+		if (positionIndex != null) {
+			positionIndex.close();
+		}
 	}
 
 	@Override
@@ -93,7 +204,7 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return the namespace of all nodes.
 	 */
 	public String getNodeNameSpace() {
-		return base + NODE_IRI_PART;
+		return nodeNameSpace;
 	}
 
 	/**
@@ -103,12 +214,39 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return one which is generated or retrieved
 	 */
 	public String getPathNameSpace(P path) {
-		String nameOfPath = pathGraph.nameOfPath(path);
-		if (mightBeHttpOrFtpIri(nameOfPath)) {
-			return nameOfPath;
-		} else {
-			return base + PATH_IRI_PART + getPathName(path);
-		}
+		return pathNameSpaces(path).path();
+	}
+
+	/**
+	 * The namespace for the steps of a path.
+	 * 
+	 * @param path to return the step namespace for
+	 * @return the path namespace followed by /step/
+	 */
+	public String getStepNameSpace(P path) {
+		return pathNameSpaces(path).step();
+	}
+
+	/**
+	 * The namespace for the begin and end positions of the steps of a path.
+	 * 
+	 * @param path to return the position namespace for
+	 * @return the path namespace followed by /position/
+	 */
+	public String getPositionNameSpace(P path) {
+		return pathNameSpaces(path).position();
+	}
+
+	/**
+	 * Work out what an IRI string represents in this graph, without looking at
+	 * the graph itself.
+	 * 
+	 * @param iri to decode
+	 * @return the kind of IRI with the path and number in it, or null if this
+	 *         graph would never generate such an IRI
+	 */
+	public DecodedIri<P> decodeIri(String iri) {
+		return iriDecoder.decode(iri);
 	}
 
 	/**
@@ -118,14 +256,7 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return if it is found
 	 */
 	public boolean hasPathNameSpace(String namespace) {
-		if (namespace.startsWith(base + PATH_IRI_PART)) {
-			String pathNamePart = namespace.substring(base.length() + PATH_IRI_PART.length());
-			return pathGraph.pathByName(pathNamePart) != null;
-		} else if (mightBeHttpOrFtpIri(namespace)) {
-			return pathGraph.pathByName(namespace) != null;
-		} else {
-			return false;
-		}
+		return pathFromIriString(namespace) != null;
 	}
 
 	/**
@@ -135,18 +266,8 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return true if the namespace could match nodes else false
 	 */
 	public boolean matchesNodeIriPattern(String namespace) {
-		String nodeIriStart = base + NODE_IRI_PART;
-		boolean looksLikeNodeIRI = namespace.startsWith(nodeIriStart);
-		if (looksLikeNodeIRI && namespace.length() > nodeIriStart.length()) {
-			try {
-				Long.parseLong(namespace.substring(nodeIriStart.length()));
-				return true;
-			} catch (NumberFormatException e) {
-				return false;
-			}
-		} else {
-			return false;
-		}
+		DecodedIri<P> decoded = iriDecoder.decode(namespace);
+		return decoded != null && decoded.kind() == Kind.NODE;
 	}
 
 	/**
@@ -156,20 +277,11 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return an N or null
 	 */
 	public N nodeFromIriString(String possibleNodeIri) {
-		String nodeIriStart = base + NODE_IRI_PART;
-		boolean looksLikeNodeIRI = possibleNodeIri.startsWith(nodeIriStart);
-		int nodeIdStart = nodeIriStart.length();
-		if (looksLikeNodeIRI && possibleNodeIri.length() > nodeIdStart) {
-			try {
-				String nodeIdPart = possibleNodeIri.substring(nodeIdStart);
-				long nodeId = Long.parseLong(nodeIdPart);
-				return pathGraph.fromLong(nodeId);
-			} catch (NumberFormatException e) {
-				return null;
-			}
-		} else {
-			return null;
+		DecodedIri<P> decoded = iriDecoder.decode(possibleNodeIri);
+		if (decoded != null && decoded.kind() == Kind.NODE) {
+			return pathGraph.fromLong(decoded.value());
 		}
+		return null;
 	}
 
 	/**
@@ -179,13 +291,11 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return the path or null
 	 */
 	public P pathFromIriString(String possiblePathIri) {
-		if (possiblePathIri.startsWith(base + PATH_IRI_PART)) {
-			return pathGraph.pathByName(possiblePathIri.substring(base.length() + PATH_IRI_PART.length()));
-		} else if (mightBeHttpOrFtpIri(possiblePathIri)) {
-			return pathGraph.pathByName(possiblePathIri);
-		} else {
-			return null;
+		DecodedIri<P> decoded = iriDecoder.decode(possiblePathIri);
+		if (decoded != null && decoded.kind() == Kind.PATH) {
+			return decoded.path();
 		}
+		return null;
 	}
 
 	/**
@@ -195,54 +305,288 @@ public class PathHandleGraphSail<P extends PathHandle, S extends StepHandle, N e
 	 * @return a step or null if not found.
 	 */
 	public S stepFromIriString(String possibleStepIri) {
+		DecodedIri<P> decoded = iriDecoder.decode(possibleStepIri);
+		if (decoded != null && decoded.kind() == Kind.STEP) {
+			return pathGraph.stepByRankAndPath(decoded.path(), decoded.value());
+		}
+		return null;
+	}
 
-		S s = extractStepFromBasicPathPattern(possibleStepIri);
-		if (s != null) {
-			return s;
+	/**
+	 * Given an IRI string try to find the step that begins or ends at that
+	 * position.
+	 *
+	 * @param possiblePositionIri that might be a begin or end position iri
+	 * @return a begin or end position IRI or null if no step is there
+	 */
+	public StepPositionIRI<P, S> stepPositionFromIriString(String possiblePositionIri) {
+		DecodedIri<P> decoded = iriDecoder.decode(possiblePositionIri);
+		if (decoded == null || decoded.kind() != Kind.POSITION) {
+			return null;
+		}
+		P path = decoded.path();
+		long position = decoded.value();
+		if (positionIndex != null && positionIndex.contains(path)) {
+			long beginRank = positionIndex.rankByBeginPosition(path, position);
+			if (beginRank >= 0) {
+				return new StepBeginPositionIRI<>(path, beginRank, this, position);
+			}
+			long endRank = positionIndex.rankByEndPosition(path, position);
+			if (endRank >= 0) {
+				return new StepEndPositionIRI<>(path, endRank, this, position);
+			}
+			return null;
+		}
+		S begins = pathGraph.stepOfPathByBeginPosition(path, position);
+		if (begins != null) {
+			return new StepBeginPositionIRI<>(path, pathGraph.rankOfStep(begins), this, position);
+		}
+		S ends = pathGraph.stepOfPathByEndPosition(path, position);
+		if (ends != null) {
+			return new StepEndPositionIRI<>(path, pathGraph.rankOfStep(ends), this, position);
 		}
-		return extractStepFromKnownPathName(possibleStepIri);
+		return null;
+	}
+
+	/**
+	 * The index of step positions if this sail was opened with one
+	 * 
+	 * @return the index or null
+	 */
+	public StepPositionIndex<P> positionIndex() {
+		return positionIndex;
 	}
 
-	private S extractStepFromKnownPathName(String namespace) {
-		Pattern endsWithStepPattern = Pattern.compile(STEP_IRI_PART + "(\\d+)$");
-		Matcher endPatternMatcher = endsWithStepPattern.matcher(namespace);
+	/**
+	 * The index of the steps visiting each node, built on first use.
+	 * 
+	 * @return the index
+	 */
+	public NodeStepIndex<P> nodeStepIndex() {
+		NodeStepIndex<P> index = nodeStepIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = nodeStepIndex;
+				if (index == null) {
+					index = NodeStepIndex.build(pathGraph);
+					nodeStepIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * For estimates that should not build the index while planning.
+	 * 
+	 * @return the index of the steps visiting each node, or null if it was not
+	 *         used yet
+	 */
+	public NodeStepIndex<P> nodeStepIndexIfBuilt() {
+		return nodeStepIndex;
+	}
+
+	/**
+	 * The set of all edges, built on first use.
+	 * 
+	 * @return the edge set or null if the graph has too many edges to keep in one
+	 */
+	public EdgeSet edgeSet() {
+		EdgeSet set = edgeSet;
+		if (set == null) {
+			if (!EdgeSet.fits(pathGraph.edgeCount())) {
+				return null;
+			}
+			synchronized (this) {
+				set = edgeSet;
+				if (set == null) {
+					set = EdgeSet.build(pathGraph);
+					edgeSet = set;
+				}
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * The sequence length of every node, built on first use.
+	 * 
+	 * @return the lengths
+	 */
+	public SequenceLengths sequenceLengths() {
+		SequenceLengths lengths = sequenceLengths;
+		if (lengths == null) {
+			synchronized (this) {
+				lengths = sequenceLengths;
+				if (lengths == null) {
+					lengths = SequenceLengths.build(pathGraph);
+					sequenceLengths = lengths;
+				}
+			}
+		}
+		return lengths;
+	}
+
+	/**
+	 * Keep the sequence hash index in a file instead of building it in memory on
+	 * first use.
+	 * 
+	 * @param sequenceHashIndexFile where the index is stored, it is built if
+	 *                              missing or out of date
+	 */
+	public void setSequenceHashIndexFile(Path sequenceHashIndexFile) {
 		try {
-			if (mightBeHttpOrFtpIri(namespace) && endPatternMatcher.find(5)) {
-				String rankGroup = endPatternMatcher.group(1);
-				long rank = Long.parseLong(rankGroup);
-				String pathName = namespace.substring(0, namespace.length() - (rankGroup.length() + 6));
-				P pathByName = pathGraph.pathByName(pathName);
-				if (pathByName != null) {
-					return pathGraph.stepByRankAndPath(pathByName, rank);
+			this.sequenceHashIndex = SequenceHashIndex.buildOrLoad(pathGraph, sequenceHashIndexFile);
+		} catch (IOException e) {
+			throw new SailException("Could not build or load the sequence hash index " + sequenceHashIndexFile, e);
+		}
+	}
+
+	/**
+	 * The nodes by the hash of their sequence, built on first use if no file was
+	 * set.
+	 * 
+	 * @return the index
+	 */
+	public SequenceHashIndex sequenceHashIndex() {
+		SequenceHashIndex index = sequenceHashIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = sequenceHashIndex;
+				if (index == null) {
+					index = SequenceHashIndex.build(pathGraph);
+					sequenceHashIndex = index;
 				}
 			}
-		} catch (NumberFormatException e) {
-			return null;
 		}
-		return null;
+		return index;
 	}
 
-	private static boolean mightBeHttpOrFtpIri(String namespace) {
-		return namespace.startsWith("https://") || namespace.startsWith("http://") || namespace.startsWith("ftp://");
+	/**
+	 * Plan queries with the statistics in a file instead of with guesses.
+	 * 
+	 * @param statisticsFile where the statistics are stored, they are computed
+	 *                       if missing or out of date
+	 */
+	public void setStatisticsFile(Path statisticsFile) {
+		try {
+			this.statistics = GraphStatistics.buildOrLoad(this, statisticsFile);
+		} catch (IOException e) {
+			throw new SailException("Could not build or load the statistics " + statisticsFile, e);
+		}
+	}
+
+	/**
+	 * The statistics are never computed on first use, as that generates every
+	 * statement of the graph.
+	 * 
+	 * @return the statistics, or null if no statistics file was set
+	 */
+	public GraphStatistics statistics() {
+		return statistics;
+	}
+
+	/**
+	 * Plan with other than uniform access costs, e.g. measured ones from
+	 * {@link AccessCosts#calibrate(PathHandleGraphSail)}. Measured costs can
+	 * differ between runs, and so can the plans made with them.
+	 * 
+	 * @param accessCosts to plan with
+	 */
+	public void setAccessCosts(AccessCosts accessCosts) {
+		this.accessCosts = accessCosts;
 	}
 
-	private S extractStepFromBasicPathPattern(String namespace) {
+	/**
+	 * @return the costs of reading the graph in different ways, uniform unless
+	 *         set
+	 */
+	public AccessCosts accessCosts() {
+		AccessCosts costs = accessCosts;
+		return costs == null ? AccessCosts.UNIFORM : costs;
+	}
 
-		Pattern standardPathNamePattern = Pattern
-				.compile('^' + base + PATH_IRI_PART + "(.+)/" + STEP_IRI_PART + "(\\d+)");
-		Matcher matcher = standardPathNamePattern.matcher(namespace);
+	/**
+	 * Use a k-mer index to find the nodes whose sequence contains, starts or ends
+	 * with a fragment.
+	 * 
+	 * @param sequenceIndexFile where the k-mer index is stored, it is built if
+	 *                          missing or out of date
+	 */
+	public void setSequenceIndexFile(Path sequenceIndexFile) {
 		try {
-			if (matcher.matches()) {
-				P path = pathGraph.pathByName(matcher.group(1));
-				if (path != null) {
-					long rank = Long.parseLong(matcher.group(2));
-					return pathGraph.stepByRankAndPath(path, rank);
+			this.sequenceIndex = SequenceKmerIndex.buildOrLoad(pathGraph, sequenceIndexFile);
+		} catch (IOException e) {
+			throw new SailException("Could not build or load the sequence index " + sequenceIndexFile, e);
+		}
+	}
+
+	/**
+	 * The k-mer index of the node sequences if one was set
+	 * 
+	 * @return the index or null
+	 */
+	public SequenceKmerIndex sequenceIndex() {
+		return sequenceIndex;
+	}
+
+	/**
+	 * How many steps a path has, counted once if there is no position index
+	 * 
+	 * @param path to count the steps of
+	 * @return the number of steps
+	 */
+	public long stepCountOf(P path) {
+		if (positionIndex != null && positionIndex.contains(path)) {
+			return positionIndex.stepCount(path);
+		}
+		return stepCounts.computeIfAbsent(path, p -> {
+			GraphStatistics known = statistics;
+			Long stepCount = known == null ? null : known.stepCount(pathGraph.nameOfPath(p));
+			if (stepCount != null) {
+				return stepCount;
+			}
+			long count = 0;
+			try (AutoClosedIterator<S> steps = pathGraph.stepsOf(p)) {
+				while (steps.hasNext()) {
+					steps.next();
+					count++;
 				}
 			}
-		} catch (NumberFormatException e) {
-			return null;
+			return count;
+		});
+	}
+
+	/**
+	 * Where a step begins along its path
+	 * 
+	 * @param path the step is on
+	 * @param rank of the step
+	 * @return the begin position
+	 */
+	public long beginPositionOfStep(P path, long rank) {
+		if (positionIndex != null && positionIndex.contains(path)) {
+			return positionIndex.beginPosition(path, rank);
 		}
-		return null;
+		return pathGraph.beginPositionOfStep(pathGraph.stepByRankAndPath(path, rank));
+	}
+
+	/**
+	 * Where a step ends along its path
+	 * 
+	 * @param path the step is on
+	 * @param rank of the step
+	 * @return the end position
+	 */
+	public long endPositionOfStep(P path, long rank) {
+		if (positionIndex != null && positionIndex.contains(path)) {
+			return positionIndex.endPosition(path, rank);
+		}
+		return pathGraph.endPositionOfStep(pathGraph.stepByRankAndPath(path, rank));
+	}
+
+	private static boolean mightBeHttpOrFtpIri(String namespace) {
+		return namespace.startsWith("https://") || namespace.startsWith("http://") || namespace.startsWith("ftp://");
 	}
 
 	/**
@@ -42,12 +42,12 @@ import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.QueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.QueryRoot;
 import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizerPipeline;
-import org.eclipse.rdf4j.query.algebra.evaluation.impl.DefaultEvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.BindingAssignerOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.CompareOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.ConjunctiveConstraintSplitterOptimizer;
@@ -60,6 +60,9 @@ import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.QueryModelNormalizer
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.RegexAsStringFunctionOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.SameTermFilterOptimizer;
 import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.helpers.QueryModelTreeToGenericPlanNode;
+import org.eclipse.rdf4j.query.explanation.Explanation;
+import org.eclipse.rdf4j.query.explanation.ExplanationImpl;
 import org.eclipse.rdf4j.repository.sparql.federation.SPARQLServiceResolver;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.helpers.AbstractSailConnection;
@@ -117,8 +120,34 @@ public class PathHandleGraphTripleSailConnection<P extends PathHandle, S extends
 		}
 	}
 
+	/**
+	 * Explain the plan that would be used to evaluate a query. Only the
+	 * unoptimized and optimized levels are supported.
+	 */
+	@Override
+	public Explanation explain(Explanation.Level level, TupleExpr tupleExpr, Dataset dataset, BindingSet bindings,
+			boolean includeInferred, int timeoutSeconds) {
+		TupleExpr toExplain = tupleExpr.clone();
+		if (!(toExplain instanceof QueryRoot)) {
+			toExplain = new QueryRoot(toExplain);
+		}
+		switch (level) {
+		case Unoptimized:
+			break;
+		case Optimized:
+			var tripleSource = tripleSource();
+			toExplain = optimize(tripleSource, evalutationStrategy(tripleSource), toExplain, bindings);
+			break;
+		default:
+			throw new UnsupportedOperationException("Can not explain at level: " + level);
+		}
+		QueryModelTreeToGenericPlanNode converter = new QueryModelTreeToGenericPlanNode(toExplain);
+		toExplain.visit(converter);
+		return new ExplanationImpl(converter.getGenericPlanNode(), false);
+	}
+
 	EvaluationStrategy evalutationStrategy(PathHandleGraphTripleSource<P, S, N, E> tripleSource) {
-		return new DefaultEvaluationStrategy(tripleSource, fd);
+		return new PathHandleEvaluationStrategy<>(tripleSource, fd);
 	}
 
 	PathHandleGraphTripleSource<P, S, N, E> tripleSource() {
@@ -245,7 +274,12 @@ public class PathHandleGraphTripleSailConnection<P extends PathHandle, S extends
 					new ConstantOptimizer(strategy), new RegexAsStringFunctionOptimizer(ts.getValueFactory()),
 					new CompareOptimizer(), new ConjunctiveConstraintSplitterOptimizer(),
 					new DisjunctiveConstraintOptimizer(), new SameTermFilterOptimizer(),
-					new QueryModelNormalizerOptimizer(), new QueryJoinOptimizer(ev), new IterativeEvaluationOptimizer(),
+					new QueryModelNormalizerOptimizer(), new FaldoPositionRangeOptimizer<>(ts.vf().graph()),
+					new VgRankRangeOptimizer<>(ts.vf().graph()),
+					new SequenceFilterOptimizer(ts.vf().graph()),
+					new SequenceLengthOptimizer<>(ts.vf().graph()), new StarJoinOptimizer(),
+					new StepWindowOptimizer(), new QueryJoinOptimizer(ev),
+					new IterativeEvaluationOptimizer(),
 //                    new FilterOptimizer(),
 					new ProjectionRemovalOptimizer());
 		}
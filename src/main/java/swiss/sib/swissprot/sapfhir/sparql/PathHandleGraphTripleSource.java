@@ -41,8 +41,10 @@ import io.github.jervenbolleman.handlegraph4j.NodeHandle;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.statements.AccessCosts;
 import swiss.sib.swissprot.sapfhir.statements.NodeRelatedStatementProvider;
 import swiss.sib.swissprot.sapfhir.statements.PathRelatedStatementProvider;
+import swiss.sib.swissprot.sapfhir.statements.StarPattern;
 import swiss.sib.swissprot.sapfhir.statements.StatementProvider;
 import swiss.sib.swissprot.sapfhir.statements.StepPositionStatementProvider;
 import swiss.sib.swissprot.sapfhir.statements.StepRelatedStatementProvider;
@@ -86,7 +88,7 @@ record PathHandleGraphTripleSource<P extends PathHandle, S extends StepHandle, N
 		var obs = filter(preds, sp -> sp.objectMightReturnValues(object));
 
 		var generateStatements = map(obs, ps -> statements(ps, subject, predicate, object));
-		return new CloseableIterationFromAutoClosedIterator(flatMap(generateStatements));
+		return new CloseableIterationFromAutoClosedIterator<>(flatMap(generateStatements));
 	}
 
 	private static AutoClosedIterator<Statement> statements(StatementProvider ps, Resource subject, IRI predicate,
@@ -115,12 +117,55 @@ record PathHandleGraphTripleSource<P extends PathHandle, S extends StepHandle, N
 		return estimate;
 	}
 
-	private static class CloseableIterationFromAutoClosedIterator implements CloseableIteration<Statement> {
+	/**
+	 * Estimate what generating the statements that match the BGP costs, the
+	 * statements each provider generates weighed by the cost of how it reads the
+	 * graph.
+	 * 
+	 * @param subj the subject to estimate for
+	 * @param pred the predicate to estimate for
+	 * @param obj  the object to estimate for
+	 * @return an estimate
+	 */
+	public double estimateCost(Resource subj, IRI pred, Value obj) {
+		AccessCosts costs = vf.graph().accessCosts();
+		double estimate = 0;
+		for (StatementProvider sp : statementProviders) {
+			double cardinality = sp.estimateCardinality(subj, pred, obj);
+			if (cardinality > 0) {
+				estimate = Math.max(estimate, cardinality * costs.cost(sp.accessPath(subj, pred, obj)));
+			}
+		}
+		return estimate;
+	}
+
+	/**
+	 * Estimate how many subjects match every pattern of a star. Each provider
+	 * generates statements for its own kind of subject, so their estimates add
+	 * up.
+	 * 
+	 * @param star the patterns sharing one unbound subject
+	 * @return an estimate
+	 */
+	public double estimateStarSubjectCount(List<StarPattern> star) {
+		double estimate = 0;
+		for (StatementProvider sp : statementProviders) {
+			estimate += sp.estimateStarSubjectCount(star);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Adapts our iterators to RDF4J iterations
+	 *
+	 * @param <T> the type of element
+	 */
+	static class CloseableIterationFromAutoClosedIterator<T> implements CloseableIteration<T> {
 
-		private final AutoClosedIterator<Statement> providedAsIter;
-		private Statement last;
+		private final AutoClosedIterator<T> providedAsIter;
+		private T last;
 
-		public CloseableIterationFromAutoClosedIterator(AutoClosedIterator<Statement> providedAsIter) {
+		public CloseableIterationFromAutoClosedIterator(AutoClosedIterator<T> providedAsIter) {
 			this.providedAsIter = providedAsIter;
 		}
 
@@ -135,8 +180,8 @@ record PathHandleGraphTripleSource<P extends PathHandle, S extends StepHandle, N
 		}
 
 		@Override
-		public Statement next() throws QueryEvaluationException {
-			Statement next = providedAsIter.next();
+		public T next() throws QueryEvaluationException {
+			T next = providedAsIter.next();
 			assert next != null : "null after" + last;
 			last = next;
 			return next;
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.FN;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.Regex;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractSimpleQueryModelVisitor;
+
+import swiss.sib.swissprot.sapfhir.index.SequenceKmerIndex;
+
+/**
+ * Finds <code>?node rdf:value ?sequence</code> with filters requiring the
+ * sequence to contain, start or end with a constant fragment (CONTAINS,
+ * STRSTARTS, STRENDS or a REGEX without special characters) and replaces the
+ * pattern with the {@link NodeSequenceCandidates} that the sequence index finds
+ * for the fragment. Does nothing if the sail has no sequence index.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+class SequenceFilterOptimizer implements QueryOptimizer {
+
+	private static final String CONTAINS = FN.CONTAINS.stringValue();
+	private static final String STARTS_WITH = FN.STARTS_WITH.stringValue();
+	private static final String ENDS_WITH = FN.ENDS_WITH.stringValue();
+
+	private final PathHandleGraphSail<?, ?, ?, ?> sail;
+
+	SequenceFilterOptimizer(PathHandleGraphSail<?, ?, ?, ?> sail) {
+		this.sail = sail;
+	}
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		SequenceKmerIndex index = sail.sequenceIndex();
+		if (index == null) {
+			return;
+		}
+		tupleExpr.visit(new AbstractSimpleQueryModelVisitor<RuntimeException>(false) {
+
+			@Override
+			public void meet(Filter filter) {
+				pushDown(index, filter);
+				super.meet(filter);
+			}
+		});
+	}
+
+	private void pushDown(SequenceKmerIndex index, Filter filter) {
+		Var sequence = null;
+		String fragment = null;
+		if (filter.getCondition() instanceof FunctionCall call && call.getArgs().size() == 2
+				&& isFragmentFunction(call.getURI())) {
+			sequence = variable(call.getArgs().get(0));
+			fragment = string(call.getArgs().get(1));
+		} else if (filter.getCondition() instanceof Regex regex && plainFlags(regex.getFlagsArg())) {
+			sequence = variable(regex.getArg());
+			fragment = literalPattern(string(regex.getPatternArg()));
+		}
+		if (sequence == null || fragment == null) {
+			return;
+		}
+		List<TupleExpr> patterns = new ArrayList<>();
+		VariableRange.collectPatterns(filter.getArg(), patterns);
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof NodeSequenceCandidates existing
+					&& existing.getSequenceVar().getName().equals(sequence.getName())) {
+				long[] candidates = index.candidates(fragment);
+				if (candidates != null) {
+					existing.retainAll(candidates);
+				}
+				return;
+			}
+		}
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StatementPattern value && isValueOf(value, sequence)) {
+				long[] candidates = index.candidates(fragment);
+				if (candidates != null) {
+					value.replaceWith(new NodeSequenceCandidates(value.getSubjectVar().clone(),
+							value.getObjectVar().clone(), candidates));
+				}
+				return;
+			}
+		}
+	}
+
+	private static boolean isFragmentFunction(String uri) {
+		return CONTAINS.equals(uri) || STARTS_WITH.equals(uri) || ENDS_WITH.equals(uri);
+	}
+
+	private static boolean isValueOf(StatementPattern pattern, Var sequence) {
+		return RDF.VALUE.equals(pattern.getPredicateVar().getValue()) && pattern.getContextVar() == null
+				&& !pattern.getSubjectVar().hasValue() && !pattern.getObjectVar().hasValue()
+				&& pattern.getObjectVar().getName().equals(sequence.getName())
+				&& !pattern.getSubjectVar().getName().equals(sequence.getName());
+	}
+
+	private static Var variable(ValueExpr expr) {
+		if (expr instanceof Var var && !var.hasValue()) {
+			return var;
+		}
+		return null;
+	}
+
+	private static String string(ValueExpr expr) {
+		Value value = null;
+		if (expr instanceof ValueConstant constant) {
+			value = constant.getValue();
+		} else if (expr instanceof Var var) {
+			value = var.getValue();
+		}
+		if (value instanceof Literal literal) {
+			return literal.getLabel();
+		}
+		return null;
+	}
+
+	/**
+	 * The index ignores case, so case insensitive matching is fine
+	 */
+	private static boolean plainFlags(ValueExpr flags) {
+		if (flags == null) {
+			return true;
+		}
+		String value = string(flags);
+		return value != null && (value.isEmpty() || "i".equals(value));
+	}
+
+	/**
+	 * @return the fragment a regular expression without special characters
+	 *         matches, or null
+	 */
+	private static String literalPattern(String pattern) {
+		if (pattern == null) {
+			return null;
+		}
+		int from = pattern.startsWith("^") ? 1 : 0;
+		int to = pattern.endsWith("$") ? pattern.length() - 1 : pattern.length();
+		if (from > to) {
+			return null;
+		}
+		String fragment = pattern.substring(from, to);
+		for (int i = 0; i < fragment.length(); i++) {
+			if (!Character.isLetterOrDigit(fragment.charAt(i))) {
+				return null;
+			}
+		}
+		return fragment;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractSimpleQueryModelVisitor;
+
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+
+/**
+ * Finds <code>?node rdf:value ?sequence</code> with filters comparing
+ * <code>strlen(?sequence)</code> to constants and replaces the pattern with a
+ * {@link SequenceLengthRange}. The length of a sequence is known without
+ * reading it, so the range is exact and the filters are dropped.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <N> the type of NodeHandle
+ */
+class SequenceLengthOptimizer<N extends NodeHandle> implements QueryOptimizer {
+
+	private final PathHandleGraphSail<?, ?, N, ?> sail;
+
+	SequenceLengthOptimizer(PathHandleGraphSail<?, ?, N, ?> sail) {
+		this.sail = sail;
+	}
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		tupleExpr.visit(new AbstractSimpleQueryModelVisitor<RuntimeException>(false) {
+
+			@Override
+			public void meet(Filter filter) {
+				if (filter.getCondition() instanceof Compare compare && pushDown(filter, compare)) {
+					filter.replaceWith(filter.getArg());
+				}
+				super.meet(filter);
+			}
+		});
+	}
+
+	/**
+	 * @return true if the filter is no longer needed
+	 */
+	private boolean pushDown(Filter filter, Compare compare) {
+		VariableRange range = VariableRange.ofStringLength(compare);
+		if (range == null) {
+			return false;
+		}
+		Var sequence = range.var();
+		List<TupleExpr> patterns = new ArrayList<>();
+		VariableRange.collectPatterns(filter.getArg(), patterns);
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof SequenceLengthRange existing
+					&& existing.getSequenceVar().getName().equals(sequence.getName())) {
+				existing.intersect(range.from(), range.to());
+				return true;
+			} else if (pattern instanceof NodeSequenceCandidates candidates
+					&& candidates.getSequenceVar().getName().equals(sequence.getName())) {
+				var pg = sail.pathGraph();
+				candidates.retainIf(id -> {
+					int length = pg.sequenceLengthOf(pg.fromLong(id));
+					return length >= range.from() && length < range.to();
+				});
+				return true;
+			}
+		}
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StatementPattern value && isValueOf(value, sequence)) {
+				value.replaceWith(new SequenceLengthRange(value.getSubjectVar().clone(),
+						value.getObjectVar().clone(), range.from(), range.to()));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isValueOf(StatementPattern pattern, Var sequence) {
+		return RDF.VALUE.equals(pattern.getPredicateVar().getValue()) && pattern.getContextVar() == null
+				&& !pattern.getSubjectVar().hasValue() && !pattern.getObjectVar().hasValue()
+				&& pattern.getObjectVar().getName().equals(sequence.getName())
+				&& !pattern.getSubjectVar().getName().equals(sequence.getName());
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.rdf4j.query.algebra.AbstractQueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+/**
+ * Replaces the pattern <code>?node rdf:value ?sequence</code> and the filters
+ * on <code>strlen(?sequence)</code>. Evaluated from the sequence lengths
+ * without reading the sequences to measure them.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class SequenceLengthRange extends AbstractQueryModelNode implements TupleExpr {
+
+	private static final long serialVersionUID = 1;
+	private Var nodeVar;
+	private Var sequenceVar;
+	private long from;
+	private long to;
+
+	/**
+	 * @param nodeVar     bound to the node IRI
+	 * @param sequenceVar bound to the sequence
+	 * @param from        the shortest sequence length
+	 * @param to          the length after the longest
+	 */
+	SequenceLengthRange(Var nodeVar, Var sequenceVar, long from, long to) {
+		setNodeVar(nodeVar);
+		setSequenceVar(sequenceVar);
+		this.from = from;
+		this.to = to;
+	}
+
+	Var getNodeVar() {
+		return nodeVar;
+	}
+
+	private void setNodeVar(Var nodeVar) {
+		nodeVar.setParentNode(this);
+		this.nodeVar = nodeVar;
+	}
+
+	Var getSequenceVar() {
+		return sequenceVar;
+	}
+
+	private void setSequenceVar(Var sequenceVar) {
+		sequenceVar.setParentNode(this);
+		this.sequenceVar = sequenceVar;
+	}
+
+	long getFrom() {
+		return from;
+	}
+
+	long getTo() {
+		return to;
+	}
+
+	/**
+	 * Narrow the range to what another filter also allows
+	 * 
+	 * @param otherFrom the first value the other filter allows
+	 * @param otherTo   the value after the last one the other filter allows
+	 */
+	void intersect(long otherFrom, long otherTo) {
+		this.from = Math.max(from, otherFrom);
+		this.to = Math.min(to, otherTo);
+		resetCardinality();
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		return Set.of(nodeVar.getName(), sequenceVar.getName());
+	}
+
+	@Override
+	public Set<String> getAssuredBindingNames() {
+		return getBindingNames();
+	}
+
+	@Override
+	public <X extends Exception> void visit(QueryModelVisitor<X> visitor) throws X {
+		visitor.meetOther(this);
+	}
+
+	@Override
+	public <X extends Exception> void visitChildren(QueryModelVisitor<X> visitor) throws X {
+		nodeVar.visit(visitor);
+		sequenceVar.visit(visitor);
+	}
+
+	@Override
+	public void replaceChildNode(QueryModelNode current, QueryModelNode replacement) {
+		if (nodeVar == current) {
+			setNodeVar((Var) replacement);
+		} else if (sequenceVar == current) {
+			setSequenceVar((Var) replacement);
+		}
+	}
+
+	@Override
+	public String getSignature() {
+		return super.getSignature() + " [" + from + ", " + to + ")";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof SequenceLengthRange o) {
+			return nodeVar.equals(o.nodeVar) && sequenceVar.equals(o.sequenceVar) && from == o.from
+					&& to == o.to;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(nodeVar, sequenceVar, from, to);
+	}
+
+	@Override
+	public SequenceLengthRange clone() {
+		SequenceLengthRange clone = (SequenceLengthRange) super.clone();
+		clone.setNodeVar(nodeVar.clone());
+		clone.setSequenceVar(sequenceVar.clone());
+		return clone;
+	}
+}
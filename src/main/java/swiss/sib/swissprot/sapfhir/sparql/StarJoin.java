@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.MutableBindingSet;
+import org.eclipse.rdf4j.query.algebra.AbstractQueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+/**
+ * Replaces the joined patterns on one subject of a fixed schema. Evaluated by
+ * finding each subject once and binding all the attributes that are asked for.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <A> the attributes of the subject
+ */
+abstract sealed class StarJoin<A extends Enum<A>> extends AbstractQueryModelNode implements TupleExpr
+		permits StepStar, NodeStar {
+
+	private static final long serialVersionUID = 1;
+	private final Class<A> attributes;
+	private Var subjectVar;
+	private EnumMap<A, Var> attributeVars;
+
+	/**
+	 * @param subjectVar bound to the subject IRI
+	 * @param attributes the type of attribute
+	 */
+	StarJoin(Var subjectVar, Class<A> attributes) {
+		this.attributes = attributes;
+		this.attributeVars = new EnumMap<>(attributes);
+		setSubjectVar(subjectVar);
+	}
+
+	Var getSubjectVar() {
+		return subjectVar;
+	}
+
+	private void setSubjectVar(Var subjectVar) {
+		subjectVar.setParentNode(this);
+		this.subjectVar = subjectVar;
+	}
+
+	/**
+	 * @return the variables or constants for each attribute that is asked for
+	 */
+	Map<A, Var> getAttributeVars() {
+		return attributeVars;
+	}
+
+	/**
+	 * @param attribute to ask for
+	 * @param var       bound to the attribute, or a constant it must equal
+	 */
+	void setAttributeVar(A attribute, Var var) {
+		var.setParentNode(this);
+		attributeVars.put(attribute, var);
+		resetCardinality();
+	}
+
+	/**
+	 * Bind a value unless the variable already has another value, as when the
+	 * same variable is used twice in the star.
+	 * 
+	 * @param name     of the variable
+	 * @param value    to bind
+	 * @param setter   for the variable
+	 * @param solution to bind the value in
+	 * @return false if the variable already has another value
+	 */
+	static boolean bind(String name, Value value, BiConsumer<Value, MutableBindingSet> setter,
+			MutableBindingSet solution) {
+		Value existing = solution.getValue(name);
+		if (existing == null) {
+			setter.accept(value, solution);
+			return true;
+		}
+		return value.equals(existing);
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		Set<String> names = new LinkedHashSet<>();
+		names.add(subjectVar.getName());
+		for (Var var : attributeVars.values()) {
+			if (!var.hasValue()) {
+				names.add(var.getName());
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public Set<String> getAssuredBindingNames() {
+		return getBindingNames();
+	}
+
+	@Override
+	public <X extends Exception> void visit(QueryModelVisitor<X> visitor) throws X {
+		visitor.meetOther(this);
+	}
+
+	@Override
+	public <X extends Exception> void visitChildren(QueryModelVisitor<X> visitor) throws X {
+		subjectVar.visit(visitor);
+		for (Var var : attributeVars.values()) {
+			var.visit(visitor);
+		}
+	}
+
+	@Override
+	public void replaceChildNode(QueryModelNode current, QueryModelNode replacement) {
+		if (subjectVar == current) {
+			setSubjectVar((Var) replacement);
+			return;
+		}
+		for (Map.Entry<A, Var> entry : attributeVars.entrySet()) {
+			if (entry.getValue() == current) {
+				setAttributeVar(entry.getKey(), (Var) replacement);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public String getSignature() {
+		return super.getSignature() + " " + attributeVars.keySet();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof StarJoin<?> o) {
+			return getClass() == o.getClass() && subjectVar.equals(o.subjectVar)
+					&& attributeVars.equals(o.attributeVars);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(subjectVar, attributeVars);
+	}
+
+	@Override
+	public StarJoin<A> clone() {
+		@SuppressWarnings("unchecked")
+		StarJoin<A> clone = (StarJoin<A>) super.clone();
+		clone.setSubjectVar(subjectVar.clone());
+		clone.attributeVars = new EnumMap<>(attributes);
+		for (Map.Entry<A, Var> entry : attributeVars.entrySet()) {
+			clone.setAttributeVar(entry.getKey(), entry.getValue().clone());
+		}
+		return clone;
+	}
+}
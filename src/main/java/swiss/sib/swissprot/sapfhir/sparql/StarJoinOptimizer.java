@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractSimpleQueryModelVisitor;
+
+import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+
+/**
+ * Finds joined patterns on the same step, e.g.
+ * <code>?step vg:path ?path ; vg:rank ?rank ; vg:node ?node</code>, and
+ * replaces them with one {@link StepStar}. Only steps have these predicates,
+ * so the subject is known to be a step. The types every step has and the
+ * faldo:position of its begin and end are taken along. Likewise patterns on
+ * the same node, e.g. <code>?node rdf:value ?sequence ; vg:links ?next</code>,
+ * are replaced with one {@link NodeStar}.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+class StarJoinOptimizer implements QueryOptimizer {
+
+	private static final Set<IRI> stepTypes = Set.of(VG.Step, FALDO.Region);
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		List<Join> joins = new ArrayList<>();
+		tupleExpr.visit(new AbstractSimpleQueryModelVisitor<RuntimeException>(false) {
+
+			@Override
+			public void meet(Join join) {
+				if (!(join.getParentNode() instanceof Join)) {
+					joins.add(join);
+				}
+				super.meet(join);
+			}
+		});
+		for (Join join : joins) {
+			collapse(join);
+		}
+	}
+
+	private void collapse(Join join) {
+		List<StatementPattern> patterns = new ArrayList<>();
+		joinedPatterns(join, patterns);
+		Map<String, List<StatementPattern>> bySubject = new LinkedHashMap<>();
+		for (StatementPattern pattern : patterns) {
+			Var subject = pattern.getSubjectVar();
+			if (!subject.hasValue() && pattern.getContextVar() == null
+					&& pattern.getPredicateVar().getValue() instanceof IRI) {
+				bySubject.computeIfAbsent(subject.getName(), k -> new ArrayList<>()).add(pattern);
+			}
+		}
+		Set<StatementPattern> used = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (List<StatementPattern> star : bySubject.values()) {
+			if (!collapseStep(star, patterns, used)) {
+				collapseNode(star, used);
+			}
+		}
+	}
+
+	private boolean collapseStep(List<StatementPattern> star, List<StatementPattern> patterns,
+			Set<StatementPattern> used) {
+		StepStar stepStar = new StepStar(star.get(0).getSubjectVar().clone());
+		List<StatementPattern> replaced = new ArrayList<>();
+		int attributes = 0;
+		for (StatementPattern pattern : star) {
+			if (used.contains(pattern)) {
+				continue;
+			}
+			IRI predicate = (IRI) pattern.getPredicateVar().getValue();
+			StepStar.Attribute attribute = StepStar.Attribute.of(predicate);
+			if (attribute != null && !stepStar.getAttributeVars().containsKey(attribute)) {
+				stepStar.setAttributeVar(attribute, pattern.getObjectVar().clone());
+				replaced.add(pattern);
+				attributes++;
+			} else if (RDF.TYPE.equals(predicate) && pattern.getObjectVar().hasValue()
+					&& stepTypes.contains(pattern.getObjectVar().getValue())) {
+				replaced.add(pattern);
+			}
+		}
+		attributes += position(stepStar, StepStar.Attribute.BEGIN, StepStar.Attribute.BEGIN_POSITION, patterns, used,
+				replaced);
+		attributes += position(stepStar, StepStar.Attribute.END, StepStar.Attribute.END_POSITION, patterns, used,
+				replaced);
+		if (attributes < 2) {
+			// Nothing to gain, or not a step at all
+			return false;
+		}
+		replace(replaced, stepStar, used);
+		return true;
+	}
+
+	private void collapseNode(List<StatementPattern> star, Set<StatementPattern> used) {
+		NodeStar nodeStar = new NodeStar(star.get(0).getSubjectVar().clone());
+		List<StatementPattern> replaced = new ArrayList<>();
+		int attributes = 0;
+		for (StatementPattern pattern : star) {
+			if (used.contains(pattern)) {
+				continue;
+			}
+			IRI predicate = (IRI) pattern.getPredicateVar().getValue();
+			NodeStar.Attribute attribute = NodeStar.Attribute.of(predicate);
+			if (attribute != null && !nodeStar.getAttributeVars().containsKey(attribute)) {
+				nodeStar.setAttributeVar(attribute, pattern.getObjectVar().clone());
+				replaced.add(pattern);
+				attributes++;
+			} else if (RDF.TYPE.equals(predicate) && VG.Node.equals(pattern.getObjectVar().getValue())) {
+				replaced.add(pattern);
+			}
+		}
+		if (attributes >= 2) {
+			replace(replaced, nodeStar, used);
+		}
+	}
+
+	private static void replace(List<StatementPattern> replaced, StarJoin<?> star, Set<StatementPattern> used) {
+		used.addAll(replaced);
+		replaced.get(0).replaceWith(star);
+		for (StatementPattern pattern : replaced.subList(1, replaced.size())) {
+			VariableRange.removeFromJoin(pattern);
+		}
+	}
+
+	/**
+	 * Take along <code>?begin faldo:position ?position</code> when
+	 * <code>?begin</code> is the begin of the step.
+	 * 
+	 * @return the number of patterns taken along
+	 */
+	private static int position(StepStar stepStar, StepStar.Attribute of, StepStar.Attribute position,
+			List<StatementPattern> patterns, Set<StatementPattern> used, List<StatementPattern> replaced) {
+		Var var = stepStar.getAttributeVars().get(of);
+		if (var == null || var.hasValue()) {
+			return 0;
+		}
+		for (StatementPattern pattern : patterns) {
+			if (!used.contains(pattern) && FALDO.position.equals(pattern.getPredicateVar().getValue())
+					&& pattern.getContextVar() == null && !pattern.getSubjectVar().hasValue()
+					&& pattern.getSubjectVar().getName().equals(var.getName())) {
+				stepStar.setAttributeVar(position, pattern.getObjectVar().clone());
+				replaced.add(pattern);
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	private static void joinedPatterns(TupleExpr expr, List<StatementPattern> patterns) {
+		if (expr instanceof Join join) {
+			joinedPatterns(join.getLeftArg(), patterns);
+			joinedPatterns(join.getRightArg(), patterns);
+		} else if (expr instanceof StatementPattern pattern) {
+			patterns.add(pattern);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.rdf4j.query.algebra.AbstractQueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+
+/**
+ * Replaces the pattern <code>?subject faldo:position ?position</code> when the
+ * subject is known to be on one path and filters restrict the position to a
+ * range. Evaluated as a slice of the steps of that path.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ */
+final class StepPositionRange<P extends PathHandle> extends AbstractQueryModelNode implements TupleExpr {
+
+	private static final long serialVersionUID = 1;
+	private Var subjectVar;
+	private Var positionVar;
+	private final P path;
+	private long from;
+	private long to;
+
+	/**
+	 * @param subjectVar  bound to the begin or end position IRI
+	 * @param positionVar bound to the position value
+	 * @param path        the positions are on
+	 * @param from        the first position in the range
+	 * @param to          the position after the last one in the range
+	 */
+	StepPositionRange(Var subjectVar, Var positionVar, P path, long from, long to) {
+		setSubjectVar(subjectVar);
+		setPositionVar(positionVar);
+		this.path = path;
+		this.from = from;
+		this.to = to;
+	}
+
+	Var getSubjectVar() {
+		return subjectVar;
+	}
+
+	private void setSubjectVar(Var subjectVar) {
+		subjectVar.setParentNode(this);
+		this.subjectVar = subjectVar;
+	}
+
+	Var getPositionVar() {
+		return positionVar;
+	}
+
+	private void setPositionVar(Var positionVar) {
+		positionVar.setParentNode(this);
+		this.positionVar = positionVar;
+	}
+
+	P getPath() {
+		return path;
+	}
+
+	long getFrom() {
+		return from;
+	}
+
+	long getTo() {
+		return to;
+	}
+
+	/**
+	 * Narrow the range to the part that is also in the given range
+	 * 
+	 * @param otherFrom the first position in the other range
+	 * @param otherTo   the position after the last one in the other range
+	 */
+	void intersect(long otherFrom, long otherTo) {
+		from = Math.max(from, otherFrom);
+		to = Math.min(to, otherTo);
+		resetCardinality();
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		return Set.of(subjectVar.getName(), positionVar.getName());
+	}
+
+	@Override
+	public Set<String> getAssuredBindingNames() {
+		return getBindingNames();
+	}
+
+	@Override
+	public <X extends Exception> void visit(QueryModelVisitor<X> visitor) throws X {
+		visitor.meetOther(this);
+	}
+
+	@Override
+	public <X extends Exception> void visitChildren(QueryModelVisitor<X> visitor) throws X {
+		subjectVar.visit(visitor);
+		positionVar.visit(visitor);
+	}
+
+	@Override
+	public void replaceChildNode(QueryModelNode current, QueryModelNode replacement) {
+		if (subjectVar == current) {
+			setSubjectVar((Var) replacement);
+		} else if (positionVar == current) {
+			setPositionVar((Var) replacement);
+		}
+	}
+
+	@Override
+	public String getSignature() {
+		return super.getSignature() + " [" + from + ", " + to + ")";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof StepPositionRange<?> o) {
+			return subjectVar.equals(o.subjectVar) && positionVar.equals(o.positionVar) && path.equals(o.path)
+					&& from == o.from && to == o.to;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(subjectVar, positionVar, path, from, to);
+	}
+
+	@Override
+	public StepPositionRange<P> clone() {
+		@SuppressWarnings("unchecked")
+		StepPositionRange<P> clone = (StepPositionRange<P>) super.clone();
+		clone.setSubjectVar(subjectVar.clone());
+		clone.setPositionVar(positionVar.clone());
+		return clone;
+	}
+}
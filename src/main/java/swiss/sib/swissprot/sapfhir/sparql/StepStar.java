@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+
+/**
+ * Replaces the patterns describing one step, e.g.
+ * <code>?step vg:path ?path ; vg:rank ?rank ; vg:node ?node ; faldo:begin/faldo:position ?begin</code>.
+ * Evaluated by finding each step once and binding all of its attributes,
+ * instead of joining one pattern at a time and finding the step again for each
+ * of them.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class StepStar extends StarJoin<StepStar.Attribute> {
+
+	/**
+	 * What can be bound for a step
+	 */
+	enum Attribute {
+		PATH(VG.path), RANK(VG.rank), NODE(VG.node), REVERSE_OF_NODE(VG.reverseOfNode), BEGIN(FALDO.begin),
+		END(FALDO.end),
+		/**
+		 * The faldo:position of the begin
+		 */
+		BEGIN_POSITION(null),
+		/**
+		 * The faldo:position of the end
+		 */
+		END_POSITION(null);
+
+		private final IRI predicate;
+
+		Attribute(IRI predicate) {
+			this.predicate = predicate;
+		}
+
+		/**
+		 * @return the predicate linking the step to the attribute, or null if the
+		 *         attribute is the position of the begin or end
+		 */
+		IRI predicate() {
+			return predicate;
+		}
+
+		/**
+		 * @param predicate of a pattern on a step
+		 * @return the attribute or null
+		 */
+		static Attribute of(IRI predicate) {
+			for (Attribute attribute : values()) {
+				if (attribute.predicate != null && attribute.predicate.equals(predicate)) {
+					return attribute;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final long serialVersionUID = 1;
+
+	/**
+	 * @param subjectVar bound to the step IRI
+	 */
+	StepStar(Var subjectVar) {
+		super(subjectVar, Attribute.class);
+	}
+
+	@Override
+	public StepStar clone() {
+		return (StepStar) super.clone();
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.empty;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.filter;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.of;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.nodeIriFromIri;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.pathIriFromIri;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.stepIriFromIri;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.MutableBindingSet;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.QueryEvaluationContext;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphTripleSource.CloseableIterationFromAutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.StepStar.Attribute;
+import swiss.sib.swissprot.sapfhir.sparql.StepWalk.Visit;
+import swiss.sib.swissprot.sapfhir.values.NodeIRI;
+import swiss.sib.swissprot.sapfhir.values.PathIRI;
+import swiss.sib.swissprot.sapfhir.values.StepBeginPositionIRI;
+import swiss.sib.swissprot.sapfhir.values.StepEndPositionIRI;
+import swiss.sib.swissprot.sapfhir.values.StepIRI;
+import swiss.sib.swissprot.sapfhir.values.StepPositionIRI;
+
+/**
+ * Evaluates a {@link StepStar}. The steps are found from the most selective
+ * value that is known: the step itself, its path and rank, the node it visits,
+ * or its rank on every path. Otherwise the paths are walked. Every attribute of
+ * a step is then bound from the step handle found once.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ * @param <S> the type of StepHandle
+ * @param <E> the type of EdgeHandle
+ * @param <N> the type of NodeHandle
+ */
+final class StepStarEvaluationStep<P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>>
+		implements QueryEvaluationStep {
+
+	private final PathHandleGraphSail<P, S, N, E> sail;
+	private final PathGraph<P, S, N, E> pg;
+	private final QueryEvaluationContext context;
+	private final String subjectName;
+	private final BiConsumer<Value, MutableBindingSet> setSubject;
+	private final Map<Attribute, Var> vars;
+	private final Map<Attribute, BiConsumer<Value, MutableBindingSet>> setters = new EnumMap<>(Attribute.class);
+	private final boolean needsNode;
+
+	StepStarEvaluationStep(StepStar star, PathHandleGraphSail<P, S, N, E> sail, QueryEvaluationContext context) {
+		this.sail = sail;
+		this.pg = sail.pathGraph();
+		this.context = context;
+		this.subjectName = star.getSubjectVar().getName();
+		this.setSubject = context.setBinding(subjectName);
+		this.vars = new EnumMap<>(star.getAttributeVars());
+		for (Map.Entry<Attribute, Var> entry : vars.entrySet()) {
+			if (!entry.getValue().hasValue()) {
+				setters.put(entry.getKey(), context.setBinding(entry.getValue().getName()));
+			}
+		}
+		this.needsNode = vars.containsKey(Attribute.NODE) || vars.containsKey(Attribute.REVERSE_OF_NODE);
+	}
+
+	@Override
+	public CloseableIteration<BindingSet> evaluate(BindingSet bindings) {
+		Map<Attribute, Value> known = new EnumMap<>(Attribute.class);
+		for (Map.Entry<Attribute, Var> entry : vars.entrySet()) {
+			Var var = entry.getValue();
+			Value value = var.hasValue() ? var.getValue() : bindings.getValue(var.getName());
+			if (value != null) {
+				known.put(entry.getKey(), value);
+			}
+		}
+		AutoClosedIterator<Visit<P, S>> visits = visits(bindings.getValue(subjectName), known);
+		AutoClosedIterator<BindingSet> solutions = filter(map(visits, v -> solution(v, bindings)), Objects::nonNull);
+		return new CloseableIterationFromAutoClosedIterator<>(solutions);
+	}
+
+	private AutoClosedIterator<Visit<P, S>> visits(Value subject, Map<Attribute, Value> known) {
+		if (subject != null) {
+			StepIRI<P> step = subject instanceof IRI iri ? stepIriFromIri(iri, sail) : null;
+			return step == null ? empty() : of(new Visit<>(step.path(), step.rank()));
+		}
+		Value path = known.get(Attribute.PATH);
+		Value rank = known.get(Attribute.RANK);
+		if (path != null) {
+			PathIRI<P> pathIri = path instanceof IRI iri ? pathIriFromIri(iri, sail) : null;
+			if (pathIri == null) {
+				return empty();
+			} else if (rank != null) {
+				long r = rankOf(rank);
+				return r >= 0 && r < sail.stepCountOf(pathIri.path()) ? of(new Visit<>(pathIri.path(), r)) : empty();
+			}
+			return new StepWalk<>(pg, of(pathIri.path()));
+		}
+		for (Attribute strand : new Attribute[] { Attribute.NODE, Attribute.REVERSE_OF_NODE }) {
+			Value node = known.get(strand);
+			if (node != null) {
+				NodeIRI<N> nodeIri = node instanceof IRI iri ? nodeIriFromIri(iri, sail) : null;
+				if (nodeIri == null) {
+					return empty();
+				}
+				return sail.nodeStepIndex().steps(nodeIri.id(), strand == Attribute.REVERSE_OF_NODE, Visit::new);
+			}
+		}
+		if (rank != null) {
+			long r = rankOf(rank);
+			if (r < 0) {
+				return empty();
+			}
+			return map(filter(pg.paths(), p -> r < sail.stepCountOf(p)), p -> new Visit<>(p, r));
+		}
+		return new StepWalk<>(pg, pg.paths());
+	}
+
+	/**
+	 * @param value of a vg:rank
+	 * @return the rank or -1 if no step can have it
+	 */
+	static long rankOf(Value value) {
+		if (value instanceof Literal literal && XMLDatatypeUtil.isIntegerDatatype(literal.getDatatype())
+				&& XMLDatatypeUtil.isValidValue(literal.getLabel(), literal.getDatatype())) {
+			try {
+				return literal.longValue();
+			} catch (NumberFormatException e) {
+				// Too large to be a rank
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the solution or null if the step does not match
+	 */
+	private BindingSet solution(Visit<P, S> visit, BindingSet bindings) {
+		MutableBindingSet solution = context.createBindingSet(bindings);
+		return bind(visit, solution) ? solution : null;
+	}
+
+	/**
+	 * Bind the step and all its attributes that are asked for.
+	 * 
+	 * @param visit    the step
+	 * @param solution to bind the values in
+	 * @return false if the step does not match
+	 */
+	boolean bind(Visit<P, S> visit, MutableBindingSet solution) {
+		P path = visit.path();
+		long rank = visit.rank();
+		if (!StarJoin.bind(subjectName, new StepIRI<>(path, rank, sail), setSubject, solution)) {
+			return false;
+		}
+		N node = null;
+		if (needsNode) {
+			S step = visit.step() != null ? visit.step() : pg.stepByRankAndPath(path, rank);
+			node = pg.nodeOfStep(step);
+		}
+		long begin = StepPositionIRI.UNSET_POSITION;
+		if (vars.containsKey(Attribute.BEGIN_POSITION)) {
+			begin = sail.beginPositionOfStep(path, rank);
+		}
+		long end = StepPositionIRI.UNSET_POSITION;
+		if (vars.containsKey(Attribute.END_POSITION)) {
+			end = sail.endPositionOfStep(path, rank);
+		}
+		for (Map.Entry<Attribute, Var> entry : vars.entrySet()) {
+			Value value = switch (entry.getKey()) {
+			case PATH -> new PathIRI<>(path, sail);
+			case RANK -> sail.getValueFactory().createLiteral(rank);
+			case NODE -> pg.isReverseNodeHandle(node) ? null : new NodeIRI<>(node.id(), sail);
+			case REVERSE_OF_NODE -> pg.isReverseNodeHandle(node) ? new NodeIRI<>(node.id(), sail) : null;
+			case BEGIN -> new StepBeginPositionIRI<>(path, rank, sail, begin);
+			case END -> new StepEndPositionIRI<>(path, rank, sail, end);
+			case BEGIN_POSITION -> sail.getValueFactory().createLiteral(begin);
+			case END_POSITION -> sail.getValueFactory().createLiteral(end);
+			};
+			Var var = entry.getValue();
+			if (value == null) {
+				return false;
+			} else if (var.hasValue() ? !value.equals(var.getValue())
+					: !StarJoin.bind(var.getName(), value, setters.get(entry.getKey()), solution)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
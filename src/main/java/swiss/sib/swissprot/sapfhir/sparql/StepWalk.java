@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.NoSuchElementException;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+
+/**
+ * Walks the steps of paths in order, counting the rank of each step instead of
+ * looking it up.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ * @param <S> the type of StepHandle
+ * @param <E> the type of EdgeHandle
+ * @param <N> the type of NodeHandle
+ */
+final class StepWalk<P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>>
+		implements AutoClosedIterator<StepWalk.Visit<P, S>> {
+
+	/**
+	 * A step as found on its path
+	 *
+	 * @param <P>   the type of PathHandle
+	 * @param <S>   the type of StepHandle
+	 * @param path  the step is on
+	 * @param rank  of the step
+	 * @param step  the handle or null if not looked up yet
+	 */
+	record Visit<P extends PathHandle, S extends StepHandle>(P path, long rank, S step) {
+
+		/**
+		 * @param path the step is on
+		 * @param rank of the step
+		 */
+		Visit(P path, long rank) {
+			this(path, rank, null);
+		}
+	}
+
+	private final PathGraph<P, S, N, E> pg;
+	private final AutoClosedIterator<P> paths;
+	private P path;
+	private AutoClosedIterator<S> steps;
+	private long rank;
+
+	/**
+	 * @param pg    the graph the paths are in
+	 * @param paths to walk one after the other
+	 */
+	StepWalk(PathGraph<P, S, N, E> pg, AutoClosedIterator<P> paths) {
+		this.pg = pg;
+		this.paths = paths;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (steps == null || !steps.hasNext()) {
+			if (steps != null) {
+				steps.close();
+				steps = null;
+			}
+			if (!paths.hasNext()) {
+				return false;
+			}
+			path = paths.next();
+			steps = pg.stepsOf(path);
+			rank = 0;
+		}
+		return true;
+	}
+
+	@Override
+	public Visit<P, S> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return new Visit<>(path, rank++, steps.next());
+	}
+
+	@Override
+	public void close() {
+		if (steps != null) {
+			steps.close();
+		}
+		paths.close();
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.query.algebra.AbstractQueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.QueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+
+/**
+ * Replaces a join of steps that follow each other on the same path, e.g.
+ * <code>?s1 vg:rank ?r1 . ?s2 vg:rank ?r2 . FILTER(?r2 = ?r1 + 1)</code>.
+ * Evaluated by walking the steps of the path once, looking at as many steps at
+ * a time as there are in the window.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class StepWindow extends AbstractQueryModelNode implements TupleExpr {
+
+	private static final long serialVersionUID = 1;
+	private List<StepStar> steps;
+
+	/**
+	 * @param steps in the order they follow each other on the path
+	 */
+	StepWindow(List<StepStar> steps) {
+		this.steps = new ArrayList<>(steps);
+		for (StepStar step : this.steps) {
+			step.setParentNode(this);
+		}
+	}
+
+	/**
+	 * @return the steps in the order they follow each other on the path
+	 */
+	List<StepStar> getSteps() {
+		return steps;
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		Set<String> names = new LinkedHashSet<>();
+		for (StepStar step : steps) {
+			names.addAll(step.getBindingNames());
+		}
+		return names;
+	}
+
+	@Override
+	public Set<String> getAssuredBindingNames() {
+		return getBindingNames();
+	}
+
+	@Override
+	public <X extends Exception> void visit(QueryModelVisitor<X> visitor) throws X {
+		visitor.meetOther(this);
+	}
+
+	@Override
+	public <X extends Exception> void visitChildren(QueryModelVisitor<X> visitor) throws X {
+		for (StepStar step : steps) {
+			step.visit(visitor);
+		}
+	}
+
+	@Override
+	public void replaceChildNode(QueryModelNode current, QueryModelNode replacement) {
+		for (int i = 0; i < steps.size(); i++) {
+			if (steps.get(i) == current) {
+				replacement.setParentNode(this);
+				steps.set(i, (StepStar) replacement);
+				resetCardinality();
+				return;
+			}
+		}
+	}
+
+	@Override
+	public String getSignature() {
+		return super.getSignature() + " (" + steps.size() + " steps)";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof StepWindow o && steps.equals(o.steps);
+	}
+
+	@Override
+	public int hashCode() {
+		return steps.hashCode();
+	}
+
+	@Override
+	public StepWindow clone() {
+		StepWindow clone = (StepWindow) super.clone();
+		clone.steps = new ArrayList<>();
+		for (StepStar step : steps) {
+			StepStar copy = step.clone();
+			copy.setParentNode(clone);
+			clone.steps.add(copy);
+		}
+		return clone;
+	}
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.empty;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.filter;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.flatMap;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.of;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.pathIriFromIri;
+import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.stepIriFromIri;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.MutableBindingSet;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.QueryEvaluationContext;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphTripleSource.CloseableIterationFromAutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.StepStar.Attribute;
+import swiss.sib.swissprot.sapfhir.sparql.StepWalk.Visit;
+import swiss.sib.swissprot.sapfhir.values.PathIRI;
+import swiss.sib.swissprot.sapfhir.values.StepIRI;
+
+/**
+ * Evaluates a {@link StepWindow}. If the rank of one of the steps is known,
+ * only the steps around it are looked at. Otherwise the paths are walked once,
+ * keeping the last steps seen, and each full window is bound.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ * @param <S> the type of StepHandle
+ * @param <E> the type of EdgeHandle
+ * @param <N> the type of NodeHandle
+ */
+final class StepWindowEvaluationStep<P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>>
+		implements QueryEvaluationStep {
+
+	private final PathHandleGraphSail<P, S, N, E> sail;
+	private final PathGraph<P, S, N, E> pg;
+	private final QueryEvaluationContext context;
+	private final List<StepStar> stars;
+	private final List<StepStarEvaluationStep<P, S, N, E>> steps = new ArrayList<>();
+
+	StepWindowEvaluationStep(StepWindow window, PathHandleGraphSail<P, S, N, E> sail,
+			QueryEvaluationContext context) {
+		this.sail = sail;
+		this.pg = sail.pathGraph();
+		this.context = context;
+		this.stars = window.getSteps();
+		for (StepStar star : stars) {
+			steps.add(new StepStarEvaluationStep<>(star, sail, context));
+		}
+	}
+
+	@Override
+	public CloseableIteration<BindingSet> evaluate(BindingSet bindings) {
+		P path = null;
+		Value pathValue = known(stars.get(0).getAttributeVars().get(Attribute.PATH), bindings);
+		if (pathValue != null) {
+			PathIRI<P> pathIri = pathValue instanceof IRI iri ? pathIriFromIri(iri, sail) : null;
+			if (pathIri == null) {
+				return new CloseableIterationFromAutoClosedIterator<>(empty());
+			}
+			path = pathIri.path();
+		}
+		boolean startKnown = false;
+		long start = 0;
+		for (int i = 0; i < stars.size() && !startKnown; i++) {
+			StepStar star = stars.get(i);
+			Value subject = bindings.getValue(star.getSubjectVar().getName());
+			Value rank = known(star.getAttributeVars().get(Attribute.RANK), bindings);
+			if (subject != null) {
+				StepIRI<P> step = subject instanceof IRI iri ? stepIriFromIri(iri, sail) : null;
+				if (step == null || path != null && !path.equals(step.path())) {
+					return new CloseableIterationFromAutoClosedIterator<>(empty());
+				}
+				path = step.path();
+				start = step.rank() - i;
+				startKnown = true;
+			} else if (rank != null) {
+				long r = StepStarEvaluationStep.rankOf(rank);
+				start = r < 0 ? -1 : r - i;
+				startKnown = true;
+			}
+		}
+		if (startKnown && start < 0) {
+			return new CloseableIterationFromAutoClosedIterator<>(empty());
+		}
+		AutoClosedIterator<P> paths = path != null ? of(path) : pg.paths();
+		AutoClosedIterator<List<Visit<P, S>>> windows;
+		if (startKnown) {
+			long first = start;
+			windows = flatMap(map(paths, p -> window(p, first)));
+		} else {
+			windows = new Windows<>(new StepWalk<>(pg, paths), stars.size());
+		}
+		AutoClosedIterator<BindingSet> solutions = filter(map(windows, w -> solution(w, bindings)),
+				Objects::nonNull);
+		return new CloseableIterationFromAutoClosedIterator<>(solutions);
+	}
+
+	private static Value known(Var var, BindingSet bindings) {
+		if (var == null) {
+			return null;
+		}
+		return var.hasValue() ? var.getValue() : bindings.getValue(var.getName());
+	}
+
+	/**
+	 * @return the window starting at the rank, if the path is long enough
+	 */
+	private AutoClosedIterator<List<Visit<P, S>>> window(P path, long start) {
+		if (start + stars.size() > sail.stepCountOf(path)) {
+			return empty();
+		}
+		List<Visit<P, S>> window = new ArrayList<>(stars.size());
+		for (int i = 0; i < stars.size(); i++) {
+			window.add(new Visit<>(path, start + i));
+		}
+		return of(window);
+	}
+
+	/**
+	 * @return the solution or null if any step does not match
+	 */
+	private BindingSet solution(List<Visit<P, S>> window, BindingSet bindings) {
+		MutableBindingSet solution = context.createBindingSet(bindings);
+		for (int i = 0; i < steps.size(); i++) {
+			if (!steps.get(i).bind(window.get(i), solution)) {
+				return null;
+			}
+		}
+		return solution;
+	}
+
+	/**
+	 * The consecutive steps of a walk, a window never spans two paths.
+	 */
+	private static final class Windows<P extends PathHandle, S extends StepHandle>
+			implements AutoClosedIterator<List<Visit<P, S>>> {
+
+		private final AutoClosedIterator<Visit<P, S>> walk;
+		private final int size;
+		private final ArrayDeque<Visit<P, S>> window;
+		private List<Visit<P, S>> next;
+
+		private Windows(AutoClosedIterator<Visit<P, S>> walk, int size) {
+			this.walk = walk;
+			this.size = size;
+			this.window = new ArrayDeque<>(size + 1);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && walk.hasNext()) {
+				Visit<P, S> visit = walk.next();
+				if (!window.isEmpty() && !window.getLast().path().equals(visit.path())) {
+					window.clear();
+				}
+				window.addLast(visit);
+				if (window.size() > size) {
+					window.removeFirst();
+				}
+				if (window.size() == size) {
+					next = List.copyOf(window);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public List<Visit<P, S>> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			List<Visit<P, S>> current = next;
+			next = null;
+			return current;
+		}
+
+		@Override
+		public void close() {
+			walk.close();
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Compare.CompareOp;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.MathExpr;
+import org.eclipse.rdf4j.query.algebra.MathExpr.MathOp;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractSimpleQueryModelVisitor;
+
+/**
+ * Finds filters saying one step follows another on the same path, and
+ * replaces the two {@link StepStar}s with one {@link StepWindow}. A step
+ * follows another if its rank is one more,
+ * <code>FILTER(?r2 = ?r1 + 1)</code>, or if it begins right after the other
+ * ends, <code>FILTER(?begin2 = ?end1 + 1)</code>. Both steps must have the
+ * same vg:path. Windows that follow each other are merged, so a chain of
+ * filters gives one window of k steps. The filters are kept, the window only
+ * makes sure we walk the path once instead of joining all steps with all
+ * steps.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+class StepWindowOptimizer implements QueryOptimizer {
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		List<Filter> filters = new ArrayList<>();
+		tupleExpr.visit(new AbstractSimpleQueryModelVisitor<RuntimeException>(false) {
+
+			@Override
+			public void meet(Filter filter) {
+				if (filter.getCondition() instanceof Compare) {
+					filters.add(filter);
+				}
+				super.meet(filter);
+			}
+		});
+		for (Filter filter : filters) {
+			Compare compare = (Compare) filter.getCondition();
+			if (compare.getOperator() != CompareOp.EQ) {
+				continue;
+			}
+			if (!link(filter, compare.getLeftArg(), compare.getRightArg())) {
+				link(filter, compare.getRightArg(), compare.getLeftArg());
+			}
+		}
+	}
+
+	/**
+	 * Link the step with <code>next</code> as rank or begin position to the one
+	 * with <code>previous</code> as rank or end position.
+	 * 
+	 * @return true if the windows of the two steps were merged
+	 */
+	private static boolean link(Filter filter, ValueExpr next, ValueExpr plusOne) {
+		Var nextVar = unboundVariable(next);
+		Var previousVar = plusOne instanceof MathExpr math ? previousOf(math) : null;
+		if (nextVar == null || previousVar == null) {
+			return false;
+		}
+		List<TupleExpr> patterns = new ArrayList<>();
+		VariableRange.collectPatterns(filter.getArg(), patterns);
+		for (TupleExpr first : patterns) {
+			StepStar last = last(first);
+			if (last == null || !(isVar(last, StepStar.Attribute.RANK, previousVar)
+					|| isVar(last, StepStar.Attribute.END_POSITION, previousVar))) {
+				continue;
+			}
+			for (TupleExpr second : patterns) {
+				StepStar following = first(second);
+				if (second != first && following != null && second.getParentNode() instanceof Join
+						&& onSamePath(last, following)
+						&& (isVar(last, StepStar.Attribute.RANK, previousVar)
+								&& isVar(following, StepStar.Attribute.RANK, nextVar)
+								|| isVar(last, StepStar.Attribute.END_POSITION, previousVar)
+										&& isVar(following, StepStar.Attribute.BEGIN_POSITION, nextVar))) {
+					List<StepStar> steps = new ArrayList<>();
+					for (StepStar step : steps(first)) {
+						steps.add(step.clone());
+					}
+					for (StepStar step : steps(second)) {
+						steps.add(step.clone());
+					}
+					VariableRange.removeFromJoin(second);
+					first.replaceWith(new StepWindow(steps));
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the variable in <code>?previous + 1</code> or
+	 *         <code>1 + ?previous</code>
+	 */
+	private static Var previousOf(MathExpr math) {
+		if (math.getOperator() != MathOp.PLUS) {
+			return null;
+		} else if (isOne(math.getRightArg())) {
+			return unboundVariable(math.getLeftArg());
+		} else if (isOne(math.getLeftArg())) {
+			return unboundVariable(math.getRightArg());
+		}
+		return null;
+	}
+
+	private static boolean isOne(ValueExpr expr) {
+		Value value = null;
+		if (expr instanceof ValueConstant constant) {
+			value = constant.getValue();
+		} else if (expr instanceof Var var) {
+			value = var.getValue();
+		}
+		return value instanceof Literal literal && XMLDatatypeUtil.isIntegerDatatype(literal.getDatatype())
+				&& "1".equals(XMLDatatypeUtil.normalize(literal.getLabel(), literal.getDatatype()));
+	}
+
+	private static Var unboundVariable(ValueExpr expr) {
+		if (expr instanceof Var var && !var.hasValue()) {
+			return var;
+		}
+		return null;
+	}
+
+	private static boolean isVar(StepStar step, StepStar.Attribute attribute, Var var) {
+		Var attributeVar = step.getAttributeVars().get(attribute);
+		return attributeVar != null && !attributeVar.hasValue() && attributeVar.getName().equals(var.getName());
+	}
+
+	/**
+	 * Ranks and positions are only consecutive on one path
+	 */
+	private static boolean onSamePath(StepStar step, StepStar next) {
+		Var path = step.getAttributeVars().get(StepStar.Attribute.PATH);
+		Var nextPath = next.getAttributeVars().get(StepStar.Attribute.PATH);
+		if (path == null || nextPath == null
+				|| step.getSubjectVar().getName().equals(next.getSubjectVar().getName())) {
+			return false;
+		} else if (path.hasValue() || nextPath.hasValue()) {
+			return path.hasValue() && path.getValue().equals(nextPath.getValue());
+		}
+		return path.getName().equals(nextPath.getName());
+	}
+
+	private static List<StepStar> steps(TupleExpr expr) {
+		return expr instanceof StepWindow window ? window.getSteps() : List.of((StepStar) expr);
+	}
+
+	private static StepStar first(TupleExpr expr) {
+		if (expr instanceof StepWindow window) {
+			return window.getSteps().get(0);
+		}
+		return expr instanceof StepStar star ? star : null;
+	}
+
+	private static StepStar last(TupleExpr expr) {
+		if (expr instanceof StepWindow window) {
+			return window.getSteps().get(window.getSteps().size() - 1);
+		}
+		return expr instanceof StepStar star ? star : null;
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
+import org.eclipse.rdf4j.model.vocabulary.FN;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Compare.CompareOp;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+
+/**
+ * The range of non negative whole numbers a filter comparing a variable to a
+ * numeric constant allows, e.g. <code>FILTER(?pos &lt; 10)</code> gives
+ * <code>[0, 10)</code>. Used to push filters on positions and ranks into
+ * slices of a path, and filters on sequence lengths into the nodes of those
+ * lengths.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param var  the variable that is compared
+ * @param from the first value in the range
+ * @param to   the value after the last one in the range
+ */
+record VariableRange(Var var, long from, long to) {
+
+	/**
+	 * @param compare a filter condition
+	 * @return the range or null if the comparison does not bound an unbound
+	 *         variable
+	 */
+	static VariableRange of(Compare compare) {
+		return of(compare, VariableRange::unboundVariable);
+	}
+
+	/**
+	 * @param compare a filter condition
+	 * @return the range of string lengths or null if the comparison does not
+	 *         bound <code>strlen(?var)</code> of an unbound variable
+	 */
+	static VariableRange ofStringLength(Compare compare) {
+		return of(compare, VariableRange::stringLengthOf);
+	}
+
+	private static VariableRange of(Compare compare, Function<ValueExpr, Var> operand) {
+		Var var;
+		Literal value;
+		CompareOp op;
+		if (operand.apply(compare.getLeftArg()) != null && numericConstant(compare.getRightArg()) != null) {
+			var = operand.apply(compare.getLeftArg());
+			value = numericConstant(compare.getRightArg());
+			op = compare.getOperator();
+		} else if (operand.apply(compare.getRightArg()) != null && numericConstant(compare.getLeftArg()) != null) {
+			var = operand.apply(compare.getRightArg());
+			value = numericConstant(compare.getLeftArg());
+			op = mirror(compare.getOperator());
+		} else {
+			return null;
+		}
+		long[] range = range(op, value.decimalValue());
+		if (range == null) {
+			return null;
+		}
+		return new VariableRange(var, range[0], range[1]);
+	}
+
+	/**
+	 * The patterns that are joined below a filter, looking through other
+	 * filters.
+	 * 
+	 * @param expr     the argument of a filter
+	 * @param patterns to add the patterns to
+	 */
+	static void collectPatterns(TupleExpr expr, List<TupleExpr> patterns) {
+		if (expr instanceof Join join) {
+			collectPatterns(join.getLeftArg(), patterns);
+			collectPatterns(join.getRightArg(), patterns);
+		} else if (expr instanceof Filter filter) {
+			collectPatterns(filter.getArg(), patterns);
+		} else {
+			patterns.add(expr);
+		}
+	}
+
+	/**
+	 * Remove a pattern from the join it is part of
+	 * 
+	 * @param pattern to remove
+	 */
+	static void removeFromJoin(TupleExpr pattern) {
+		if (pattern.getParentNode() instanceof Join join) {
+			if (join.getLeftArg() == pattern) {
+				join.replaceWith(join.getRightArg());
+			} else {
+				join.replaceWith(join.getLeftArg());
+			}
+		}
+	}
+
+	private static Var unboundVariable(ValueExpr expr) {
+		if (expr instanceof Var var && !var.hasValue()) {
+			return var;
+		}
+		return null;
+	}
+
+	private static Var stringLengthOf(ValueExpr expr) {
+		if (expr instanceof FunctionCall call && FN.STRING_LENGTH.stringValue().equals(call.getURI())
+				&& call.getArgs().size() == 1) {
+			return unboundVariable(call.getArgs().get(0));
+		}
+		return null;
+	}
+
+	private static Literal numericConstant(ValueExpr expr) {
+		Value value = null;
+		if (expr instanceof ValueConstant constant) {
+			value = constant.getValue();
+		} else if (expr instanceof Var var) {
+			value = var.getValue();
+		}
+		if (value instanceof Literal literal && XMLDatatypeUtil.isNumericDatatype(literal.getDatatype())
+				&& XMLDatatypeUtil.isValidValue(literal.getLabel(), literal.getDatatype())) {
+			return literal;
+		}
+		return null;
+	}
+
+	private static CompareOp mirror(CompareOp op) {
+		return switch (op) {
+		case LT -> CompareOp.GT;
+		case LE -> CompareOp.GE;
+		case GT -> CompareOp.LT;
+		case GE -> CompareOp.LE;
+		default -> op;
+		};
+	}
+
+	/**
+	 * @return the first value and the value after the last one, or null if the
+	 *         comparison does not bound the values
+	 */
+	private static long[] range(CompareOp op, BigDecimal value) {
+		BigDecimal maxValue = BigDecimal.valueOf(Long.MAX_VALUE - 1);
+		if (value.compareTo(maxValue) > 0 || value.signum() < 0 && op != CompareOp.GT && op != CompareOp.GE) {
+			return null;
+		}
+		long floor = value.max(BigDecimal.ZERO).setScale(0, RoundingMode.FLOOR).longValueExact();
+		long ceiling = value.max(BigDecimal.ZERO).setScale(0, RoundingMode.CEILING).longValueExact();
+		boolean integral = floor == ceiling;
+		return switch (op) {
+		case EQ -> integral ? new long[] { floor, floor + 1 } : new long[] { 0, 0 };
+		case GE -> new long[] { ceiling, Long.MAX_VALUE };
+		case GT -> new long[] { value.signum() < 0 ? 0 : floor + 1, Long.MAX_VALUE };
+		case LT -> new long[] { 0, ceiling };
+		case LE -> new long[] { 0, floor + 1 };
+		default -> null;
+		};
+	}
+}
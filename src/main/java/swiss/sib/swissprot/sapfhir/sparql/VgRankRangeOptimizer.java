@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractSimpleQueryModelVisitor;
+
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.statements.StatementProvider;
+
+/**
+ * Finds <code>?s vg:rank ?rank</code> with filters comparing
+ * <code>?rank</code> to constants and replaces the rank pattern with a
+ * {@link StepRankRange}. If <code>?s vg:path &lt;path&gt;</code> is also
+ * given the range is limited to that path and the path pattern is dropped.
+ * The filters are kept, the range only makes sure we look at far fewer steps.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <P> the type of PathHandle
+ */
+class VgRankRangeOptimizer<P extends PathHandle> implements QueryOptimizer {
+
+	private final PathHandleGraphSail<P, ?, ?, ?> sail;
+
+	VgRankRangeOptimizer(PathHandleGraphSail<P, ?, ?, ?> sail) {
+		this.sail = sail;
+	}
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		tupleExpr.visit(new AbstractSimpleQueryModelVisitor<RuntimeException>(false) {
+
+			@Override
+			public void meet(Filter filter) {
+				if (filter.getCondition() instanceof Compare compare) {
+					pushDown(filter, compare);
+				}
+				super.meet(filter);
+			}
+		});
+	}
+
+	private void pushDown(Filter filter, Compare compare) {
+		VariableRange range = VariableRange.of(compare);
+		if (range == null) {
+			return;
+		}
+		Var var = range.var();
+		List<TupleExpr> patterns = new ArrayList<>();
+		VariableRange.collectPatterns(filter.getArg(), patterns);
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StepRankRange<?> existing && existing.getRankVar().getName().equals(var.getName())) {
+				existing.intersect(range.from(), range.to());
+				return;
+			}
+		}
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StatementPattern rank && isRankOf(rank, var)) {
+				StatementPattern pathPattern = pathPattern(rank.getSubjectVar(), patterns);
+				P path = null;
+				if (pathPattern != null) {
+					path = StatementProvider.pathIriFromIri((IRI) pathPattern.getObjectVar().getValue(), sail).path();
+				}
+				rank.replaceWith(new StepRankRange<>(rank.getSubjectVar().clone(), rank.getObjectVar().clone(), path,
+						range.from(), range.to()));
+				if (pathPattern != null) {
+					// Every step in the range is on the path, so the path pattern
+					// can only repeat what the range returns.
+					VariableRange.removeFromJoin(pathPattern);
+				}
+				return;
+			}
+		}
+	}
+
+	private static boolean isRankOf(StatementPattern pattern, Var rank) {
+		return VG.rank.equals(pattern.getPredicateVar().getValue()) && pattern.getContextVar() == null
+				&& !pattern.getSubjectVar().hasValue() && !pattern.getObjectVar().hasValue()
+				&& pattern.getObjectVar().getName().equals(rank.getName())
+				&& !pattern.getSubjectVar().getName().equals(rank.getName());
+	}
+
+	private StatementPattern pathPattern(Var subject, List<TupleExpr> patterns) {
+		for (TupleExpr pattern : patterns) {
+			if (pattern instanceof StatementPattern path && VG.path.equals(path.getPredicateVar().getValue())
+					&& path.getContextVar() == null && path.getSubjectVar().getName().equals(subject.getName())
+					&& path.getObjectVar().getValue() instanceof IRI iri
+					&& StatementProvider.pathIriFromIri(iri, sail) != null) {
+				return path;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.statements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeSequence;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+
+/**
+ * What generating one statement costs for each {@link AccessPath}, relative
+ * to reading the next step of a scan. Measured by short probes against the
+ * graph, so that plans on a graph where finding a step is slow avoid finding
+ * steps one by one.
+ * 
+ * The costs are rounded to a power of ten, timing a few hundred operations is
+ * not precise enough for more and plans should not change between runs because
+ * of noise. Even so, measuring is opt in: a sail plans with {@link #UNIFORM}
+ * costs unless given calibrated ones.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public final class AccessCosts {
+
+	/**
+	 * Every access path costs the same
+	 */
+	public static final AccessCosts UNIFORM = new AccessCosts(new EnumMap<>(AccessPath.class));
+
+	private static final int SAMPLE_SIZE = 512;
+	private static final int ROUNDS = 5;
+	private static final double MAX_COST = 1000;
+
+	private final double[] costs = new double[AccessPath.values().length];
+
+	private AccessCosts(Map<AccessPath, Double> costs) {
+		for (AccessPath path : AccessPath.values()) {
+			this.costs[path.ordinal()] = Math.max(1, costs.getOrDefault(path, 1d));
+		}
+	}
+
+	/**
+	 * Use known costs instead of measuring them.
+	 * 
+	 * @param costs per access path, relative to reading the next step of a scan.
+	 *              Missing access paths cost 1.
+	 * @return the costs
+	 */
+	public static AccessCosts of(Map<AccessPath, Double> costs) {
+		return new AccessCosts(costs);
+	}
+
+	/**
+	 * @param path the graph is read with
+	 * @return the cost of one statement, at least 1
+	 */
+	public double cost(AccessPath path) {
+		return costs[path.ordinal()];
+	}
+
+	/**
+	 * Measure the costs on a sample of the steps and nodes of the graph of a
+	 * sail. Positions are looked up through the sail, so that a position index
+	 * is taken into account.
+	 * 
+	 * @param <P>  the type of PathHandle
+	 * @param <S>  the type of StepHandle
+	 * @param <N>  the type of NodeHandle
+	 * @param <E>  the type of EdgeHandle
+	 * @param sail to measure
+	 * @return the costs
+	 */
+	public static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> AccessCosts calibrate(
+			PathHandleGraphSail<P, S, N, E> sail) {
+		PathGraph<P, S, N, E> graph = sail.pathGraph();
+		Map<AccessPath, Double> nanos = new EnumMap<>(AccessPath.class);
+		List<S> steps = new ArrayList<>(SAMPLE_SIZE);
+		nanos.put(AccessPath.STEP_SCAN, time(steps::size, () -> {
+			steps.clear();
+			try (AutoClosedIterator<S> iter = graph.steps()) {
+				while (iter.hasNext() && steps.size() < SAMPLE_SIZE) {
+					steps.add(iter.next());
+				}
+			}
+		}));
+		List<N> nodes = new ArrayList<>(SAMPLE_SIZE);
+		nanos.put(AccessPath.NODE_SCAN, time(nodes::size, () -> {
+			nodes.clear();
+			try (AutoClosedIterator<NodeSequence<N>> iter = graph.nodesWithTheirSequence()) {
+				while (iter.hasNext() && nodes.size() < SAMPLE_SIZE) {
+					NodeSequence<N> next = iter.next();
+					next.sequence().length();
+					nodes.add(next.node());
+				}
+			}
+		}));
+		// Look up in another order than the graph is stored in
+		Random random = new Random(SAMPLE_SIZE);
+		Collections.shuffle(steps, random);
+		Collections.shuffle(nodes, random);
+		List<P> paths = new ArrayList<>(steps.size());
+		long[] ranks = new long[steps.size()];
+		for (int i = 0; i < ranks.length; i++) {
+			paths.add(graph.pathOfStep(steps.get(i)));
+			ranks[i] = graph.rankOfStep(steps.get(i));
+		}
+		nanos.put(AccessPath.STEP_LOOKUP, time(steps::size, () -> {
+			for (int i = 0; i < ranks.length; i++) {
+				graph.stepByRankAndPath(paths.get(i), ranks[i]);
+			}
+		}));
+		nanos.put(AccessPath.POSITION_LOOKUP, time(steps::size, () -> {
+			for (int i = 0; i < ranks.length; i++) {
+				sail.beginPositionOfStep(paths.get(i), ranks[i]);
+			}
+		}));
+		nanos.put(AccessPath.SEQUENCE_LOOKUP, time(nodes::size, () -> {
+			for (N node : nodes) {
+				graph.sequenceOf(node).length();
+			}
+		}));
+		nanos.put(AccessPath.EDGE_LOOKUP, time(nodes::size, () -> {
+			for (N node : nodes) {
+				try (AutoClosedIterator<E> edges = graph.followEdgesToWardsTheRight(node)) {
+					while (edges.hasNext()) {
+						edges.next();
+					}
+				}
+			}
+		}));
+		return relativeTo(nanos, steps.isEmpty() ? AccessPath.NODE_SCAN : AccessPath.STEP_SCAN);
+	}
+
+	private static AccessCosts relativeTo(Map<AccessPath, Double> nanos, AccessPath base) {
+		double unit = nanos.get(base);
+		if (Double.isNaN(unit)) {
+			return UNIFORM;
+		}
+		Map<AccessPath, Double> costs = new EnumMap<>(AccessPath.class);
+		for (Map.Entry<AccessPath, Double> en : nanos.entrySet()) {
+			if (!Double.isNaN(en.getValue())) {
+				double ratio = Math.max(1, en.getValue() / unit);
+				costs.put(en.getKey(), Math.min(MAX_COST, Math.pow(10, Math.round(Math.log10(ratio)))));
+			}
+		}
+		return new AccessCosts(costs);
+	}
+
+	/**
+	 * A first run loads and warms up the code. Small graphs repeat the probe, so
+	 * that enough operations are timed.
+	 * 
+	 * @return the fastest time per operation over a few rounds, or NaN if there
+	 *         was nothing to time
+	 */
+	private static double time(IntSupplier operations, Runnable probe) {
+		probe.run();
+		int count = operations.getAsInt();
+		if (count == 0) {
+			return Double.NaN;
+		}
+		int repeats = Math.max(1, SAMPLE_SIZE / count);
+		double fastest = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < repeats; i++) {
+				probe.run();
+			}
+			fastest = Math.min(fastest, Math.max(1, System.nanoTime() - start));
+		}
+		return fastest / ((double) count * repeats);
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.statements;
+
+/**
+ * The ways a {@link StatementProvider} reads the graph to generate statements.
+ * What one statement costs differs per way, and per kind of graph: on a disk
+ * backed graph finding one step is much slower than reading the next one.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public enum AccessPath {
+	/**
+	 * Generated from the values in the pattern, without reading the graph
+	 */
+	NONE,
+	/**
+	 * Iterating over all steps, or all steps of a path
+	 */
+	STEP_SCAN,
+	/**
+	 * Finding one step by its path and rank
+	 */
+	STEP_LOOKUP,
+	/**
+	 * Finding where one step begins or ends
+	 */
+	POSITION_LOOKUP,
+	/**
+	 * Iterating over all nodes with their sequence, or all edges
+	 */
+	NODE_SCAN,
+	/**
+	 * Reading the sequence of one node
+	 */
+	SEQUENCE_LOOKUP,
+	/**
+	 * Following the edges of one node
+	 */
+	EDGE_LOOKUP
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.statements;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+
+import io.github.jervenbolleman.handlegraph4j.EdgeHandle;
+import io.github.jervenbolleman.handlegraph4j.NodeHandle;
+import io.github.jervenbolleman.handlegraph4j.PathGraph;
+import io.github.jervenbolleman.handlegraph4j.PathHandle;
+import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+
+/**
+ * Statistics of a graph computed once by generating all its statements, used
+ * to plan queries with real counts instead of guesses. The counts are kept per
+ * {@link Schema}, so that the statements about nodes, steps, positions and
+ * paths can be told apart. How many steps go along the reverse strand, and
+ * how the links are oriented, follows from the counts of
+ * {@code vg:reverseOfNode} and the oriented {@code vg:links...} predicates.
+ * 
+ * The statistics can be written to a sidecar file laid out as
+ * 
+ * <pre>
+ * magic, version, node count, edge count, path count, step count
+ * per schema: count, (predicate, statements)*
+ * node degrees: count, (degree, nodes)*
+ * sequence lengths: count, (length, nodes)*
+ * steps per path: count, (path name, steps)*
+ * </pre>
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public final class GraphStatistics {
+
+	private static final long MAGIC = 0x5341504653544154L; // SAPFSTAT
+	private static final int VERSION = 1;
+
+	/**
+	 * The kinds of subject statements are generated for, one per
+	 * {@link StatementProvider}
+	 */
+	public enum Schema {
+		/**
+		 * Nodes, their sequence and links
+		 */
+		NODE,
+		/**
+		 * Steps, their node, path, rank and begin and end
+		 */
+		STEP,
+		/**
+		 * The begin and end positions of steps
+		 */
+		POSITION,
+		/**
+		 * Paths and their label
+		 */
+		PATH
+	}
+
+	/**
+	 * How many nodes have a value, e.g. a degree or a sequence length
+	 * 
+	 * @param values the distinct values, ascending
+	 * @param counts how many nodes have the value at the same index
+	 */
+	public record Histogram(int[] values, long[] counts) {
+
+		/**
+		 * @param from the smallest value
+		 * @param to   the value after the largest
+		 * @return how many nodes have a value in the range
+		 */
+		public long count(long from, long to) {
+			long count = 0;
+			for (int i = first(from); i < values.length && values[i] < to; i++) {
+				count += counts[i];
+			}
+			return count;
+		}
+
+		/**
+		 * @return the mean value, or 0 if there are no nodes
+		 */
+		public double mean() {
+			long nodes = 0;
+			double sum = 0;
+			for (int i = 0; i < values.length; i++) {
+				nodes += counts[i];
+				sum += (double) values[i] * counts[i];
+			}
+			return nodes == 0 ? 0 : sum / nodes;
+		}
+
+		private int first(long value) {
+			int low = 0;
+			int high = values.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (values[mid] < value) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private static Histogram of(Map<Integer, Long> counts) {
+			TreeMap<Integer, Long> sorted = new TreeMap<>(counts);
+			int[] values = new int[sorted.size()];
+			long[] nodes = new long[sorted.size()];
+			int i = 0;
+			for (Map.Entry<Integer, Long> en : sorted.entrySet()) {
+				values[i] = en.getKey();
+				nodes[i++] = en.getValue();
+			}
+			return new Histogram(values, nodes);
+		}
+
+		private void write(DataOutputStream out) throws IOException {
+			out.writeInt(values.length);
+			for (int i = 0; i < values.length; i++) {
+				out.writeInt(values[i]);
+				out.writeLong(counts[i]);
+			}
+		}
+
+		private static Histogram read(DataInputStream in) throws IOException {
+			int size = in.readInt();
+			int[] values = new int[size];
+			long[] counts = new long[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = in.readInt();
+				counts[i] = in.readLong();
+			}
+			return new Histogram(values, counts);
+		}
+	}
+
+	private final Map<Schema, Map<String, Long>> predicateCounts;
+	private final Histogram degrees;
+	private final Histogram sequenceLengths;
+	private final Map<String, Long> stepsPerPath;
+
+	private GraphStatistics(Map<Schema, Map<String, Long>> predicateCounts, Histogram degrees,
+			Histogram sequenceLengths, Map<String, Long> stepsPerPath) {
+		this.predicateCounts = predicateCounts;
+		this.degrees = degrees;
+		this.sequenceLengths = sequenceLengths;
+		this.stepsPerPath = stepsPerPath;
+	}
+
+	/**
+	 * Compute the statistics, generating every statement of the graph once.
+	 * 
+	 * @param <P>  the type of PathHandle
+	 * @param <S>  the type of StepHandle
+	 * @param <N>  the type of NodeHandle
+	 * @param <E>  the type of EdgeHandle
+	 * @param sail the graph to compute the statistics of
+	 * @return the statistics
+	 */
+	public static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> GraphStatistics build(
+			PathHandleGraphSail<P, S, N, E> sail) {
+		Map<Schema, StatementProvider> providers = new EnumMap<>(Schema.class);
+		providers.put(Schema.NODE, new NodeRelatedStatementProvider<>(sail));
+		providers.put(Schema.STEP, new StepRelatedStatementProvider<>(sail));
+		providers.put(Schema.POSITION, new StepPositionStatementProvider<>(sail));
+		providers.put(Schema.PATH, new PathRelatedStatementProvider<>(sail));
+		Map<Schema, Map<String, Long>> predicateCounts = new EnumMap<>(Schema.class);
+		for (Map.Entry<Schema, StatementProvider> en : providers.entrySet()) {
+			Map<String, Long> counts = new HashMap<>();
+			try (AutoClosedIterator<Statement> statements = en.getValue().getStatements(null, null, null)) {
+				while (statements.hasNext()) {
+					counts.merge(statements.next().getPredicate().stringValue(), 1L, Long::sum);
+				}
+			}
+			predicateCounts.put(en.getKey(), Map.copyOf(counts));
+		}
+		PathGraph<P, S, N, E> pg = sail.pathGraph();
+		Map<Integer, Long> degrees = new HashMap<>();
+		Map<Integer, Long> lengths = new HashMap<>();
+		try (AutoClosedIterator<N> nodes = pg.nodes()) {
+			while (nodes.hasNext()) {
+				N node = nodes.next();
+				degrees.merge(degree(pg, node), 1L, Long::sum);
+				lengths.merge(pg.sequenceLengthOf(node), 1L, Long::sum);
+			}
+		}
+		Map<String, Long> stepsPerPath = new HashMap<>();
+		try (AutoClosedIterator<P> paths = pg.paths()) {
+			while (paths.hasNext()) {
+				P path = paths.next();
+				stepsPerPath.put(pg.nameOfPath(path), sail.stepCountOf(path));
+			}
+		}
+		return new GraphStatistics(predicateCounts, Histogram.of(degrees), Histogram.of(lengths),
+				Map.copyOf(stepsPerPath));
+	}
+
+	/**
+	 * The edges leaving a node to the right, on either strand
+	 */
+	private static <N extends NodeHandle> int degree(PathGraph<?, ?, N, ?> pg, N node) {
+		int degree = 0;
+		for (N strand : List.of(node, pg.flip(node))) {
+			try (var edges = pg.followEdgesToWardsTheRight(strand)) {
+				while (edges.hasNext()) {
+					edges.next();
+					degree++;
+				}
+			}
+		}
+		return degree;
+	}
+
+	/**
+	 * Load the statistics from a sidecar file, (re)computing the file first if
+	 * it is missing or was computed for a different graph.
+	 * 
+	 * @param <P>  the type of PathHandle
+	 * @param <S>  the type of StepHandle
+	 * @param <N>  the type of NodeHandle
+	 * @param <E>  the type of EdgeHandle
+	 * @param sail the graph to compute the statistics of
+	 * @param file the sidecar file
+	 * @return the statistics
+	 * @throws IOException if the file can not be written or read
+	 */
+	public static <P extends PathHandle, S extends StepHandle, N extends NodeHandle, E extends EdgeHandle<N>> GraphStatistics buildOrLoad(
+			PathHandleGraphSail<P, S, N, E> sail, Path file) throws IOException {
+		if (Files.exists(file)) {
+			GraphStatistics loaded = load(sail.pathGraph(), file);
+			if (loaded != null) {
+				return loaded;
+			}
+		}
+		GraphStatistics built = build(sail);
+		write(sail.pathGraph(), built, file);
+		return built;
+	}
+
+	private static void write(PathGraph<?, ?, ?, ?> pg, GraphStatistics statistics, Path file) throws IOException {
+		Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(pg.nodeCount());
+			out.writeLong(pg.edgeCount());
+			out.writeLong(pg.pathCount());
+			out.writeLong(pg.stepCount());
+			for (Schema schema : Schema.values()) {
+				writeCounts(out, statistics.predicateCounts.get(schema));
+			}
+			statistics.degrees.write(out);
+			statistics.sequenceLengths.write(out);
+			writeCounts(out, statistics.stepsPerPath);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeCounts(DataOutputStream out, Map<String, Long> counts) throws IOException {
+		out.writeInt(counts.size());
+		for (Map.Entry<String, Long> en : counts.entrySet()) {
+			out.writeUTF(en.getKey());
+			out.writeLong(en.getValue());
+		}
+	}
+
+	/**
+	 * @return the statistics in the file, or null if they are for another graph
+	 */
+	private static GraphStatistics load(PathGraph<?, ?, ?, ?> pg, Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readLong() != MAGIC || in.readInt() != VERSION || in.readLong() != pg.nodeCount()
+					|| in.readLong() != pg.edgeCount() || in.readLong() != pg.pathCount()
+					|| in.readLong() != pg.stepCount()) {
+				return null;
+			}
+			Map<Schema, Map<String, Long>> predicateCounts = new EnumMap<>(Schema.class);
+			for (Schema schema : Schema.values()) {
+				predicateCounts.put(schema, readCounts(in));
+			}
+			Histogram degrees = Histogram.read(in);
+			Histogram sequenceLengths = Histogram.read(in);
+			return new GraphStatistics(predicateCounts, degrees, sequenceLengths, readCounts(in));
+		}
+	}
+
+	private static Map<String, Long> readCounts(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<String, Long> counts = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			counts.put(in.readUTF(), in.readLong());
+		}
+		return Map.copyOf(counts);
+	}
+
+	/**
+	 * @param schema    the kind of subject
+	 * @param predicate of the statements, or null for all statements
+	 * @return how many statements about this kind of subject have the predicate
+	 */
+	public long predicateCount(Schema schema, IRI predicate) {
+		Map<String, Long> counts = predicateCounts.get(schema);
+		if (predicate == null) {
+			return counts.values().stream().mapToLong(Long::longValue).sum();
+		}
+		return counts.getOrDefault(predicate.stringValue(), 0L);
+	}
+
+	/**
+	 * @return the number of edges leaving each node to the right, on either
+	 *         strand
+	 */
+	public Histogram degrees() {
+		return degrees;
+	}
+
+	/**
+	 * @return the sequence length of each node
+	 */
+	public Histogram sequenceLengths() {
+		return sequenceLengths;
+	}
+
+	/**
+	 * @param pathName the name of a path
+	 * @return how many steps the path has, or null if the path is not known
+	 */
+	public Long stepCount(String pathName) {
+		return stepsPerPath.get(pathName);
+	}
+
+	/**
+	 * @return the number of steps of every path
+	 */
+	public long[] stepsPerPath() {
+		long[] steps = stepsPerPath.values().stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(steps);
+		return steps;
+	}
+}
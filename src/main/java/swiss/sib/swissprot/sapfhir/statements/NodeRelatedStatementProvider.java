@@ -23,15 +23,17 @@ import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterato
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.empty;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.filter;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.flatMap;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.from;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.of;
 import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.nodeIriFromIri;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import org.eclipse.rdf4j.model.BNode;
@@ -51,11 +53,14 @@ import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
 import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
-import io.github.jervenbolleman.handlegraph4j.sequences.SequenceType;
 import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.index.EdgeSet;
+import swiss.sib.swissprot.sapfhir.index.SequenceHashIndex;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics.Schema;
 import swiss.sib.swissprot.sapfhir.values.NodeIRI;
 import swiss.sib.swissprot.sapfhir.values.SequenceLiteral;
+import swiss.sib.swissprot.sapfhir.values.SequenceLiteralWithNodeHandle;
 
 /**
  * Generate the statements associated with node objects
@@ -88,6 +93,9 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 			return true;
 		} else if (val instanceof Literal lit) {
 			return (XSD.STRING.equals(lit.getDatatype()));
+		} else if (val instanceof IRI iri) {
+			// The object of a link
+			return nodeIriFromIri(iri, sail) != null;
 		}
 		return false;
 	}
@@ -107,7 +115,9 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 		} else if (object instanceof IRI iri) {
 			NodeIRI<N> nodeObject = nodeIriFromIri(iri, sail);
 			if (nodeObject != null) {
-				sail.pathGraph().followEdgesToWardsTheRight(nodeObject.node());
+				if (predicate == null || linkPredicates.contains(predicate)) {
+					return linksToNode(nodeObject.node(), predicate);
+				}
 			} else if (VG.Node.equals(iri)) {
 				AutoClosedIterator<N> nodes = sail.pathGraph().nodes();
 				return map(nodes, (n) -> {
@@ -133,6 +143,8 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 		} else if (linkPredicates.contains(predicate)) {
 			var edges = sail.pathGraph().edges();
 			return edgesToStatements(predicate, edges);
+		} else if (RDF.TYPE.equals(predicate) || RDF.VALUE.equals(predicate)) {
+			return flatMap(map(nodeWithSequence, (n) -> nodeSequenceToTriples(n, predicate, null)));
 		} else {
 			return empty();
 		}
@@ -145,7 +157,13 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 
 		if ((predicate == null || linkPredicates.contains(predicate)) && ((object instanceof IRI) || object == null)) {
 			NodeIRI<N> nodeObject = nodeIriFromIri((IRI) object, sail);
-			var linksForNode = linksForNode(node, predicate, nodeObject);
+			if (object != null && nodeObject == null) {
+				// Only nodes are linked
+				return typeValue;
+			} else if (nodeObject != null) {
+				return concat(typeValue, linksBetween(node, predicate, nodeObject.node()));
+			}
+			var linksForNode = linksForNode(node, predicate);
 			var typesAndLinks = concat(typeValue, linksForNode);
 			return typesAndLinks;
 		}
@@ -153,19 +171,36 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 	}
 
 	private AutoClosedIterator<Statement> getNodeTriplesForKnownSequence(Literal lit, IRI predicate) {
+		Long hash = sequenceHash(lit);
+		if (hash != null) {
+			// Nodes that share the hash but not the sequence are removed by
+			// nodeToTriples comparing the sequence to the literal
+			long[] nodeIds = sail.sequenceHashIndex().nodeIds(hash);
+			var pg = sail.pathGraph();
+			var nodesWithSequence = map(from(Arrays.stream(nodeIds).iterator()), pg::fromLong);
+			Function<N, AutoClosedIterator<Statement>> name = n -> nodeToTriples(n, predicate, lit);
+			var map = map(nodesWithSequence, name);
+			return flatMap(map);
+		}
+		return empty();
+	}
 
-		if ((lit.getDatatype() == null || lit.getDatatype() == XSD.STRING) && lit.getLanguage().isEmpty()) {
+	/**
+	 * @return the hash of the sequence in the literal, without decoding a node
+	 *         sequence, or null if the literal can not be a sequence
+	 */
+	private static Long sequenceHash(Literal lit) {
+		if (lit instanceof SequenceLiteral<?, ?> sl) {
+			return SequenceHashIndex.hash(sl.s());
+		} else if (lit instanceof SequenceLiteralWithNodeHandle<?, ?> slwnh) {
+			return SequenceHashIndex.hash(slwnh.sequence());
+		} else if ((lit.getDatatype() == null || lit.getDatatype() == XSD.STRING) && lit.getLanguage().isEmpty()) {
 			String label = lit.getLabel();
 			if (Sequence.stringCanBeDNASequence(label)) {
-				byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
-				Sequence seq = SequenceType.fromByteArray(bytes);
-				var nodesWithSequence = sail.pathGraph().nodesWithSequence(seq);
-				Function<N, AutoClosedIterator<Statement>> name = n -> nodeToTriples(n, predicate, lit);
-				var map = map(nodesWithSequence, name);
-				return flatMap(map);
+				return SequenceHashIndex.hash(label);
 			}
 		}
-		return empty();
+		return null;
 	}
 
 	private AutoClosedIterator<Statement> nodeSequenceToTriples(NodeSequence<N> ns, IRI predicate, Value object) {
@@ -186,6 +221,9 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 			} else {
 				return empty();
 			}
+		} else if (predicate != null) {
+			// Links are generated from the edges
+			return empty();
 		} else if (VG.Node.equals(object)){
 			return of(nodeTypeStatement(nodeSubject));
 		}
@@ -209,22 +247,87 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 		return new UnsafeStatement(nodeSubject, RDF.TYPE, VG.Node);
 	}
 
-	private AutoClosedIterator<Statement> linksForNode(N node, IRI predicate, NodeIRI<N> object) {
+	/**
+	 * The links from a node, these are the edges to the right of either strand of
+	 * the node.
+	 */
+	private AutoClosedIterator<Statement> linksForNode(N node, IRI predicate) {
 		PathGraph<P, S, N, E> pg = sail.pathGraph();
-		AutoClosedIterator<E> leftStream = pg.followEdgesToWardsTheLeft(node);
-		if (object != null) {
-			Predicate<E> rightMatches = e -> pg.asLong(e.right()) == object.id();
-			leftStream = filter(leftStream, rightMatches);
+		AutoClosedIterator<E> rightStream = concat(pg.followEdgesToWardsTheRight(node),
+				pg.followEdgesToWardsTheRight(pg.flip(node)));
+		return edgesToStatements(predicate, rightStream);
+	}
+
+	/**
+	 * The links between two nodes, checked in the edge set for each combination of
+	 * strands instead of following the edges of either node. Graphs with too many
+	 * edges for an edge set follow the edges of the left node.
+	 */
+	private AutoClosedIterator<Statement> linksBetween(N left, IRI predicate, N right) {
+		PathGraph<P, S, N, E> pg = sail.pathGraph();
+		EdgeSet edgeSet = sail.edgeSet();
+		if (edgeSet == null) {
+			AutoClosedIterator<E> rightStream = concat(pg.followEdgesToWardsTheRight(left),
+					pg.followEdgesToWardsTheRight(pg.flip(left)));
+			return edgesToStatements(predicate, filter(rightStream, e -> pg.equalNodes(e.right(), right)));
 		}
-		
-//		AutoClosedIterator<E> rightStream = pg.followEdgesToWardsTheRight(node);
-//		if (object != null) {
-//			Predicate<E> rightMatches = e -> pg.asLong(e.right()) == object.id();
-//			rightStream = filter(rightStream, rightMatches);
-//		}
+		NodeIRI<N> leftIRI = new NodeIRI<>(pg.asLong(left), sail);
+		NodeIRI<N> rightIRI = new NodeIRI<>(pg.asLong(right), sail);
+		long forwardLeft = pg.asLong(left);
+		long reverseLeft = pg.asLong(pg.flip(left));
+		long forwardRight = pg.asLong(right);
+		long reverseRight = pg.asLong(pg.flip(right));
+		List<Statement> links = new ArrayList<>(2);
+		addLinks(links, edgeSet.contains(forwardLeft, forwardRight), VG.linksForwardToForward, predicate, leftIRI,
+				rightIRI);
+		addLinks(links, edgeSet.contains(forwardLeft, reverseRight), VG.linksForwardToReverse, predicate, leftIRI,
+				rightIRI);
+		addLinks(links, edgeSet.contains(reverseLeft, forwardRight), VG.linksReverseToForward, predicate, leftIRI,
+				rightIRI);
+		addLinks(links, edgeSet.contains(reverseLeft, reverseRight), VG.linksReverseToReverse, predicate, leftIRI,
+				rightIRI);
+		return from(links.iterator());
+	}
+
+	private void addLinks(List<Statement> links, boolean edgeExists, IRI oriented, IRI predicate, NodeIRI<N> left,
+			NodeIRI<N> right) {
+		if (edgeExists) {
+			// Every edge is both a vg:links and an oriented link
+			if (predicate == null || VG.links.equals(predicate)) {
+				links.add(links(left, right));
+			}
+			if (predicate == null || oriented.equals(predicate)) {
+				links.add(new UnsafeStatement(left, oriented, right));
+			}
+		}
+	}
+
+	/**
+	 * The links to a node, these are the edges to the left of either strand of
+	 * the node. Read from the adjacency of the node instead of all edges.
+	 */
+	private AutoClosedIterator<Statement> linksToNode(N node, IRI predicate) {
+		PathGraph<P, S, N, E> pg = sail.pathGraph();
+		AutoClosedIterator<E> leftStream = concat(pg.followEdgesToWardsTheLeft(node),
+				pg.followEdgesToWardsTheLeft(pg.flip(node)));
 		return edgesToStatements(predicate, leftStream);
 	}
 
+	private long degree(N node, boolean towardsTheRight) {
+		PathGraph<P, S, N, E> pg = sail.pathGraph();
+		long degree = 0;
+		for (N strand : List.of(node, pg.flip(node))) {
+			try (AutoClosedIterator<E> edges = towardsTheRight ? pg.followEdgesToWardsTheRight(strand)
+					: pg.followEdgesToWardsTheLeft(strand)) {
+				while (edges.hasNext()) {
+					edges.next();
+					degree++;
+				}
+			}
+		}
+		return degree;
+	}
+
 	private AutoClosedIterator<Statement> edgesToStatements(IRI predicate, AutoClosedIterator<E> asStream) {
 		if (VG.linksForwardToForward.equals(predicate)) {
 			return filter(map(asStream, this::forwardToForward), Objects::nonNull);
@@ -310,12 +413,59 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 	}
 	
 	
+	@Override
+	public AccessPath accessPath(Resource subj, IRI predicate, Value obj) {
+		if (subj != null) {
+			if (predicate != null && linkPredicates.contains(predicate)) {
+				return AccessPath.EDGE_LOOKUP;
+			}
+			return RDF.TYPE.equals(predicate) ? AccessPath.NONE : AccessPath.SEQUENCE_LOOKUP;
+		} else if (obj instanceof Literal) {
+			// Candidates from the sequence hash index are compared to the literal
+			return AccessPath.SEQUENCE_LOOKUP;
+		} else if (obj instanceof IRI iri && nodeIriFromIri(iri, sail) != null) {
+			return AccessPath.EDGE_LOOKUP;
+		} else {
+			return AccessPath.NODE_SCAN;
+		}
+	}
+
+	@Override
+	public double estimateSubjectCardinality(Resource subj, IRI predicate) {
+		if (!(subj instanceof IRI iri)) {
+			return StatementProvider.super.estimateSubjectCardinality(subj, predicate);
+		}
+		NodeIRI<N> subjectNode = nodeIriFromIri(iri, sail);
+		if (subjectNode == null) {
+			return 0;
+		} else if (predicate == null) {
+			// The type, the sequence and each edge as a vg:links and an oriented link
+			return 2 + degree(subjectNode.node(), true) * 2;
+		} else if (RDF.TYPE.equals(predicate) || RDF.VALUE.equals(predicate)) {
+			return 1;
+		} else if (VG.links.equals(predicate)) {
+			return degree(subjectNode.node(), true);
+		} else if (linkPredicates.contains(predicate)) {
+			return count(linksForNode(subjectNode.node(), predicate));
+		} else {
+			return 0;
+		}
+	}
+
+	@Override
+	public double estimateSubjectCount() {
+		return sail.pathGraph().nodeCount();
+	}
+
 	@Override
 	public double estimatePredicateCardinality(IRI predicate) {
-		if (predicate == null) {
-			return sail.pathGraph().nodeCount() + sail.pathGraph().edgeCount();
-		} else if (RDF.VALUE.equals(predicate)) {
+		GraphStatistics statistics = sail.statistics();
+		if (RDF.VALUE.equals(predicate)) {
 			return sail.pathGraph().nodeCount() * 10; // We really prefer to go linear over all sequences
+		} else if (statistics != null) {
+			return statistics.predicateCount(Schema.NODE, predicate);
+		} else if (predicate == null) {
+			return sail.pathGraph().nodeCount() + sail.pathGraph().edgeCount();
 		} else if (RDF.TYPE.equals(predicate)) {
 			return sail.pathGraph().nodeCount();
 		} else if (linkPredicates.contains(predicate)) {
@@ -326,23 +476,41 @@ public record NodeRelatedStatementProvider<P extends PathHandle, S extends StepH
 	}
 
 	@Override
-	public double estimateObjectCardinality(Value obj) {
-		if (obj == null || VG.Node.equals(obj)) {
+	public double estimateObjectCardinality(IRI predicate, Value obj) {
+		if (obj == null) {
 			return sail.pathGraph().nodeCount();
-		} else if (obj instanceof Literal) {
-			Literal lit = (Literal) obj;
-			if ((XSD.STRING.equals(lit.getDatatype()))) {
-				if (lit.stringValue().length() == 1) {
-					// About 60% of sequences are length one, and
-					// fast to retrieve.
-					return sail.pathGraph().nodeCount() * 0.6;
-				} else {
-					return sail.pathGraph().nodeCount() * 0.4;
-				}
+		} else if (VG.Node.equals(obj)) {
+			return predicate == null || RDF.TYPE.equals(predicate) ? sail.pathGraph().nodeCount() : 0;
+		} else if (obj instanceof Literal lit && XSD.STRING.equals(lit.getDatatype())) {
+			if (predicate != null && !RDF.VALUE.equals(predicate)) {
+				return 0;
+			}
+			Long hash = sequenceHash(lit);
+			return hash == null ? 0 : sail.sequenceHashIndex().count(hash);
+		} else if (obj instanceof IRI iri) {
+			NodeIRI<N> objectNode = nodeIriFromIri(iri, sail);
+			if (objectNode == null) {
+				return 0;
+			} else if (predicate == null) {
+				// Each edge gives a vg:links and one of the oriented links
+				return degree(objectNode.node(), false) * 2;
+			} else if (VG.links.equals(predicate)) {
+				return degree(objectNode.node(), false);
+			} else if (linkPredicates.contains(predicate)) {
+				return count(linksToNode(objectNode.node(), predicate));
 			}
-			;
 		}
 		return 0;
 	}
 
+	private static long count(AutoClosedIterator<Statement> statements) {
+		long count = 0;
+		try (statements) {
+			while (statements.hasNext()) {
+				statements.next();
+				count++;
+			}
+		}
+		return count;
+	}
 }
@@ -42,6 +42,7 @@ import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
 import swiss.sib.swissprot.handlegraph4jrdf.VG;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics.Schema;
 import swiss.sib.swissprot.sapfhir.values.PathIRI;
 
 /**
@@ -122,9 +123,45 @@ public final record PathRelatedStatementProvider<P extends PathHandle, S extends
 		}
 	}
 
+	@Override
+	public double estimateSubjectCardinality(Resource subj, IRI predicate) {
+		if (!(subj instanceof IRI iri)) {
+			return StatementProvider.super.estimateSubjectCardinality(subj, predicate);
+		} else if (pathIriFromIri(iri, sail) == null) {
+			return 0;
+		} else if (predicate == null) {
+			return 2;
+		} else {
+			return predicateMightReturnValues(predicate) ? 1 : 0;
+		}
+	}
+
+	@Override
+	public double estimateObjectCardinality(IRI predicate, Value obj) {
+		if (VG.Path.equals(obj)) {
+			return predicate == null || RDF.TYPE.equals(predicate) ? sail.pathGraph().pathCount() : 0;
+		} else if (isString(obj)) {
+			// Paths have unique names
+			return predicate == null || RDFS.LABEL.equals(predicate) ? 1 : 0;
+		} else {
+			return StatementProvider.super.estimateObjectCardinality(predicate, obj);
+		}
+	}
+
+	@Override
+	public double estimateSubjectCount() {
+		return sail.pathGraph().pathCount();
+	}
+
 	@Override
 	public double estimatePredicateCardinality(IRI predicate) {
-		if (RDFS.LABEL.equals(predicate)) {
+		GraphStatistics statistics = sail.statistics();
+		if (statistics != null) {
+			return statistics.predicateCount(Schema.PATH, predicate);
+		} else if (predicate == null) {
+			// A type and a label for every path
+			return sail.pathGraph().pathCount() * 2;
+		} else if (RDFS.LABEL.equals(predicate)) {
 			return sail.pathGraph().pathCount();
 		} else if (RDF.TYPE.equals(predicate)) {
 			return sail.pathGraph().pathCount();
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.statements;
+
+import java.util.NoSuchElementException;
+import java.util.function.LongFunction;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+
+/**
+ * A value for each rank in a range
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param <T> the type of value
+ */
+final class RankRange<T> implements AutoClosedIterator<T> {
+	private final long to;
+	private final LongFunction<T> atRank;
+	private long rank;
+
+	/**
+	 * @param from   the first rank
+	 * @param to     the rank after the last one
+	 * @param atRank creates the value for a rank
+	 */
+	RankRange(long from, long to, LongFunction<T> atRank) {
+		this.rank = from;
+		this.to = to;
+		this.atRank = atRank;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return rank < to;
+	}
+
+	@Override
+	public T next() {
+		if (rank >= to) {
+			throw new NoSuchElementException();
+		}
+		return atRank.apply(rank++);
+	}
+
+	@Override
+	public void close() {
+		// Nothing to close
+	}
+}
@@ -19,6 +19,8 @@
  */
 package swiss.sib.swissprot.sapfhir.statements;
 
+import java.util.List;
+
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
@@ -28,6 +30,8 @@ import io.github.jervenbolleman.handlegraph4j.NodeHandle;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri.Kind;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
 import swiss.sib.swissprot.sapfhir.values.NodeIRI;
 import swiss.sib.swissprot.sapfhir.values.PathIRI;
@@ -136,14 +140,11 @@ public sealed interface StatementProvider permits StepRelatedStatementProvider,
 			return null;
 		} else if (iri instanceof NodeIRI ni) {
 			return ni;
-		} else if (sail.matchesNodeIriPattern(iri.stringValue())) {
-			try {
-				long nodeid = Long.parseLong(iri.getLocalName());
-				return new NodeIRI<>(nodeid, sail);
-			} catch (NumberFormatException e) {
-				return null;
-			}
 		} else {
+			DecodedIri<?> decoded = sail.decodeIri(iri.stringValue());
+			if (decoded != null && decoded.kind() == Kind.NODE) {
+				return new NodeIRI<>(decoded.value(), sail);
+			}
 			return null;
 		}
 	}
@@ -178,11 +179,55 @@ public sealed interface StatementProvider permits StepRelatedStatementProvider,
 	 */
 	public default double estimateCardinality(Resource subj, IRI predicate, Value obj) {
 		double predEst = estimatePredicateCardinality(predicate);
-		double subEst = estimateSubjectCardinality(subj);
-		double objEst = estimateObjectCardinality(obj);
+		double subEst = estimateSubjectCardinality(subj, predicate);
+		double objEst = estimateObjectCardinality(predicate, obj);
 		return Math.min(Math.min(predEst, subEst), objEst);
 	}
 
+	/**
+	 * How the graph is read to generate the statements that match the pattern,
+	 * so that the estimate can be weighed by what reading that way costs.
+	 * 
+	 * @param subj      the subject might be null
+	 * @param predicate the predicate might be null
+	 * @param obj       the object might be null
+	 * @return the access path
+	 */
+	public default AccessPath accessPath(Resource subj, IRI predicate, Value obj) {
+		return AccessPath.NONE;
+	}
+
+	/**
+	 * How many subjects this provider generates statements for, all of the same
+	 * kind.
+	 * 
+	 * @return an estimate
+	 */
+	public double estimateSubjectCount();
+
+	/**
+	 * Estimate how many of the subjects of this provider match every pattern of a
+	 * star. The statements generated for a subject follow a fixed schema, so the
+	 * fraction of the subjects that match each pattern is known from how many
+	 * statements match it. Multiplying these fractions is the characteristic set
+	 * estimate of the star.
+	 * 
+	 * @param star the patterns sharing one unbound subject
+	 * @return an estimate
+	 */
+	public default double estimateStarSubjectCount(List<StarPattern> star) {
+		double subjects = estimateSubjectCount();
+		double estimate = subjects;
+		for (StarPattern pattern : star) {
+			if (estimate <= 0) {
+				return 0;
+			}
+			double matching = estimateCardinality(null, pattern.predicate(), pattern.object());
+			estimate *= Math.min(1, matching / subjects);
+		}
+		return estimate;
+	}
+
 	/**
 	 * Estimate how often this predicate is in the graph
 	 * 
@@ -192,12 +237,14 @@ public sealed interface StatementProvider permits StepRelatedStatementProvider,
 	public double estimatePredicateCardinality(IRI predicate);
 
 	/**
-	 * Estimate how often this subject is in the graph
+	 * Estimate how often this subject is in the graph. Providers know exactly how
+	 * many statements one of their own subjects has, and should say so.
 	 * 
-	 * @param subj to estimate for
+	 * @param subj      to estimate for
+	 * @param predicate the subject is used with, or null for any
 	 * @return an estimate
 	 */
-	public default double estimateSubjectCardinality(Resource subj) {
+	public default double estimateSubjectCardinality(Resource subj, IRI predicate) {
 		if (subj == null) {
 			return Double.MAX_VALUE / 4;
 		} else if (subjectMightReturnValues(subj)) {
@@ -208,12 +255,15 @@ public sealed interface StatementProvider permits StepRelatedStatementProvider,
 	}
 
 	/**
-	 * Estimate how often this object will be in the graph
+	 * Estimate how often this object will be in the graph. Providers know how
+	 * often one of the values they generate is used as object, and should say
+	 * so.
 	 * 
-	 * @param obj to estimate for
+	 * @param predicate the object is used with, or null for any
+	 * @param obj       to estimate for
 	 * @return an estimate
 	 */
-	public default double estimateObjectCardinality(Value obj) {
+	public default double estimateObjectCardinality(IRI predicate, Value obj) {
 		if (obj == null) {
 			return Double.MAX_VALUE / 2;
 		} else if (objectMightReturnValues(obj)) {
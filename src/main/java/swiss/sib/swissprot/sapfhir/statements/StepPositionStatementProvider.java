@@ -21,13 +21,14 @@ package swiss.sib.swissprot.sapfhir.statements;
 
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.concat;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.empty;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.filter;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.flatMap;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.of;
 import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.filter;
 import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.pathIriFromIri;
-import static swiss.sib.swissprot.sapfhir.values.StepPositionIRI.POSITION;
 
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.eclipse.rdf4j.model.BNode;
@@ -46,8 +47,11 @@ import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
 import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
-import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.index.StepPositionIndex;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri.Kind;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics.Schema;
 import swiss.sib.swissprot.sapfhir.values.PathIRI;
 import swiss.sib.swissprot.sapfhir.values.StepBeginPositionIRI;
 import swiss.sib.swissprot.sapfhir.values.StepEndPositionIRI;
@@ -83,7 +87,11 @@ public record StepPositionStatementProvider<P extends PathHandle, S extends Step
 		} else if (val instanceof PathIRI) {
 			return true;
 		} else if (val instanceof IRI iri) {
-			return types.contains(iri) || pathIriFromIri(iri, sail) != null;
+			if (types.contains(iri)) {
+				return true;
+			}
+			DecodedIri<P> decoded = sail.decodeIri(iri.stringValue());
+			return decoded != null && decoded.kind() == Kind.PATH;
 		}
 		return false;
 	}
@@ -92,8 +100,11 @@ public record StepPositionStatementProvider<P extends PathHandle, S extends Step
 	public AutoClosedIterator<Statement> getStatements(Resource subject, IRI predicate, Value object) {
 		if (subject == null && (object == null || !(object instanceof BNode))) {
 			var pg = sail.pathGraph();
-			var paths = pg.paths();
+			// Only faldo:reference has a path as object, so only the steps of that path match
+			PathIRI<P> reference = object instanceof IRI iri ? pathIriFromIri(iri, sail) : null;
+			var paths = reference == null ? pg.paths() : of(reference.path());
 			if (!paths.hasNext()) {
+				paths.close();
 				return empty();
 			}
 			var flattened = new PositionMaintainingStepIRIGenerator(paths, pg);
@@ -151,7 +162,7 @@ public record StepPositionStatementProvider<P extends PathHandle, S extends Step
 		}
 		PathIRI<P> pathIRI = new PathIRI<>(subject.path(), sail);
 		if (object == null || pathIRI.equals(object)) {
-			return of(new UnsafeStatement(subject, VG.path, pathIRI));
+			return of(new UnsafeStatement(subject, FALDO.reference, pathIRI));
 		} else {
 			return empty();
 		}
@@ -176,49 +187,132 @@ public record StepPositionStatementProvider<P extends PathHandle, S extends Step
 		return filter(object, stream);
 	}
 
+	/**
+	 * The faldo:position statements of the begins and ends of the steps of one
+	 * path that are in a range of positions.
+	 * 
+	 * @param path the steps are on
+	 * @param from the first position in the range
+	 * @param to   the position after the last one in the range
+	 * @return the statements with a begin or end position IRI as subject
+	 */
+	public AutoClosedIterator<Statement> getPositionStatementsInRange(P path, long from, long to) {
+		if (from >= to) {
+			return empty();
+		}
+		StepPositionIndex<P> index = sail.positionIndex();
+		if (index != null && index.contains(path)) {
+			long firstBegin = index.firstRankBeginningAtOrAfter(path, from);
+			long lastBegin = index.firstRankBeginningAtOrAfter(path, to);
+			long firstEnd = index.firstRankEndingAtOrAfter(path, from);
+			long lastEnd = index.firstRankEndingAtOrAfter(path, to);
+			var begins = new RankRange<>(firstBegin, lastBegin,
+					rank -> positionStatement(new StepBeginPositionIRI<>(path, rank, sail,
+							index.beginPosition(path, rank))));
+			var ends = new RankRange<>(firstEnd, lastEnd, rank -> positionStatement(
+					new StepEndPositionIRI<>(path, rank, sail, index.endPosition(path, rank))));
+			return concat(begins, ends);
+		}
+		var steps = new PositionMaintainingStepIRIGenerator(of(path), sail.pathGraph());
+		var inRange = new BeginsBefore(steps, to);
+		var statements = map(inRange, be -> of(positionStatement(be.begin()), positionStatement(be.end())));
+		return filter(flatMap(statements), s -> {
+			long position = ((Literal) s.getObject()).longValue();
+			return position >= from && position < to;
+		});
+	}
+
+	/**
+	 * Estimate how many statements
+	 * {@link #getPositionStatementsInRange(PathHandle, long, long)} returns.
+	 * 
+	 * @param path the steps are on
+	 * @param from the first position in the range
+	 * @param to   the position after the last one in the range
+	 * @return an estimate
+	 */
+	public double estimatePositionStatementsInRange(P path, long from, long to) {
+		if (from >= to) {
+			return 0;
+		}
+		StepPositionIndex<P> index = sail.positionIndex();
+		if (index != null && index.contains(path)) {
+			return index.firstRankBeginningAtOrAfter(path, to) - index.firstRankBeginningAtOrAfter(path, from)
+					+ index.firstRankEndingAtOrAfter(path, to) - index.firstRankEndingAtOrAfter(path, from);
+		}
+		PathGraph<P, S, N, E> pg = sail.pathGraph();
+		GraphStatistics statistics = sail.statistics();
+		if (statistics != null) {
+			double basesPerStep = Math.max(1, statistics.sequenceLengths().mean());
+			return Math.min(sail.stepCountOf(path), (to - from) / basesPerStep) * 2;
+		}
+		double stepsPerPath = (double) pg.stepCount() / Math.max(1, pg.pathCount());
+		double basesPerStep = Math.max(1, (double) pg.nodeCount() / Math.max(1, pg.stepCount()));
+		return Math.min(stepsPerPath, (to - from) / basesPerStep) * 2;
+	}
+
+	private Statement positionStatement(StepBeginPositionIRI<P, S> begin) {
+		return new UnsafeStatement(begin, FALDO.position,
+				sail.getValueFactory().createLiteral(begin.getBeginPosition()));
+	}
+
+	private Statement positionStatement(StepEndPositionIRI<P, S> end) {
+		return new UnsafeStatement(end, FALDO.position, sail.getValueFactory().createLiteral(end.getEndPosition()));
+	}
+
 	private StepPositionIRI<P, S> beginOrEndIriFromIri(IRI iri) {
 		if (iri == null) {
 			return null;
 		} else if (iri instanceof StepPositionIRI spi) {
 			return spi;
 		}
-		String stringValue = iri.stringValue();
-		int lastIndexOf = stringValue.lastIndexOf(POSITION);
-		if (lastIndexOf > 0) {
-			String pathPart = stringValue.substring(0, lastIndexOf);
-			P p = sail.pathFromIriString(pathPart);
-			return positionToStep(pathPart, lastIndexOf, p);
-		}
-		return null;
+		return sail.stepPositionFromIriString(iri.stringValue());
 	}
 
-	private StepPositionIRI<P, S> positionToStep(String pathPart, int lastIndexOf, P p) {
-		try {
-			int pathPartStart = lastIndexOf + POSITION.length();
-			String positionPart = pathPart.substring(pathPartStart);
-			long position = Long.parseLong(positionPart);
-			if (p != null) {
-				PathGraph<P, S, N, E> pathGraph = sail.pathGraph();
-				S begin = pathGraph.stepOfPathByBeginPosition(p, position);
-				if (begin != null) {
-					long rank = pathGraph.rankOfStep(begin);
-					return new StepBeginPositionIRI<>(p, rank, sail);
-				}
-				S end = pathGraph.stepOfPathByEndPosition(p, position);
-				if (end != null) {
-					long rank = pathGraph.rankOfStep(end);
-					return new StepEndPositionIRI<>(p, rank, sail);
+	private record StepBeginAndEndIris<P extends PathHandle, S extends StepHandle>(StepBeginPositionIRI<P, S> begin,
+			StepEndPositionIRI<P, S> end) {
+
+	}
+
+	/**
+	 * Stops once the steps begin at or after a position, all later steps are
+	 * further along the path
+	 */
+	private class BeginsBefore implements AutoClosedIterator<StepBeginAndEndIris<P, S>> {
+		private final PositionMaintainingStepIRIGenerator steps;
+		private final long to;
+		private StepBeginAndEndIris<P, S> next;
+
+		BeginsBefore(PositionMaintainingStepIRIGenerator steps, long to) {
+			this.steps = steps;
+			this.to = to;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && steps.hasNext()) {
+				StepBeginAndEndIris<P, S> be = steps.next();
+				if (be.begin().getBeginPosition() < to) {
+					next = be;
 				}
 			}
-		} catch (NumberFormatException e) {
-			return null;
+			return next != null;
 		}
-		return null;
-	}
 
-	private record StepBeginAndEndIris<P extends PathHandle, S extends StepHandle>(StepBeginPositionIRI<P, S> begin,
-			StepEndPositionIRI<P, S> end) {
+		@Override
+		public StepBeginAndEndIris<P, S> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			StepBeginAndEndIris<P, S> be = next;
+			next = null;
+			return be;
+		}
 
+		@Override
+		public void close() {
+			steps.close();
+		}
 	}
 
 	private class PositionMaintainingStepIRIGenerator implements AutoClosedIterator<StepBeginAndEndIris<P, S>> {
@@ -252,6 +346,8 @@ public record StepPositionStatementProvider<P extends PathHandle, S extends Step
 				path = paths.next();
 				steps.close();
 				steps = pg.stepsOf(path);
+				beginPosition = 0;
+				rank = 0;
 				if (steps.hasNext()) {
 					return true;
 				}
@@ -273,9 +369,80 @@ public record StepPositionStatementProvider<P extends PathHandle, S extends Step
 		}
 	}
 
+	@Override
+	public AccessPath accessPath(Resource subj, IRI predicate, Value obj) {
+		if (subj == null) {
+			// Positions are summed along the path while scanning its steps
+			return AccessPath.STEP_SCAN;
+		} else if (sail.positionIndex() != null) {
+			return AccessPath.NONE;
+		} else {
+			return AccessPath.POSITION_LOOKUP;
+		}
+	}
+
+	@Override
+	public double estimateSubjectCardinality(Resource subj, IRI predicate) {
+		if (!(subj instanceof IRI iri)) {
+			return StatementProvider.super.estimateSubjectCardinality(subj, predicate);
+		} else if (!isPosition(iri)) {
+			return 0;
+		} else if (predicate == null) {
+			return types.size() + 2;
+		} else if (RDF.TYPE.equals(predicate)) {
+			return types.size();
+		} else if (predicates.contains(predicate)) {
+			// One position on one reference
+			return 1;
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Only decodes the IRI, finding the step at a position may need a scan of the
+	 * path.
+	 */
+	private boolean isPosition(IRI iri) {
+		if (iri instanceof StepPositionIRI) {
+			return true;
+		}
+		DecodedIri<P> decoded = sail.decodeIri(iri.stringValue());
+		return decoded != null && decoded.kind() == Kind.POSITION;
+	}
+
+	@Override
+	public double estimateObjectCardinality(IRI predicate, Value obj) {
+		if (obj instanceof Literal) {
+			// Only faldo:position has a literal as object, at most the begin of
+			// one step and the end of another on each path
+			return predicate == null || FALDO.position.equals(predicate) ? sail.pathGraph().pathCount() * 2 : 0;
+		}
+		if (!(obj instanceof IRI iri)) {
+			return StatementProvider.super.estimateObjectCardinality(predicate, obj);
+		} else if (types.contains(iri)) {
+			return predicate == null || RDF.TYPE.equals(predicate) ? sail.pathGraph().stepCount() * 2 : 0;
+		}
+		PathIRI<P> reference = pathIriFromIri(iri, sail);
+		if (reference != null && (predicate == null || FALDO.reference.equals(predicate))) {
+			// a begin and an end position for every step
+			return sail.stepCountOf(reference.path()) * 2;
+		}
+		return 0;
+	}
+
+	@Override
+	public double estimateSubjectCount() {
+		// a begin and an end position for every step
+		return sail.pathGraph().stepCount() * 2;
+	}
+
 	@Override
 	public double estimatePredicateCardinality(IRI predicate) {
-		if (predicate == null || predicates.contains(predicate)) {
+		GraphStatistics statistics = sail.statistics();
+		if (statistics != null) {
+			return statistics.predicateCount(Schema.POSITION, predicate);
+		} else if (predicate == null || predicates.contains(predicate)) {
 			return sail.pathGraph().stepCount() * 2;
 		} else {
 			return 0;
@@ -21,10 +21,13 @@ package swiss.sib.swissprot.sapfhir.statements;
 
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.concat;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.empty;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.flatMap;
+import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.map;
 import static io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator.of;
 import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.pathIriFromIri;
 import static swiss.sib.swissprot.sapfhir.statements.StatementProvider.stepIriFromIri;
 
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.rdf4j.model.BNode;
@@ -43,7 +46,11 @@ import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
 import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
 import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.index.NodeStepIndex;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri.Kind;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics.Schema;
 import swiss.sib.swissprot.sapfhir.values.NodeIRI;
 import swiss.sib.swissprot.sapfhir.values.PathIRI;
 import swiss.sib.swissprot.sapfhir.values.StepBeginPositionIRI;
@@ -65,6 +72,8 @@ public record StepRelatedStatementProvider<P extends PathHandle, S extends StepH
 
 	private static final Set<IRI> stepAssociatedTypes = Set.of(FALDO.Region, VG.Step);
 
+	private static final long NOT_A_NODE = -1;
+
 	private static final Set<IRI> stepAssociatedPredicates = Set.of(RDF.TYPE, VG.rank, VG.path, VG.node,
 			VG.reverseOfNode, FALDO.begin, FALDO.end);
 
@@ -80,15 +89,11 @@ public record StepRelatedStatementProvider<P extends PathHandle, S extends StepH
 		} else if (val instanceof IRI iri) {
 			if (stepAssociatedTypes.contains(iri)) {
 				return true;
-			} else if (pathIriFromIri(iri, sail) != null) {
-				return true;
-			} else if (stepIriFromIri(iri, sail) != null) {
-				return true;
-			} else if (StatementProvider.nodeIriFromIri(iri, sail) != null) {
-				return true;
-			} else if (iri.stringValue().contains("/step/")) {
-				// TODO: Test if it can be a StepBegin Or StepEnd by pattern
+			} else if (iri instanceof PathIRI || iri instanceof StepIRI || iri instanceof NodeIRI) {
 				return true;
+			} else {
+				// Paths, steps, nodes and positions are all decoded in one pass
+				return sail.decodeIri(iri.stringValue()) != null;
 			}
 		} else if (val instanceof Literal lit) {
 			return (XMLDatatypeUtil.isNumericDatatype(lit.getDatatype()));
@@ -98,15 +103,16 @@ public record StepRelatedStatementProvider<P extends PathHandle, S extends StepH
 
 	@Override
 	public AutoClosedIterator<Statement> getStatements(Resource subject, IRI predicate, Value object) {
-		if (subject == null && (object == null || object instanceof IRI)) {
-			AutoClosedIterator<S> steps = sail.pathGraph().steps();
-			var map = AutoClosedIterator.map(steps, s -> {
-				P path = sail.pathGraph().pathOfStep(s);
-				long rank = sail.pathGraph().rankOfStep(s);
-				StepIRI<P> stepIRI = new StepIRI<>(path, rank, sail);
-				return getStatements(stepIRI, predicate, object);
-			});
-			return AutoClosedIterator.flatMap(map);
+		if (subject == null && object instanceof IRI iri && nodeIdOf(iri) != NOT_A_NODE) {
+			return stepsOnNode(nodeIdOf(iri), predicate);
+		} else if (subject == null && object instanceof IRI iri && pathIriFromIri(iri, sail) != null) {
+			// Only vg:path has a path as object, so only the steps of that path match
+			P path = pathIriFromIri(iri, sail).path();
+			return getStatements(sail.pathGraph().stepsOf(path), predicate, object);
+		} else if (subject == null && object instanceof Literal literal) {
+			return stepsWithRank(literal, predicate);
+		} else if (subject == null && (object == null || object instanceof IRI)) {
+			return getStatements(sail.pathGraph().steps(), predicate, object);
 		} else if (subject instanceof IRI) {
 			return knownSubject((IRI) subject, predicate, object);
 		} else {
@@ -114,6 +120,145 @@ public record StepRelatedStatementProvider<P extends PathHandle, S extends StepH
 		}
 	}
 
+	private AutoClosedIterator<Statement> getStatements(AutoClosedIterator<S> steps, IRI predicate, Value object) {
+		var map = map(steps, s -> {
+			P path = sail.pathGraph().pathOfStep(s);
+			long rank = sail.pathGraph().rankOfStep(s);
+			StepIRI<P> stepIRI = new StepIRI<>(path, rank, sail);
+			return getStatements(stepIRI, predicate, object);
+		});
+		return flatMap(map);
+	}
+
+	/**
+	 * Only vg:rank has a literal as object, each path has at most one step with
+	 * that rank.
+	 */
+	private AutoClosedIterator<Statement> stepsWithRank(Literal literal, IRI predicate) {
+		long rank = rankOf(literal);
+		if (rank < 0 || !(predicate == null || VG.rank.equals(predicate))) {
+			return empty();
+		}
+		var statements = map(sail.pathGraph().paths(), path -> {
+			if (rank < sail.stepCountOf(path)) {
+				return knownSubjectRankStatements(new StepIRI<>(path, rank, sail), literal);
+			}
+			return AutoClosedIterator.<Statement>empty();
+		});
+		return flatMap(statements);
+	}
+
+	private static long rankOf(Literal literal) {
+		if (XMLDatatypeUtil.isIntegerDatatype(literal.getDatatype())
+				&& XMLDatatypeUtil.isValidValue(literal.getLabel(), literal.getDatatype())) {
+			try {
+				return literal.longValue();
+			} catch (NumberFormatException e) {
+				// Too large to be a rank
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The vg:rank statements of the steps that have a rank in a range.
+	 * 
+	 * @param path the steps are on, or null for the steps on all paths
+	 * @param from the first rank in the range
+	 * @param to   the rank after the last one in the range
+	 * @return the statements with a step IRI as subject
+	 */
+	public AutoClosedIterator<Statement> getRankStatementsInRange(P path, long from, long to) {
+		AutoClosedIterator<P> paths = path == null ? sail.pathGraph().paths() : of(path);
+		return flatMap(map(paths, p -> rankStatements(p, from, Math.min(to, sail.stepCountOf(p)))));
+	}
+
+	private AutoClosedIterator<Statement> rankStatements(P path, long from, long to) {
+		return new RankRange<>(from, to, rank -> new UnsafeStatement(new StepIRI<>(path, rank, sail), VG.rank,
+				sail.getValueFactory().createLiteral(rank)));
+	}
+
+	/**
+	 * Estimate how many statements
+	 * {@link #getRankStatementsInRange(PathHandle, long, long)} returns.
+	 * 
+	 * @param path the steps are on, or null for the steps on all paths
+	 * @param from the first rank in the range
+	 * @param to   the rank after the last one in the range
+	 * @return an estimate
+	 */
+	public double estimateRankStatementsInRange(P path, long from, long to) {
+		if (path != null) {
+			return Math.max(0, Math.min(to, sail.stepCountOf(path)) - from);
+		}
+		GraphStatistics statistics = sail.statistics();
+		if (statistics != null) {
+			double estimate = 0;
+			for (long steps : statistics.stepsPerPath()) {
+				estimate += Math.max(0, Math.min(to, steps) - from);
+			}
+			return estimate;
+		}
+		var pg = sail.pathGraph();
+		double stepsPerPath = (double) pg.stepCount() / Math.max(1, pg.pathCount());
+		return Math.max(0, Math.min(to, stepsPerPath) - from) * pg.pathCount();
+	}
+
+	/**
+	 * How many steps visit the average node, for when the node step index is not
+	 * built yet.
+	 */
+	private double estimateStepsOnNode(IRI predicate) {
+		var pg = sail.pathGraph();
+		double nodeCount = Math.max(1, pg.nodeCount());
+		GraphStatistics statistics = sail.statistics();
+		if (predicate == null) {
+			return pg.stepCount() / nodeCount;
+		} else if (!VG.node.equals(predicate) && !VG.reverseOfNode.equals(predicate)) {
+			return 0;
+		} else if (statistics != null) {
+			return statistics.predicateCount(Schema.STEP, predicate) / nodeCount;
+		} else {
+			return pg.stepCount() / nodeCount;
+		}
+	}
+
+	private long nodeIdOf(IRI iri) {
+		if (iri instanceof NodeIRI<?> nodeIri) {
+			return Math.abs(nodeIri.id());
+		}
+		DecodedIri<P> decoded = sail.decodeIri(iri.stringValue());
+		if (decoded != null && decoded.kind() == Kind.NODE) {
+			return decoded.value();
+		}
+		return NOT_A_NODE;
+	}
+
+	/**
+	 * Only vg:node and vg:reverseOfNode have a node as object, the steps visiting
+	 * the node are read from the node step index instead of scanning all steps.
+	 */
+	private AutoClosedIterator<Statement> stepsOnNode(long nodeId, IRI predicate) {
+		NodeStepIndex<P> index = sail.nodeStepIndex();
+		NodeIRI<N> nodeIRI = new NodeIRI<>(nodeId, sail);
+		if (predicate == null) {
+			return concat(stepsOnNode(index, nodeIRI, VG.node, false),
+					stepsOnNode(index, nodeIRI, VG.reverseOfNode, true));
+		} else if (VG.node.equals(predicate)) {
+			return stepsOnNode(index, nodeIRI, VG.node, false);
+		} else if (VG.reverseOfNode.equals(predicate)) {
+			return stepsOnNode(index, nodeIRI, VG.reverseOfNode, true);
+		} else {
+			return empty();
+		}
+	}
+
+	private AutoClosedIterator<Statement> stepsOnNode(NodeStepIndex<P> index, NodeIRI<N> nodeIRI, IRI predicate,
+			boolean reverse) {
+		return index.steps(nodeIRI.id(), reverse,
+				(path, rank) -> new UnsafeStatement(new StepIRI<>(path, rank, sail), predicate, nodeIRI));
+	}
+
 	private AutoClosedIterator<Statement> knownSubject(IRI subject, IRI predicate, Value object) {
 		StepIRI<P> stepSubject = stepIriFromIri((IRI) subject, sail);
 		// If null it is not a Step IRI and therefore can't match the values here.
@@ -125,8 +270,10 @@ public record StepRelatedStatementProvider<P extends PathHandle, S extends StepH
 			var nodeStatements = knownSubjectNodeStatements(stepSubject, object);
 			var pathStatements = knownSubjectPathStatements(stepSubject, object);
 			var reverseNodeStatements = knownSubjectReverseNodeStatements(stepSubject, object);
+			var beginStatements = knownSubjectBeginStatements(stepSubject, object);
+			var endStatements = knownSubjectEndStatements(stepSubject, object);
 			return concat(concat(concat(typeStatement, rankStatements), pathStatements),
-					concat(nodeStatements, reverseNodeStatements));
+					concat(concat(nodeStatements, reverseNodeStatements), concat(beginStatements, endStatements)));
 		} else {
 			AutoClosedIterator<Statement> found = findByIdentity(predicate, object, stepSubject);
 			if (found != null) {
@@ -279,9 +426,108 @@ public record StepRelatedStatementProvider<P extends PathHandle, S extends StepH
 		}
 	}
 
+	@Override
+	public AccessPath accessPath(Resource subj, IRI predicate, Value obj) {
+		if (subj != null) {
+			// Only the node of a step needs the step, the rest is in the IRI
+			boolean needsStep = predicate == null || VG.node.equals(predicate) || VG.reverseOfNode.equals(predicate);
+			return needsStep ? AccessPath.STEP_LOOKUP : AccessPath.NONE;
+		} else if (obj instanceof IRI iri && nodeIdOf(iri) != NOT_A_NODE) {
+			// From the node step index
+			return AccessPath.NONE;
+		} else if (obj instanceof Literal) {
+			return AccessPath.NONE;
+		} else {
+			return AccessPath.STEP_SCAN;
+		}
+	}
+
+	@Override
+	public double estimateSubjectCardinality(Resource subj, IRI predicate) {
+		if (!(subj instanceof IRI iri)) {
+			return StatementProvider.super.estimateSubjectCardinality(subj, predicate);
+		} else if (stepIriFromIri(iri, sail) == null) {
+			return 0;
+		} else if (predicate == null) {
+			// The types, rank, path, begin, end and one of vg:node or vg:reverseOfNode
+			return stepAssociatedTypes.size() + 5;
+		} else if (RDF.TYPE.equals(predicate)) {
+			return stepAssociatedTypes.size();
+		} else if (stepAssociatedPredicates.contains(predicate)) {
+			// A step has one rank on one path and visits one strand of one node
+			return 1;
+		} else {
+			return 0;
+		}
+	}
+
+	@Override
+	public double estimateObjectCardinality(IRI predicate, Value obj) {
+		if (obj instanceof Literal) {
+			// Only vg:rank has a literal as object, at most one step per path
+			return predicate == null || VG.rank.equals(predicate) ? sail.pathGraph().pathCount() : 0;
+		}
+		if (!(obj instanceof IRI iri)) {
+			return StatementProvider.super.estimateObjectCardinality(predicate, obj);
+		} else if (stepAssociatedTypes.contains(iri)) {
+			return predicate == null || RDF.TYPE.equals(predicate) ? sail.pathGraph().stepCount() : 0;
+		} else if (iri instanceof StepBeginPositionIRI) {
+			return predicate == null || FALDO.begin.equals(predicate) ? 1 : 0;
+		} else if (iri instanceof StepEndPositionIRI) {
+			return predicate == null || FALDO.end.equals(predicate) ? 1 : 0;
+		}
+		long nodeId = nodeIdOf(iri);
+		if (nodeId != NOT_A_NODE) {
+			NodeStepIndex<P> index = sail.nodeStepIndexIfBuilt();
+			if (index == null) {
+				return estimateStepsOnNode(predicate);
+			}
+			int forward = predicate == null || VG.node.equals(predicate) ? index.stepCount(nodeId, false) : 0;
+			int reverse = predicate == null || VG.reverseOfNode.equals(predicate) ? index.stepCount(nodeId, true)
+					: 0;
+			return forward + reverse;
+		}
+		PathIRI<P> pathIRI = pathIriFromIri(iri, sail);
+		if (pathIRI != null) {
+			return predicate == null || VG.path.equals(predicate) ? sail.stepCountOf(pathIRI.path()) : 0;
+		}
+		DecodedIri<P> decoded = sail.decodeIri(iri.stringValue());
+		if (decoded != null && decoded.kind() == Kind.POSITION) {
+			// The begin of one step and the end of another
+			if (predicate == null) {
+				return 2;
+			}
+			return FALDO.begin.equals(predicate) || FALDO.end.equals(predicate) ? 1 : 0;
+		}
+		return 0;
+	}
+
+	@Override
+	public double estimateSubjectCount() {
+		return sail.pathGraph().stepCount();
+	}
+
+	@Override
+	public double estimateStarSubjectCount(List<StarPattern> star) {
+		boolean forward = false;
+		boolean reverse = false;
+		for (StarPattern pattern : star) {
+			forward |= VG.node.equals(pattern.predicate());
+			reverse |= VG.reverseOfNode.equals(pattern.predicate());
+		}
+		if (forward && reverse) {
+			// A step visits one strand of a node
+			return 0;
+		}
+		return StatementProvider.super.estimateStarSubjectCount(star);
+	}
+
 	@Override
 	public double estimatePredicateCardinality(IRI predicate) {
-		if (predicate == null) {
+		GraphStatistics statistics = sail.statistics();
+		if (statistics != null) {
+			return statistics.predicateCount(Schema.STEP, predicate);
+		} else if (predicate == null) {
 			return sail.pathGraph().stepCount() * 5;
 		} else if (FALDO.begin.equals(predicate) || FALDO.end.equals(predicate)) {
 			return sail.pathGraph().stepCount() * 4;
@@ -42,6 +42,7 @@ import io.github.jervenbolleman.handlegraph4j.HandleGraph;
 import io.github.jervenbolleman.handlegraph4j.NodeHandle;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
 
 /**
@@ -65,27 +66,26 @@ public record HandleGraphValueFactory<P extends PathHandle, S extends StepHandle
 
 	@Override
 	public IRI createIRI(String namespace, String localName) {
-		if (graph.hasPathNameSpace(namespace)) {
-			P p = graph.pathGraph().pathByName(namespace + localName);
-			return new PathIRI<>(p, graph);
-		} else if (graph.matchesNodeIriPattern(namespace)) {
-			try {
-				long l = Long.valueOf(localName);
-				return new NodeIRI<>(l, graph);
-			} catch (NumberFormatException e) {
-				return getInstance().createIRI(namespace, localName);
+		DecodedIri<P> decoded = graph.decodeIri(namespace + localName);
+		if (decoded != null) {
+			switch (decoded.kind()) {
+			case NODE:
+				return new NodeIRI<>(decoded.value(), graph);
+			case PATH:
+				return new PathIRI<>(decoded.path(), graph);
+			case STEP:
+				if (graph.pathGraph().stepByRankAndPath(decoded.path(), decoded.value()) != null) {
+					return new StepIRI<>(decoded.path(), decoded.value(), graph);
+				}
+				break;
+			case POSITION:
+				StepPositionIRI<P, S> position = graph.stepPositionFromIriString(namespace + localName);
+				if (position != null) {
+					return position;
+				}
+				break;
 			}
 		}
-
-		try {
-			S step = graph.stepFromIriString(namespace + localName);
-			if (step != null) {
-				return new StepIRI<P>(graph.pathGraph().pathOfStep(step), graph.pathGraph().rankOfStep(step), graph);
-			}
-		} catch (NumberFormatException e) {
-			return getInstance().createIRI(namespace, localName);
-		}
-
 		return getInstance().createIRI(namespace, localName);
 	}
 
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.values;
+
+/**
+ * Hash and compare IRIs that are a known prefix followed by a number, without
+ * building the IRI string. The hashes are identical to the
+ * {@link String#hashCode()} of the IRI string, so these IRIs stay consistent
+ * with any other IRI implementation.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class IriStrings {
+
+	private IriStrings() {
+
+	}
+
+	/**
+	 * Continue a String hash with more characters
+	 * 
+	 * @param hash the hash of the string so far
+	 * @param part the characters to add
+	 * @return the hash of the string so far followed by part
+	 */
+	static int hash(int hash, String part) {
+		for (int i = 0; i < part.length(); i++) {
+			hash = 31 * hash + part.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Continue a String hash with the decimal representation of a number
+	 * 
+	 * @param hash   the hash of the string so far
+	 * @param number to add in the same format as Long.toString
+	 * @return the hash of the string so far followed by the number
+	 */
+	static int hash(int hash, long number) {
+		// Work with negative numbers so that Long.MIN_VALUE does not overflow
+		if (number < 0) {
+			hash = 31 * hash + '-';
+		} else {
+			number = -number;
+		}
+		for (long divisor = largestDivisor(number); divisor > 0; divisor /= 10) {
+			hash = 31 * hash + digit(number, divisor);
+		}
+		return hash;
+	}
+
+	/**
+	 * Test if a string ends with the decimal representation of a number from the
+	 * offset on.
+	 * 
+	 * @param iri    the string to test
+	 * @param offset where the number should start
+	 * @param number the number that should be there
+	 * @return true if the iri from the offset on is exactly Long.toString(number)
+	 */
+	static boolean numberAt(String iri, int offset, long number) {
+		int at = offset;
+		if (number < 0) {
+			if (at >= iri.length() || iri.charAt(at++) != '-') {
+				return false;
+			}
+		} else {
+			number = -number;
+		}
+		for (long divisor = largestDivisor(number); divisor > 0; divisor /= 10) {
+			if (at >= iri.length() || iri.charAt(at++) != digit(number, divisor)) {
+				return false;
+			}
+		}
+		return at == iri.length();
+	}
+
+	/**
+	 * Test if an iri is a namespace, followed by a separator and then a number.
+	 * 
+	 * @param iri       the string to test
+	 * @param namespace the start of the iri
+	 * @param separator between the namespace and the number, may be empty
+	 * @param number    at the end
+	 * @return true if iri equals namespace + separator + number
+	 */
+	static boolean equals(String iri, String namespace, String separator, long number) {
+		return iri.startsWith(namespace) && iri.startsWith(separator, namespace.length())
+				&& numberAt(iri, namespace.length() + separator.length(), number);
+	}
+
+	private static long largestDivisor(long negative) {
+		long divisor = 1;
+		while (negative / divisor <= -10) {
+			divisor *= 10;
+		}
+		return divisor;
+	}
+
+	private static char digit(long negative, long divisor) {
+		return (char) ('0' - (negative / divisor) % 10);
+	}
+}
@@ -69,7 +69,7 @@ public record NodeIRI<N extends NodeHandle>(long id, PathHandleGraphSail<?, ?, N
 
 	@Override
 	public int hashCode() {
-		return stringValue().hashCode();
+		return IriStrings.hash(graph.getNodeNameSpace().hashCode(), Math.abs(id));
 	}
 
 	@Override
@@ -81,23 +81,11 @@ public record NodeIRI<N extends NodeHandle>(long id, PathHandleGraphSail<?, ?, N
 			return false;
 		}
 		if (obj instanceof NodeIRI<?> other) {
-			if (!Objects.equals(this.graph, other.graph)) {
-				return false;
-			}
-			var pg = this.graph.pathGraph();
-			var thisNode = pg.fromLong(this.id);
-			var thatNode = pg.fromLong(other.id);
-			var thisIsRev = pg.isReverseNodeHandle(thisNode);
-			var thatIsRev = pg.isReverseNodeHandle(thatNode);
-			if (thisIsRev == thatIsRev) {
-				return pg.equalNodes(thisNode, thatNode);
-			} else {
-				var flipThat = pg.flip(thatNode);
-				return pg.equalNodes(thisNode, flipThat);
-			}
-		} else if (obj instanceof IRI) {
-			return stringValue().equals(((IRI) obj).stringValue());
+			// The same node on either strand has the same IRI
+			return Math.abs(this.id) == Math.abs(other.id) && Objects.equals(this.graph, other.graph);
+		} else if (obj instanceof IRI other) {
+			return IriStrings.equals(other.stringValue(), getNamespace(), "", Math.abs(id));
 		}
-		return true;
+		return false;
 	}
 }
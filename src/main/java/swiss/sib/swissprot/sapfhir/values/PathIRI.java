@@ -22,8 +22,7 @@ package swiss.sib.swissprot.sapfhir.values;
 import java.util.Objects;
 
 import org.eclipse.rdf4j.model.IRI;
-import org.eclipse.rdf4j.model.ValueFactory;
-import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.util.URIUtil;
 
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
@@ -40,16 +39,16 @@ import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
 public record PathIRI<P extends PathHandle>(P path, PathHandleGraphSail<P, ?, ?, ?> graph) implements IRI {
 	private static final long serialVersionUID = 1;
 
-	private static final ValueFactory VF = SimpleValueFactory.getInstance();
-
 	@Override
 	public String getNamespace() {
-		return VF.createIRI(graph.getPathNameSpace(path)).getNamespace();
+		String iri = stringValue();
+		return iri.substring(0, URIUtil.getLocalNameIndex(iri));
 	}
 
 	@Override
 	public String getLocalName() {
-		return VF.createIRI(graph.getPathNameSpace(path)).getLocalName();
+		String iri = stringValue();
+		return iri.substring(URIUtil.getLocalNameIndex(iri));
 	}
 
 	@Override
@@ -87,6 +86,6 @@ public record PathIRI<P extends PathHandle>(P path, PathHandleGraphSail<P, ?, ?,
 		} else if (obj instanceof IRI) {
 			return stringValue().equals(((IRI) obj).stringValue());
 		}
-		return true;
+		return false;
 	}
 }
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.values;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.vocabulary.XSD;
+
+import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
+
+/**
+ * Hashing and comparing sequences base by base, as if they were the String of
+ * their label but without decoding them into one.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+final class SequenceBytes {
+
+	private SequenceBytes() {
+
+	}
+
+	/**
+	 * @param sequence to hash
+	 * @return the same as the hashCode of the label of the sequence
+	 */
+	static int hash(Sequence sequence) {
+		int hash = 0;
+		int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + (sequence.byteAt(i) & 0xff);
+		}
+		return hash;
+	}
+
+	/**
+	 * @param sequence the bases of a sequence literal
+	 * @param obj      any object
+	 * @return true if obj is a plain string literal with the same bases
+	 */
+	static boolean equals(Sequence sequence, Object obj) {
+		if (obj instanceof SequenceLiteral<?, ?> other) {
+			return sameBases(sequence, other.s());
+		} else if (obj instanceof SequenceLiteralWithNodeHandle<?, ?> other) {
+			return sameBases(sequence, other.sequence());
+		} else if (obj instanceof Literal other && other.getLanguage().isEmpty()
+				&& (other.getDatatype() == null || XSD.STRING.equals(other.getDatatype()))) {
+			return sameBases(sequence, other.getLabel());
+		}
+		return false;
+	}
+
+	private static boolean sameBases(Sequence sequence, Sequence other) {
+		if (sequence == other) {
+			return true;
+		}
+		int length = sequence.length();
+		if (length != other.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (sequence.byteAt(i) != other.byteAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean sameBases(Sequence sequence, String label) {
+		int length = sequence.length();
+		if (length != label.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if ((sequence.byteAt(i) & 0xff) != label.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
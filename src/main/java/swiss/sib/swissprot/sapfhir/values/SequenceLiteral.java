@@ -41,14 +41,36 @@ import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
  * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
  * @param <E> the type of EdgeHandle
  * @param <N> the type of NodeHandle
- * @param s the sequence object that is hiding in this literal
  */
-public record SequenceLiteral<N extends NodeHandle, E extends EdgeHandle<N>>(Sequence s) implements Literal {
+public final class SequenceLiteral<N extends NodeHandle, E extends EdgeHandle<N>> implements Literal {
 	private static final long serialVersionUID = 1;
+	private final Sequence s;
+	// Decoded at most once, like String.hash a race only repeats the work
+	private transient String label;
+	private transient int hash;
+
+	/**
+	 * @param s the sequence object that is hiding in this literal
+	 */
+	public SequenceLiteral(Sequence s) {
+		this.s = s;
+	}
+
+	/**
+	 * @return the sequence object that is hiding in this literal
+	 */
+	public Sequence s() {
+		return s;
+	}
 
 	@Override
 	public String getLabel() {
-		return s.asString();
+		String decoded = label;
+		if (decoded == null) {
+			decoded = s.asString();
+			label = decoded;
+		}
+		return decoded;
 	}
 
 	@Override
@@ -118,7 +140,12 @@ public record SequenceLiteral<N extends NodeHandle, E extends EdgeHandle<N>>(Seq
 
 	@Override
 	public int hashCode() {
-		return getLabel().hashCode();
+		int h = hash;
+		if (h == 0) {
+			h = SequenceBytes.hash(s);
+			hash = h;
+		}
+		return h;
 	}
 
 	/**
@@ -135,21 +162,7 @@ public record SequenceLiteral<N extends NodeHandle, E extends EdgeHandle<N>>(Seq
 		if (this == obj) {
 			return true;
 		}
-		if (obj == null) {
-			return false;
-		}
-		if (obj instanceof SequenceLiteral) {
-			SequenceLiteral<?, ?> other = (SequenceLiteral<?, ?>) obj;
-			return this.s.equals(other.s);
-		} else if (obj instanceof Literal) {
-			Literal other = (Literal) obj;
-			if (other.getLanguage().isPresent()) {
-				return false;
-			} else if (other.getDatatype() == null || XSD.STRING.equals(other.getDatatype())) {
-				return getLabel().equals(other.getLabel());
-			}
-		}
-		return false;
+		return SequenceBytes.equals(s, obj);
 	}
 
 	@Override
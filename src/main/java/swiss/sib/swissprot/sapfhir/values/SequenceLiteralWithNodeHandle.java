@@ -42,16 +42,60 @@ import io.github.jervenbolleman.handlegraph4j.sequences.Sequence;
  * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
  * @param <E> the type of EdgeHandle
  * @param <N> the type of NodeHandle
- * @param graph the graph the sequence is in
- * @param handle the node handle required to find the sequence object
  */
-public record SequenceLiteralWithNodeHandle<N extends NodeHandle, E extends EdgeHandle<N>>(HandleGraph<N, E> graph,
-		N handle) implements Literal {
+public final class SequenceLiteralWithNodeHandle<N extends NodeHandle, E extends EdgeHandle<N>> implements Literal {
 	private static final long serialVersionUID = 1;
+	private final HandleGraph<N, E> graph;
+	private final N handle;
+	// Found and decoded at most once, like String.hash a race only repeats the
+	// work
+	private transient volatile Sequence sequence;
+	private transient String label;
+	private transient int hash;
+
+	/**
+	 * @param graph  the graph the sequence is in
+	 * @param handle the node handle required to find the sequence object
+	 */
+	public SequenceLiteralWithNodeHandle(HandleGraph<N, E> graph, N handle) {
+		this.graph = graph;
+		this.handle = handle;
+	}
+
+	/**
+	 * @return the graph the sequence is in
+	 */
+	public HandleGraph<N, E> graph() {
+		return graph;
+	}
+
+	/**
+	 * @return the node handle required to find the sequence object
+	 */
+	public N handle() {
+		return handle;
+	}
+
+	/**
+	 * @return the sequence of the node, found on first use
+	 */
+	public Sequence sequence() {
+		Sequence found = sequence;
+		if (found == null) {
+			found = graph.sequenceOf(handle);
+			sequence = found;
+		}
+		return found;
+	}
 
 	@Override
 	public String getLabel() {
-		return graph.sequenceOf(handle).asString();
+		String decoded = label;
+		if (decoded == null) {
+			decoded = sequence().asString();
+			label = decoded;
+		}
+		return decoded;
 	}
 
 	@Override
@@ -121,7 +165,12 @@ public record SequenceLiteralWithNodeHandle<N extends NodeHandle, E extends Edge
 
 	@Override
 	public int hashCode() {
-		return getLabel().hashCode();
+		int h = hash;
+		if (h == 0) {
+			h = SequenceBytes.hash(sequence());
+			hash = h;
+		}
+		return h;
 	}
 
 	/**
@@ -139,26 +188,11 @@ public record SequenceLiteralWithNodeHandle<N extends NodeHandle, E extends Edge
 		if (this == obj) {
 			return true;
 		}
-		if (obj == null) {
-			return false;
-		}
-		if (obj instanceof SequenceLiteralWithNodeHandle other) {
-			if (this.graph.equals(other.graph) && this.handle.equals(other.handle)) {
-				return true;
-			}
-			Sequence sequenceOfThis = graph.sequenceOf(handle);
-			Sequence sequenceOfOther = other.graph.sequenceOf(other.handle);
-			return sequenceOfThis.equals(sequenceOfOther);
-		} else if (obj instanceof Literal) {
-			Literal other = (Literal) obj;
-			if (other.getLanguage().isPresent()) {
-				return false;
-			} else if (other.getDatatype() == null || XSD.STRING.equals(other.getDatatype())) {
-				return getLabel().equals(other.getLabel());
-			}
+		if (obj instanceof SequenceLiteralWithNodeHandle<?, ?> other && graph.equals(other.graph)
+				&& handle.equals(other.handle)) {
+			return true;
 		}
-		return false;
-
+		return SequenceBytes.equals(sequence(), obj);
 	}
 
 	@Override
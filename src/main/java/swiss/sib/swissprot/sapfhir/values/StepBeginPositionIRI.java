@@ -23,7 +23,6 @@ import java.util.Objects;
 
 import org.eclipse.rdf4j.model.IRI;
 
-import io.github.jervenbolleman.handlegraph4j.PathGraph;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
@@ -65,7 +64,7 @@ public record StepBeginPositionIRI<P extends PathHandle, S extends StepHandle>(P
 
 	@Override
 	public String stringValue() {
-		return getNamespace() + getLocalName();
+		return getNamespace() + getBeginPosition();
 	}
 
 	@Override
@@ -75,7 +74,7 @@ public record StepBeginPositionIRI<P extends PathHandle, S extends StepHandle>(P
 
 	@Override
 	public int hashCode() {
-		return stringValue().hashCode();
+		return IriStrings.hash(getNamespace().hashCode(), getBeginPosition());
 	}
 
 	@Override
@@ -91,9 +90,9 @@ public record StepBeginPositionIRI<P extends PathHandle, S extends StepHandle>(P
 		} else if (obj instanceof StepEndPositionIRI<?, ?> sepi) {
 			return equalsEndStep(sepi);
 		} else if (obj instanceof IRI iri) {
-			return stringValue().equals(iri.stringValue());
+			return IriStrings.equals(iri.stringValue(), getNamespace(), "", getBeginPosition());
 		}
-		return true;
+		return false;
 	}
 
 	private boolean equalsBeginStep(StepBeginPositionIRI<?, ?> other) {
@@ -133,15 +132,11 @@ public record StepBeginPositionIRI<P extends PathHandle, S extends StepHandle>(P
 		if (hasCachedPosition(position)) {
 			return position;
 		}
-		PathGraph<P, S, ?, ?> pg = graph.pathGraph();
-		S s = pg.stepByRankAndPath(path(), rank());
-		return graph.pathGraph().beginPositionOfStep(s);
+		return graph.beginPositionOfStep(path, rank);
 	}
 
 	@Override
 	public long getEndPosition() {
-		PathGraph<P, S, ?, ?> pg = graph.pathGraph();
-		S s = pg.stepByRankAndPath(path(), rank());
-		return graph.pathGraph().endPositionOfStep(s);
+		return graph.endPositionOfStep(path, rank);
 	}
 }
@@ -23,7 +23,6 @@ import java.util.Objects;
 
 import org.eclipse.rdf4j.model.IRI;
 
-import io.github.jervenbolleman.handlegraph4j.PathGraph;
 import io.github.jervenbolleman.handlegraph4j.PathHandle;
 import io.github.jervenbolleman.handlegraph4j.StepHandle;
 import swiss.sib.swissprot.sapfhir.sparql.PathHandleGraphSail;
@@ -65,7 +64,7 @@ public record StepEndPositionIRI<P extends PathHandle, S extends StepHandle>(P p
 
 	@Override
 	public String stringValue() {
-		return getNamespace() + '/' + getLocalName();
+		return getNamespace() + getEndPosition();
 	}
 
 	@Override
@@ -75,7 +74,7 @@ public record StepEndPositionIRI<P extends PathHandle, S extends StepHandle>(P p
 
 	@Override
 	public int hashCode() {
-		return stringValue().hashCode();
+		return IriStrings.hash(getNamespace().hashCode(), getEndPosition());
 	}
 
 	private boolean equalsBeginStep(Object obj) {
@@ -109,10 +108,10 @@ public record StepEndPositionIRI<P extends PathHandle, S extends StepHandle>(P p
 			return equalsBeginStep(obj);
 		} else if (obj instanceof StepEndPositionIRI<?, ?>) {
 			return equalsEndStep(obj);
-		} else if (obj instanceof IRI) {
-			return stringValue().equals(((IRI) obj).stringValue());
+		} else if (obj instanceof IRI iri) {
+			return IriStrings.equals(iri.stringValue(), getNamespace(), "", getEndPosition());
 		}
-		return true;
+		return false;
 	}
 
 	private boolean equalsEndStep(Object obj) {
@@ -135,19 +134,14 @@ public record StepEndPositionIRI<P extends PathHandle, S extends StepHandle>(P p
 
 	@Override
 	public long getBeginPosition() {
-		PathGraph<P, S, ?, ?> pg = graph.pathGraph();
-		S s = pg.stepByRankAndPath(path(), rank());
-		return graph.pathGraph().beginPositionOfStep(s);
+		return graph.beginPositionOfStep(path, rank);
 	}
 
 	@Override
 	public long getEndPosition() {
 		if (hasCachedPosition(position)) {
 			return position;
-		} else {
-			PathGraph<P, S, ?, ?> pg = graph.pathGraph();
-			S s = pg.stepByRankAndPath(path(), rank());
-			return graph.pathGraph().endPositionOfStep(s);
 		}
+		return graph.endPositionOfStep(path, rank);
 	}
 }
@@ -45,7 +45,7 @@ public record StepIRI<P extends PathHandle>(P path, long rank, PathHandleGraphSa
 	 */
 	@Override
 	public String getNamespace() {
-		return graph.getPathNameSpace(path) + "step/";
+		return graph.getStepNameSpace(path);
 	}
 
 	@Override
@@ -58,7 +58,7 @@ public record StepIRI<P extends PathHandle>(P path, long rank, PathHandleGraphSa
 	 */
 	@Override
 	public String stringValue() {
-		return getNamespace() + getLocalName();
+		return getNamespace() + rank;
 	}
 
 	/**
@@ -89,7 +89,7 @@ public record StepIRI<P extends PathHandle>(P path, long rank, PathHandleGraphSa
 
 	@Override
 	public int hashCode() {
-		return stringValue().hashCode();
+		return IriStrings.hash(getNamespace().hashCode(), rank);
 	}
 
 	@Override
@@ -112,9 +112,9 @@ public record StepIRI<P extends PathHandle>(P path, long rank, PathHandleGraphSa
 				return false;
 			}
 			return true;
-		} else if (obj instanceof IRI) {
-			return stringValue().equals(((IRI) obj).stringValue());
+		} else if (obj instanceof IRI other) {
+			return IriStrings.equals(other.stringValue(), getNamespace(), "", rank);
 		}
-		return true;
+		return false;
 	}
 }
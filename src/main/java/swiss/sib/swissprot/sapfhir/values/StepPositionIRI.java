@@ -43,7 +43,7 @@ public sealed interface StepPositionIRI<P extends PathHandle, S extends StepHand
 
 	@Override
 	public default String getNamespace() {
-		return graph().getPathNameSpace(path()) + POSITION;
+		return graph().getPositionNameSpace(path());
 	}
 
 	/**
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.functions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Locale;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.function.FunctionRegistry;
+import org.junit.jupiter.api.Test;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleEdgeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+import swiss.sib.swissprot.sapfhir.values.SequenceLiteral;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SequenceFunctionsTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(200).build();
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+	private final TripleSource tripleSource = new TripleSource() {
+
+		@Override
+		public CloseableIteration<? extends Statement> getStatements(Resource subj, IRI pred, Value obj,
+				Resource... contexts) {
+			return TripleSource.EMPTY_ITERATION;
+		}
+
+		@Override
+		public ValueFactory getValueFactory() {
+			return vf;
+		}
+	};
+
+	@Test
+	public void testSameAsOnStrings() {
+		try (AutoClosedIterator<SimpleNodeHandle> nodes = graph.nodes()) {
+			while (nodes.hasNext()) {
+				SimpleNodeHandle node = nodes.next();
+				Literal sequence = new SequenceLiteral<SimpleNodeHandle, SimpleEdgeHandle>(graph.sequenceOf(node));
+				String string = sequence.getLabel();
+				assertEquals(string.length(), evaluate(new SequenceLengthFunction(), sequence).longValue());
+				assertEquals(gcContent(string), evaluate(new GcContentFunction(), sequence).doubleValue());
+				assertEquals(reverseComplement(string),
+						evaluate(new ReverseComplementFunction(), sequence).getLabel());
+				assertEquals(string.substring(Math.min(1, string.length())),
+						evaluate(new SubsequenceFunction(), sequence, vf.createLiteral(2)).getLabel());
+				String kmer = string.substring(0, Math.min(2, string.length()));
+				assertEquals(kmerCount(string, kmer),
+						evaluate(new KmerCountFunction(), sequence, vf.createLiteral(kmer)).longValue());
+			}
+		}
+	}
+
+	@Test
+	public void testPlainLiterals() {
+		Literal sequence = vf.createLiteral("ACgTnA");
+		assertEquals(6, evaluate(new SequenceLengthFunction(), sequence).longValue());
+		assertEquals(2 / 6d, evaluate(new GcContentFunction(), sequence).doubleValue());
+		assertEquals("TnAcGT", evaluate(new ReverseComplementFunction(), sequence).getLabel());
+		assertEquals("CgT", evaluate(new SubsequenceFunction(), sequence, vf.createLiteral(2), vf.createLiteral(3))
+				.getLabel());
+		assertEquals("", evaluate(new SubsequenceFunction(), sequence, vf.createLiteral(10)).getLabel());
+		assertEquals(2, evaluate(new KmerCountFunction(), vf.createLiteral("aaa"), vf.createLiteral("AA")).longValue());
+	}
+
+	@Test
+	public void testRegistered() {
+		FunctionRegistry registry = FunctionRegistry.getInstance();
+		assertTrue(registry.has(new SequenceLengthFunction().getURI()));
+		assertTrue(registry.has(new GcContentFunction().getURI()));
+		assertTrue(registry.has(new ReverseComplementFunction().getURI()));
+		assertTrue(registry.has(new SubsequenceFunction().getURI()));
+		assertTrue(registry.has(new KmerCountFunction().getURI()));
+	}
+
+	@Test
+	public void testErrors() {
+		assertThrows(ValueExprEvaluationException.class,
+				() -> new GcContentFunction().evaluate(tripleSource, vf.createLiteral("")));
+		assertThrows(ValueExprEvaluationException.class,
+				() -> new SequenceLengthFunction().evaluate(tripleSource, vf.createLiteral(1)));
+		assertThrows(ValueExprEvaluationException.class,
+				() -> new SequenceLengthFunction().evaluate(tripleSource, vf.createLiteral("ACGT", "en")));
+		assertThrows(ValueExprEvaluationException.class,
+				() -> new KmerCountFunction().evaluate(tripleSource, vf.createLiteral("ACGT"), vf.createLiteral("")));
+		assertThrows(ValueExprEvaluationException.class,
+				() -> new SubsequenceFunction().evaluate(tripleSource, vf.createLiteral("ACGT"), vf.createLiteral("one")));
+	}
+
+	private Literal evaluate(SequenceFunction function, Value... args) {
+		return (Literal) function.evaluate(tripleSource, args);
+	}
+
+	private static double gcContent(String sequence) {
+		String upper = sequence.toUpperCase(Locale.ROOT);
+		long gc = upper.chars().filter(c -> c == 'G' || c == 'C' || c == 'S').count();
+		return (double) gc / sequence.length();
+	}
+
+	private static String reverseComplement(String sequence) {
+		StringBuilder reverse = new StringBuilder(sequence.length());
+		for (int i = sequence.length() - 1; i >= 0; i--) {
+			char base = sequence.charAt(i);
+			int at = "ACGTacgt".indexOf(base);
+			reverse.append(at < 0 ? base : "TGCAtgca".charAt(at));
+		}
+		return reverse.toString();
+	}
+
+	private static long kmerCount(String sequence, String kmer) {
+		long count = 0;
+		for (int i = sequence.toUpperCase(Locale.ROOT).indexOf(kmer.toUpperCase(Locale.ROOT)); i >= 0; i = sequence
+				.toUpperCase(Locale.ROOT).indexOf(kmer.toUpperCase(Locale.ROOT), i + 1)) {
+			count++;
+		}
+		return count;
+	}
+}
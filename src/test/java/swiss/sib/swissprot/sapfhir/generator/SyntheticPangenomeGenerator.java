@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import io.github.jervenbolleman.handlegraph4j.gfa1.GFA1Reader;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.handlegraph4j.simple.builders.SimplePathGraphFromGFA1Builder;
+
+/**
+ * Generates pangenome like graphs of a configurable size for scale tests. The
+ * graph is a backbone of nodes, where a site may be a bubble of two alleles.
+ * Every path walks the backbone, picking one allele in each bubble, and may
+ * visit a node on the reverse strand. The first path always picks the first
+ * allele and is the reference.
+ * 
+ * The same parameters always generate the same graph.
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ * @param seed                for all random choices
+ * @param nodeCount           the number of nodes in the graph
+ * @param singleBaseFraction  the fraction of nodes that have a sequence of
+ *                            length one
+ * @param maxSequenceLength   the maximum length of the other sequences, they
+ *                            are uniformly distributed between 2 and this
+ * @param bubbleDensity       the fraction of sites that are a bubble
+ * @param pathCount           the number of paths, named in PanSN style e.g.
+ *                            sample0#1#chr1
+ * @param reverseStepFraction the fraction of steps that are on the reverse
+ *                            strand
+ */
+public record SyntheticPangenomeGenerator(long seed, int nodeCount, double singleBaseFraction,
+		int maxSequenceLength, double bubbleDensity, int pathCount, double reverseStepFraction) {
+
+	/**
+	 * The contig all paths are on.
+	 */
+	public static final String CONTIG = "chr1";
+
+	private static final char[] NUCLEOTIDES = { 'A', 'C', 'G', 'T' };
+
+	/**
+	 * Validate the parameters
+	 */
+	public SyntheticPangenomeGenerator {
+		if (nodeCount < 1) {
+			throw new IllegalArgumentException("Need at least one node");
+		}
+		if (maxSequenceLength < 2) {
+			throw new IllegalArgumentException("The maximum sequence length must be at least 2");
+		}
+		if (pathCount < 1) {
+			throw new IllegalArgumentException("Need at least one path");
+		}
+		checkFraction(singleBaseFraction);
+		checkFraction(bubbleDensity);
+		checkFraction(reverseStepFraction);
+	}
+
+	private static void checkFraction(double fraction) {
+		if (fraction < 0 || fraction > 1) {
+			throw new IllegalArgumentException("A fraction must be between 0 and 1, not " + fraction);
+		}
+	}
+
+	/**
+	 * A generator with defaults that look like a human pangenome: 60% of the nodes
+	 * are a single base, 30% of the sites a bubble, four haplotypes of two
+	 * samples and 5% of the steps on the reverse strand.
+	 * 
+	 * @param nodeCount the number of nodes in the graph
+	 * @return a generator
+	 */
+	public static SyntheticPangenomeGenerator ofSize(int nodeCount) {
+		return new SyntheticPangenomeGenerator(42, nodeCount, 0.6, 32, 0.3, 4, 0.05);
+	}
+
+	/**
+	 * The PanSN style name of a path, diploid samples.
+	 * 
+	 * @param path the index of the path
+	 * @return sample#haplotype#contig
+	 */
+	public static String pathName(int path) {
+		return "sample" + (path / 2) + '#' + (path % 2 + 1) + '#' + CONTIG;
+	}
+
+	/**
+	 * Build the graph
+	 * 
+	 * @return a new graph
+	 */
+	public SimplePathGraph build() {
+		SimplePathGraphFromGFA1Builder builder = new SimplePathGraphFromGFA1Builder();
+		builder.parse(new GFA1Reader(gfa()));
+		return builder.build();
+	}
+
+	/**
+	 * The graph as GFA1 lines, segments first then paths then links.
+	 * 
+	 * @return the lines
+	 */
+	public Iterator<String> gfa() {
+		Random random = new Random(seed);
+		String[] sequences = new String[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			sequences[i] = sequence(random);
+		}
+		int[] bubbleStarts = bubbleStarts(random);
+		Edges edges = new Edges();
+		addBackboneEdges(bubbleStarts, edges);
+		List<String> paths = new ArrayList<>(pathCount);
+		for (int path = 0; path < pathCount; path++) {
+			paths.add(path(path, bubbleStarts, edges));
+		}
+		Stream<String> header = Stream.of("H\tVN:Z:1.0");
+		Stream<String> segments = IntStream.range(0, nodeCount).mapToObj(i -> "S\t" + (i + 1) + '\t' + sequences[i]);
+		Stream<String> links = edges.distinct().mapToObj(SyntheticPangenomeGenerator::link);
+		return Stream.concat(Stream.concat(header, segments), Stream.concat(paths.stream(), links)).iterator();
+	}
+
+	private String sequence(Random random) {
+		int length;
+		if (random.nextDouble() < singleBaseFraction) {
+			length = 1;
+		} else {
+			length = 2 + random.nextInt(maxSequenceLength - 1);
+		}
+		char[] sequence = new char[length];
+		for (int i = 0; i < length; i++) {
+			sequence[i] = NUCLEOTIDES[random.nextInt(NUCLEOTIDES.length)];
+		}
+		return new String(sequence);
+	}
+
+	/**
+	 * Lay out the sites. Node ids start at 1, a bubble site uses two consecutive
+	 * node ids.
+	 * 
+	 * @return for each node id if it is the first allele of a bubble
+	 */
+	private int[] bubbleStarts(Random random) {
+		int[] bubbleStarts = new int[nodeCount + 1];
+		int id = 1;
+		while (id <= nodeCount) {
+			if (id + 1 <= nodeCount && random.nextDouble() < bubbleDensity) {
+				bubbleStarts[id] = 1;
+				id += 2;
+			} else {
+				id++;
+			}
+		}
+		return bubbleStarts;
+	}
+
+	private int siteWidth(int[] bubbleStarts, int id) {
+		return bubbleStarts[id] == 1 ? 2 : 1;
+	}
+
+	private void addBackboneEdges(int[] bubbleStarts, Edges edges) {
+		int id = 1;
+		while (id <= nodeCount) {
+			int width = siteWidth(bubbleStarts, id);
+			int next = id + width;
+			if (next <= nodeCount) {
+				for (int from = id; from < next; from++) {
+					for (int to = next; to < next + siteWidth(bubbleStarts, next); to++) {
+						edges.add(from, false, to, false);
+					}
+				}
+			}
+			id = next;
+		}
+	}
+
+	private String path(int path, int[] bubbleStarts, Edges edges) {
+		Random random = new Random(seed + path + 1);
+		StringBuilder steps = new StringBuilder("P\t").append(pathName(path)).append('\t');
+		int previous = 0;
+		boolean previousReverse = false;
+		int id = 1;
+		while (id <= nodeCount) {
+			int visit = id;
+			if (bubbleStarts[id] == 1 && path != 0 && random.nextBoolean()) {
+				visit = id + 1;
+			}
+			boolean reverse = random.nextDouble() < reverseStepFraction;
+			if (previous != 0) {
+				steps.append(',');
+				edges.add(previous, previousReverse, visit, reverse);
+			}
+			steps.append(visit).append(reverse ? '-' : '+');
+			previous = visit;
+			previousReverse = reverse;
+			id += siteWidth(bubbleStarts, id);
+		}
+		return steps.append("\t*").toString();
+	}
+
+	private static String link(long edge) {
+		int left = (int) (edge >>> 33);
+		boolean leftReverse = ((edge >>> 32) & 1) == 1;
+		int right = (int) ((edge & 0xFFFF_FFFFL) >>> 1);
+		boolean rightReverse = (edge & 1) == 1;
+		return "L\t" + left + '\t' + (leftReverse ? '-' : '+') + '\t' + right + '\t' + (rightReverse ? '-' : '+')
+				+ "\t0M";
+	}
+
+	/**
+	 * Edges packed into a long, the left node id and strand in the upper 32 bits
+	 * and the right in the lower. Avoids boxing millions of edges.
+	 */
+	private static class Edges {
+		private long[] edges = new long[1024];
+		private int size = 0;
+
+		void add(int left, boolean leftReverse, int right, boolean rightReverse) {
+			if (size == edges.length) {
+				edges = Arrays.copyOf(edges, edges.length * 2);
+			}
+			long l = ((long) left << 1) | (leftReverse ? 1 : 0);
+			long r = ((long) right << 1) | (rightReverse ? 1 : 0);
+			edges[size++] = (l << 32) | r;
+		}
+
+		LongStream distinct() {
+			long[] sorted = Arrays.copyOf(edges, size);
+			Arrays.sort(sorted);
+			int unique = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (i == 0 || sorted[i] != sorted[i - 1]) {
+					sorted[unique++] = sorted[i];
+				}
+			}
+			return Arrays.stream(sorted, 0, unique);
+		}
+	}
+}
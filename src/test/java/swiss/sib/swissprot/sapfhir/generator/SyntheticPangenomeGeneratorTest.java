@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SyntheticPangenomeGeneratorTest {
+
+	@Test
+	public void testSameSeedSameGraph() {
+		var generator = new SyntheticPangenomeGenerator(7, 1000, 0.5, 10, 0.4, 3, 0.1);
+		assertEquals(lines(generator), lines(generator));
+		var otherSeed = new SyntheticPangenomeGenerator(8, 1000, 0.5, 10, 0.4, 3, 0.1);
+		assertNotEquals(lines(generator), lines(otherSeed));
+	}
+
+	@Test
+	public void testBuild() {
+		var generator = new SyntheticPangenomeGenerator(7, 1000, 0.5, 10, 0.4, 3, 0.1);
+		SimplePathGraph graph = generator.build();
+		assertEquals(1000, graph.nodeCount());
+		assertEquals(3, graph.pathCount());
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(graph.pathByName(SyntheticPangenomeGenerator.pathName(i)));
+		}
+		assertEquals("sample1#1#chr1", SyntheticPangenomeGenerator.pathName(2));
+	}
+
+	@Test
+	public void testReverseSteps() {
+		var forwardOnly = new SyntheticPangenomeGenerator(7, 1000, 0.5, 10, 0.4, 2, 0);
+		assertTrue(lines(forwardOnly).stream().filter(l -> l.startsWith("P\t")).noneMatch(l -> l.contains("-")));
+		var reverse = new SyntheticPangenomeGenerator(7, 1000, 0.5, 10, 0.4, 2, 0.5);
+		assertTrue(lines(reverse).stream().filter(l -> l.startsWith("P\t")).allMatch(l -> l.contains("-")));
+	}
+
+	private static List<String> lines(SyntheticPangenomeGenerator generator) {
+		List<String> lines = new ArrayList<>();
+		generator.gfa().forEachRemaining(lines::add);
+		return lines;
+	}
+}
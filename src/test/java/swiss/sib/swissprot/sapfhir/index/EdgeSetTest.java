@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleEdgeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class EdgeSetTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(2000).build();
+
+	@Test
+	public void testContainsEveryEdge() {
+		EdgeSet edgeSet = EdgeSet.build(graph);
+		Set<List<Long>> edges = new HashSet<>();
+		try (AutoClosedIterator<SimpleEdgeHandle> iter = graph.edges()) {
+			while (iter.hasNext()) {
+				SimpleEdgeHandle edge = iter.next();
+				long left = graph.asLong(edge.left());
+				long right = graph.asLong(edge.right());
+				edges.add(List.of(left, right));
+				assertTrue(edgeSet.contains(left, right));
+			}
+		}
+		assertEquals(edges.size(), edgeSet.size());
+		for (List<Long> edge : edges) {
+			if (!edges.contains(List.of(edge.get(1), edge.get(0)))) {
+				assertFalse(edgeSet.contains(edge.get(1), edge.get(0)));
+			}
+		}
+	}
+
+	@Test
+	public void testFits() {
+		assertTrue(EdgeSet.fits(graph.edgeCount()));
+		assertFalse(EdgeSet.fits(Long.MAX_VALUE));
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleStepHandle;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class NodeStepIndexTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(2000).build();
+
+	@Test
+	public void testStepsOfEveryNode() {
+		assertStepsOfEveryNode(NodeStepIndex.build(graph));
+	}
+
+	@Test
+	public void testStepsAcrossPages() {
+		// 16 byte pages, so that the steps of many nodes cross a page boundary
+		assertStepsOfEveryNode(NodeStepIndex.build(graph, 4));
+	}
+
+	private void assertStepsOfEveryNode(NodeStepIndex<SimplePathHandle> index) {
+		Map<Long, List<String>> forward = new HashMap<>();
+		Map<Long, List<String>> reverse = new HashMap<>();
+		try (AutoClosedIterator<SimplePathHandle> paths = graph.paths()) {
+			while (paths.hasNext()) {
+				SimplePathHandle path = paths.next();
+				try (AutoClosedIterator<SimpleStepHandle> steps = graph.stepsOf(path)) {
+					while (steps.hasNext()) {
+						SimpleStepHandle step = steps.next();
+						SimpleNodeHandle node = graph.nodeOfStep(step);
+						var strand = graph.isReverseNodeHandle(node) ? reverse : forward;
+						strand.computeIfAbsent(Math.abs(node.id()), k -> new ArrayList<>())
+								.add(graph.nameOfPath(path) + '/' + graph.rankOfStep(step));
+					}
+				}
+			}
+		}
+		try (AutoClosedIterator<SimpleNodeHandle> nodes = graph.nodes()) {
+			while (nodes.hasNext()) {
+				long id = nodes.next().id();
+				assertSteps(forward.getOrDefault(id, List.of()), index, id, false);
+				assertSteps(reverse.getOrDefault(id, List.of()), index, id, true);
+			}
+		}
+		assertEquals(0, index.stepCount(Long.MAX_VALUE, false));
+		assertTrue(!index.steps(Long.MAX_VALUE, true, (p, r) -> r).hasNext());
+	}
+
+	private void assertSteps(List<String> expected, NodeStepIndex<SimplePathHandle> index, long id,
+			boolean reverse) {
+		assertEquals(expected.size(), index.stepCount(id, reverse));
+		List<String> found = new ArrayList<>();
+		try (AutoClosedIterator<String> steps = index.steps(id, reverse,
+				(path, rank) -> graph.nameOfPath(path) + '/' + rank)) {
+			while (steps.hasNext()) {
+				found.add(steps.next());
+			}
+		}
+		assertEquals(expected, found);
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.jervenbolleman.handlegraph4j.NodeSequence;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SequenceHashIndexTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(2000).build();
+
+	@Test
+	public void testInMemory() {
+		assertFindsEveryNode(SequenceHashIndex.build(graph));
+	}
+
+	@Test
+	public void testMemoryMapped(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("sequence-hashes.idx");
+		assertFindsEveryNode(SequenceHashIndex.buildOrLoad(graph, file));
+		long written = file.toFile().lastModified();
+		// The second time the file is only mapped
+		assertFindsEveryNode(SequenceHashIndex.buildOrLoad(graph, file));
+		assertEquals(written, file.toFile().lastModified());
+	}
+
+	@Test
+	public void testHashIgnoresCase() {
+		assertEquals(SequenceHashIndex.hash("ACGTN"), SequenceHashIndex.hash("acgtn"));
+		assertTrue(SequenceHashIndex.hash("ACGT") != SequenceHashIndex.hash("ACGA"));
+	}
+
+	private void assertFindsEveryNode(SequenceHashIndex index) {
+		assertEquals(graph.nodeCount(), index.size());
+		try (AutoClosedIterator<NodeSequence<SimpleNodeHandle>> nodes = graph.nodesWithTheirSequence()) {
+			while (nodes.hasNext()) {
+				NodeSequence<SimpleNodeHandle> ns = nodes.next();
+				long id = graph.asLong(ns.node());
+				long hash = SequenceHashIndex.hash(ns.sequence());
+				String label = ns.sequence().asString();
+				assertEquals(hash, SequenceHashIndex.hash(label.toLowerCase(Locale.ROOT)));
+				long[] ids = index.nodeIds(hash);
+				assertEquals(ids.length, index.count(hash));
+				assertTrue(Arrays.stream(ids).anyMatch(i -> i == id));
+			}
+		}
+	}
+}
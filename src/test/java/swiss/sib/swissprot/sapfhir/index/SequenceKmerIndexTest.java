@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.jervenbolleman.handlegraph4j.NodeSequence;
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SequenceKmerIndexTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(2000).build();
+
+	@Test
+	public void testInMemory() {
+		assertCandidates(SequenceKmerIndex.build(graph));
+	}
+
+	@Test
+	public void testMemoryMapped(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("sequences.idx");
+		assertCandidates(SequenceKmerIndex.buildOrLoad(graph, file));
+		long written = file.toFile().lastModified();
+		// The second time the file is only mapped
+		assertCandidates(SequenceKmerIndex.buildOrLoad(graph, file));
+		assertEquals(written, file.toFile().lastModified());
+	}
+
+	@Test
+	public void testTooShort() {
+		SequenceKmerIndex index = SequenceKmerIndex.build(graph);
+		assertNull(index.candidates("ACGT"));
+		assertNull(index.candidates("NNNNNNNNNN"));
+	}
+
+	private void assertCandidates(SequenceKmerIndex index) {
+		try (AutoClosedIterator<NodeSequence<SimpleNodeHandle>> nodes = graph.nodesWithTheirSequence()) {
+			while (nodes.hasNext()) {
+				NodeSequence<SimpleNodeHandle> ns = nodes.next();
+				String sequence = ns.sequence().asString();
+				if (sequence.length() < 12) {
+					continue;
+				}
+				long id = graph.asLong(ns.node());
+				String fragment = sequence.substring(2, 12);
+				assertContains(index.candidates(fragment), id);
+				// Case is ignored
+				assertContains(index.candidates(fragment.toLowerCase(Locale.ROOT)), id);
+				assertContains(index.candidates(fragment.toUpperCase(Locale.ROOT)), id);
+			}
+		}
+	}
+
+	private static void assertContains(long[] candidates, long id) {
+		assertNotNull(candidates);
+		assertTrue(Arrays.stream(candidates).anyMatch(c -> c == id));
+	}
+}
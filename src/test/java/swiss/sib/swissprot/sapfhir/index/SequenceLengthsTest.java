@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SequenceLengthsTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(2000).build();
+
+	@Test
+	public void testLengths() {
+		SequenceLengths lengths = SequenceLengths.build(graph);
+		Map<Integer, Integer> histogram = new HashMap<>();
+		try (AutoClosedIterator<SimpleNodeHandle> nodes = graph.nodes()) {
+			while (nodes.hasNext()) {
+				histogram.merge(graph.sequenceLengthOf(nodes.next()), 1, Integer::sum);
+			}
+		}
+		assertEquals(graph.nodeCount(), lengths.size());
+		assertEquals(graph.nodeCount(), lengths.count(0, Long.MAX_VALUE));
+		for (Map.Entry<Integer, Integer> entry : histogram.entrySet()) {
+			int length = entry.getKey();
+			assertEquals(entry.getValue().intValue(), lengths.count(length, length + 1));
+			lengths.nodeIds(length, length + 1)
+					.forEach(id -> assertEquals(length, graph.sequenceLengthOf(graph.fromLong(id))));
+		}
+		long[] shortest = lengths.nodeIds(0, 2).toArray();
+		for (long id : shortest) {
+			assertTrue(graph.sequenceLengthOf(graph.fromLong(id)) < 2);
+		}
+		assertEquals(0, lengths.count(5, 5));
+		assertEquals(0, lengths.nodeIds(5, 3).count());
+	}
+
+	@Test
+	public void testContains() {
+		SequenceLengths lengths = SequenceLengths.build(graph);
+		long last = Long.MIN_VALUE;
+		try (AutoClosedIterator<SimpleNodeHandle> nodes = graph.nodes()) {
+			while (nodes.hasNext()) {
+				long id = graph.asLong(nodes.next());
+				assertTrue(lengths.contains(id));
+				last = Math.max(last, id);
+			}
+		}
+		assertFalse(lengths.contains(last + 1));
+		assertFalse(lengths.contains(Long.MIN_VALUE));
+	}
+}
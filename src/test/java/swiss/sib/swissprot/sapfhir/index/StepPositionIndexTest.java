@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleStepHandle;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class StepPositionIndexTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(2000).build();
+
+	@Test
+	public void testInMemory() {
+		assertPositions(StepPositionIndex.build(graph));
+	}
+
+	@Test
+	public void testMemoryMapped(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("positions.idx");
+		assertPositions(StepPositionIndex.buildOrLoad(graph, file));
+		long written = file.toFile().lastModified();
+		// The second time the file is only mapped
+		assertPositions(StepPositionIndex.buildOrLoad(graph, file));
+		assertEquals(written, file.toFile().lastModified());
+	}
+
+	@Test
+	public void testClose(@TempDir Path dir) throws IOException {
+		StepPositionIndex<SimplePathHandle> index = StepPositionIndex.buildOrLoad(graph, dir.resolve("positions.idx"));
+		index.close();
+		try (AutoClosedIterator<SimplePathHandle> paths = graph.paths()) {
+			while (paths.hasNext()) {
+				assertFalse(index.contains(paths.next()));
+			}
+		}
+	}
+
+	private void assertPositions(StepPositionIndex<SimplePathHandle> index) {
+		try (AutoClosedIterator<SimplePathHandle> paths = graph.paths()) {
+			while (paths.hasNext()) {
+				SimplePathHandle path = paths.next();
+				assertTrue(index.contains(path));
+				long rank = 0;
+				long last = -1;
+				try (AutoClosedIterator<SimpleStepHandle> steps = graph.stepsOf(path)) {
+					while (steps.hasNext()) {
+						SimpleStepHandle step = steps.next();
+						long begin = graph.beginPositionOfStep(step);
+						long end = graph.endPositionOfStep(step);
+						assertEquals(begin, index.beginPosition(path, rank));
+						assertEquals(end, index.endPosition(path, rank));
+						assertEquals(rank, index.rankByBeginPosition(path, begin));
+						assertEquals(rank, index.rankByEndPosition(path, end));
+						assertEquals(-1, index.rankByBeginPosition(path, begin + 1));
+						last = end;
+						rank++;
+					}
+				}
+				assertEquals(rank, index.stepCount(path));
+				assertEquals(-1, index.rankByEndPosition(path, last + 1));
+			}
+		}
+	}
+}
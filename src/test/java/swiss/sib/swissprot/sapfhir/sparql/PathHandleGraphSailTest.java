@@ -23,17 +23,28 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.XSD;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.MalformedQueryException;
@@ -41,6 +52,7 @@ import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.explanation.Explanation;
 import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
 import org.eclipse.rdf4j.query.parser.ParsedQuery;
 import org.eclipse.rdf4j.query.parser.sparql.SPARQLParser;
@@ -49,6 +61,7 @@ import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
 import org.eclipse.rdf4j.sail.SailConnection;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.github.jervenbolleman.handlegraph4j.gfa1.GFA1Reader;
 import swiss.sib.swissprot.handlegraph4j.simple.SimpleEdgeHandle;
@@ -59,10 +72,19 @@ import swiss.sib.swissprot.handlegraph4j.simple.SimpleStepHandle;
 import swiss.sib.swissprot.handlegraph4j.simple.builders.SimplePathGraphFromGFA1Builder;
 import swiss.sib.swissprot.handlegraph4jrdf.FALDO;
 import swiss.sib.swissprot.handlegraph4jrdf.VG;
+import swiss.sib.swissprot.sapfhir.sparql.DecodedIri.Kind;
+import swiss.sib.swissprot.sapfhir.statements.AccessCosts;
+import swiss.sib.swissprot.sapfhir.statements.AccessPath;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics;
+import swiss.sib.swissprot.sapfhir.statements.GraphStatistics.Schema;
+import swiss.sib.swissprot.sapfhir.statements.StarPattern;
 import swiss.sib.swissprot.sapfhir.values.HandleGraphValueFactory;
+import swiss.sib.swissprot.sapfhir.values.NodeIRI;
+import swiss.sib.swissprot.sapfhir.values.PathIRI;
 import swiss.sib.swissprot.sapfhir.values.StepBeginPositionIRI;
 import swiss.sib.swissprot.sapfhir.values.StepEndPositionIRI;
 import swiss.sib.swissprot.sapfhir.values.StepIRI;
+import swiss.sib.swissprot.sapfhir.values.StepPositionIRI;
 
 /**
  *
@@ -220,6 +242,61 @@ public class PathHandleGraphSailTest {
 		assertEquals(new SimpleStepHandle(path.id(), node.id(), 0l), result);
 	}
 
+	/**
+	 * Test of decodeIri method, of class PathHandleGraphSail.
+	 */
+	@Test
+	public void testDecodeIri() {
+		var instance = getPathHandleGraphSail();
+		SimplePathHandle path = new SimplePathHandle(1);
+		assertEquals(new DecodedIri<>(Kind.NODE, null, 12), instance.decodeIri(EXAMPLE_BASE + "node/12"));
+		assertEquals(new DecodedIri<>(Kind.PATH, path, 0), instance.decodeIri(EXAMPLE_BASE + "path/x"));
+		assertEquals(new DecodedIri<>(Kind.STEP, path, 3), instance.decodeIri(EXAMPLE_BASE + "path/x/step/3"));
+		assertEquals(new DecodedIri<>(Kind.POSITION, path, 9),
+				instance.decodeIri(EXAMPLE_BASE + "path/x/position/9"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "node/"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "node/012"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "node/-1"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "path/y"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "path/x/step/"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "path/x/step/3a"));
+		assertNull(instance.decodeIri("http://example.org/other/node/1"));
+		// Ids up to the largest long, but no more
+		assertEquals(new DecodedIri<>(Kind.NODE, null, Long.MAX_VALUE),
+				instance.decodeIri(EXAMPLE_BASE + "node/" + Long.MAX_VALUE));
+		assertEquals(new DecodedIri<>(Kind.STEP, path, Long.MAX_VALUE),
+				instance.decodeIri(EXAMPLE_BASE + "path/x/step/" + Long.MAX_VALUE));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "node/9223372036854775808"));
+		assertNull(instance.decodeIri(EXAMPLE_BASE + "node/10000000000000000000"));
+
+		StepPositionIRI<SimplePathHandle, SimpleStepHandle> begin = instance
+				.stepPositionFromIriString(EXAMPLE_BASE + "path/x/position/0");
+		assertTrue(begin instanceof StepBeginPositionIRI);
+		assertEquals(0, begin.rank());
+	}
+
+	/**
+	 * The hashes and equality of our IRIs must match those of a plain IRI with the
+	 * same string value.
+	 */
+	@Test
+	public void testIriHashesMatchStrings() {
+		var instance = getPathHandleGraphSail();
+		SimplePathHandle path = new SimplePathHandle(1);
+		IRI[] iris = { new NodeIRI<>(12, instance), new PathIRI<>(path, instance),
+				new StepIRI<>(path, 3, instance), new StepBeginPositionIRI<>(path, 3, instance),
+				new StepEndPositionIRI<>(path, 3, instance) };
+		for (IRI iri : iris) {
+			IRI plain = SimpleValueFactory.getInstance().createIRI(iri.stringValue());
+			assertEquals(plain.hashCode(), iri.hashCode(), iri.stringValue());
+			assertTrue(iri.equals(plain), iri.stringValue());
+			assertTrue(plain.equals(iri), iri.stringValue());
+			assertEquals(iri.stringValue(), iri.getNamespace() + iri.getLocalName());
+		}
+		assertEquals(EXAMPLE_BASE + "path/x/step/3", iris[2].stringValue());
+		assertEquals(iris[2], instance.getValueFactory().createIRI(EXAMPLE_BASE + "path/x/step/3"));
+	}
+
 //    /**
 //     * Test of extractPath method, of class PathHandleGraphSail.
 //     */
@@ -384,6 +461,17 @@ public class PathHandleGraphSailTest {
 		}
 	}
 
+	@Test
+	public void testExplainOptimized() {
+		SailRepository instance = getSailRepository();
+		String steps = "SELECT ?step ?rank WHERE {?step a vg:Step ; vg:rank ?rank}";
+		try (RepositoryConnection connection = instance.getConnection()) {
+			Explanation explanation = prepareQuery(connection, steps).explain(Explanation.Level.Optimized);
+			assertNotNull(explanation);
+			assertTrue(explanation.toString().contains("StatementPattern"), explanation.toString());
+		}
+	}
+
 	@Test
 	public void testAllQueries() {
 		SailRepository instance = getSailRepository();
@@ -457,6 +545,62 @@ public class PathHandleGraphSailTest {
 		}
 	}
 
+	@Test
+	public void testPositionRangeQueries() {
+		SailRepository instance = getSailRepository();
+		String inRange = "SELECT ?pos WHERE {?p faldo:position ?pos ; faldo:reference <" + EXAMPLE_BASE
+				+ "path/x> . FILTER(?pos >= 10 && ?pos < 30)}";
+		Consumer<TupleQueryResult> test = r -> {
+			int count = 0;
+			while (r.hasNext()) {
+				long pos = ((Literal) r.next().getValue("pos")).longValue();
+				assertTrue(pos >= 10 && pos < 30, "at pos:" + pos);
+				count++;
+			}
+			// Steps begin at 0, 9, 11, 13, 17, 19 and end at 8, 10, 12, 16, 18, 38
+			assertEquals(8, count);
+		};
+		try (RepositoryConnection connection = instance.getConnection()) {
+			evaluate(inRange, connection, test);
+		}
+	}
+
+	@Test
+	public void testPathRestrictedQueries() {
+		SailRepository instance = getSailRepository();
+		String steps = "SELECT ?s WHERE {?s vg:path <" + EXAMPLE_BASE + "path/x>}";
+		String positions = "SELECT ?p WHERE {?p faldo:reference <" + EXAMPLE_BASE + "path/x>}";
+		try (RepositoryConnection connection = instance.getConnection()) {
+			evaluate(steps, connection, r -> assertEquals(11, r.stream().count()));
+			evaluate(positions, connection, r -> assertEquals(22, r.stream().count()));
+		}
+	}
+
+	@Test
+	public void testRankRangeQueries() {
+		SailRepository instance = getSailRepository();
+		String firstSteps = "SELECT ?s ?rank WHERE {?s vg:rank ?rank ; vg:path <" + EXAMPLE_BASE
+				+ "path/x> . FILTER(?rank < 3)}";
+		String lastSteps = "SELECT ?s ?rank WHERE {?s vg:rank ?rank . FILTER(?rank >= 9)}";
+		String oneRank = "SELECT ?s WHERE {?s vg:rank \"4\"^^xsd:long}";
+		Consumer<TupleQueryResult> test = r -> {
+			int count = 0;
+			while (r.hasNext()) {
+				BindingSet next = r.next();
+				assertTrue(next.getValue("s") instanceof StepIRI);
+				assertTrue(((Literal) next.getValue("rank")).longValue() < 3);
+				count++;
+			}
+			assertEquals(3, count);
+		};
+		try (RepositoryConnection connection = instance.getConnection()) {
+			evaluate(firstSteps, connection, test);
+			evaluate(lastSteps, connection, r -> assertEquals(2, r.stream().count()));
+			evaluate("PREFIX xsd:<" + XSD.NAMESPACE + "> " + oneRank, connection,
+					r -> assertEquals(1, r.stream().count()));
+		}
+	}
+
 	@Test
 	public void testStepEndQueries() {
 		SailRepository instance = getSailRepository();
@@ -543,7 +687,8 @@ public class PathHandleGraphSailTest {
 	@Test
 	public void testNodeLinks() {
 		SailRepository instance = getSailRepository();
-		Map<IRI, Integer> expected = Map.of(instance.getValueFactory().createIRI(EXAMPLE_BASE, "path/x/step/6"), 3, instance.getValueFactory().createIRI(EXAMPLE_BASE, "path/x/step/2"), 3);
+		// step 6 is node 11 -> 12 -> 13 and 14, step 2 is node 5 -> 6 -> 7 and 8
+		Map<IRI, Integer> expected = Map.of(instance.getValueFactory().createIRI(EXAMPLE_BASE, "path/x/step/6"), 2, instance.getValueFactory().createIRI(EXAMPLE_BASE, "path/x/step/2"), 2);
 		String nodeLinks = "SELECT ?step (COUNT(?node2) AS ?olinks) (COUNT(?node3) AS ?ilinks) WHERE { ?step vg:node ?node . ?node vg:links ?node2 . ?node2 vg:links ?node3 . } GROUP BY ?step ORDER BY ?step";
 
 		Consumer<TupleQueryResult> test = r -> {
@@ -568,6 +713,178 @@ public class PathHandleGraphSailTest {
 		}
 	}
 
+	@Test
+	public void testLinksToNode() {
+		SailRepository instance = getSailRepository();
+		String linksTo = "SELECT ?node WHERE { ?node vg:linksForwardToForward <" + EXAMPLE_BASE + "node/12> }";
+		String noneTo = "SELECT ?node WHERE { ?node vg:linksReverseToReverse <" + EXAMPLE_BASE + "node/12> }";
+		Set<Value> expected = Set.of(instance.getValueFactory().createIRI(EXAMPLE_BASE, "node/10"),
+				instance.getValueFactory().createIRI(EXAMPLE_BASE, "node/11"));
+		try (RepositoryConnection connection = instance.getConnection()) {
+			evaluate(linksTo, connection, r -> assertEquals(expected,
+					r.stream().map(b -> b.getValue("node")).collect(Collectors.toSet())));
+			evaluate(noneTo, connection, r -> assertFalse(r.hasNext()));
+		}
+	}
+
+	@Test
+	public void testSequenceFragmentQueries(@TempDir Path dir) {
+		var sail = getPathHandleGraphSail();
+		sail.setSequenceIndexFile(dir.resolve("sequences.idx"));
+		SailRepository indexed = new SailRepository(sail);
+		String contains = "SELECT ?node WHERE { ?node rdf:value ?seq . FILTER(REGEX(?seq, \"ttttctgg\", \"i\")) }";
+		String endsWith = "SELECT ?node WHERE { ?node rdf:value ?seq . FILTER(REGEX(?seq, \"ccaactctctg$\", \"i\")) }";
+		String tooShort = "SELECT ?node WHERE { ?node rdf:value ?seq . FILTER(REGEX(?seq, \"ttg\", \"i\")) }";
+		for (SailRepository instance : List.of(getSailRepository(), indexed)) {
+			try (RepositoryConnection connection = instance.getConnection()) {
+				evaluate(contains, connection, r -> assertEquals(
+						Set.of(instance.getValueFactory().createIRI(EXAMPLE_BASE, "node/9")),
+						r.stream().map(b -> b.getValue("node")).collect(Collectors.toSet())));
+				evaluate(endsWith, connection, r -> assertEquals(
+						Set.of(instance.getValueFactory().createIRI(EXAMPLE_BASE, "node/15")),
+						r.stream().map(b -> b.getValue("node")).collect(Collectors.toSet())));
+				// Too short for the index, still answered by the filter
+				evaluate(tooShort, connection, r -> assertEquals(
+						Set.of(instance.getValueFactory().createIRI(EXAMPLE_BASE, "node/6")),
+						r.stream().map(b -> b.getValue("node")).collect(Collectors.toSet())));
+			}
+		}
+	}
+
+	@Test
+	public void testSequenceLengthQueries() {
+		SailRepository instance = getSailRepository();
+		String singleBase = "SELECT ?node WHERE { ?node rdf:value ?seq . FILTER(strlen(?seq) = 1) }";
+		String longer = "SELECT ?node ?seq WHERE { ?node rdf:value ?seq . FILTER(strlen(?seq) > 3 && strlen(?seq) <= 11) }";
+		String bound = "SELECT ?node ?seq WHERE { VALUES ?node { <" + EXAMPLE_BASE + "node/1> <" + EXAMPLE_BASE
+				+ "node/999> } ?node rdf:value ?seq . FILTER(strlen(?seq) > 3 && strlen(?seq) <= 11) }";
+		Consumer<TupleQueryResult> test = r -> {
+			int count = 0;
+			while (r.hasNext()) {
+				int length = r.next().getValue("seq").stringValue().length();
+				assertTrue(length > 3 && length <= 11, "length:" + length);
+				count++;
+			}
+			// Nodes 1, 12 and 15
+			assertEquals(3, count);
+		};
+		try (RepositoryConnection connection = instance.getConnection()) {
+			evaluate(singleBase, connection, r -> assertEquals(10, r.stream().count()));
+			evaluate(longer, connection, test);
+			// Node 999 is not in the graph
+			evaluate(bound, connection, r -> assertEquals(1, r.stream().count()));
+		}
+	}
+
+	@Test
+	public void testGraphStatistics(@TempDir Path dir) {
+		var sail = getPathHandleGraphSail();
+		Path file = dir.resolve("statistics");
+		sail.setStatisticsFile(file);
+		GraphStatistics statistics = sail.statistics();
+		assertNotNull(statistics);
+		assertEquals(11, statistics.stepCount("x").longValue());
+		assertNull(statistics.stepCount("y"));
+		assertEquals(15, statistics.sequenceLengths().count(0, Integer.MAX_VALUE));
+		assertEquals(10, statistics.sequenceLengths().count(1, 2));
+		SailRepository instance = new SailRepository(sail);
+		try (RepositoryConnection connection = instance.getConnection()) {
+			for (IRI predicate : List.of(RDF.TYPE, RDF.VALUE, RDFS.LABEL, VG.links, VG.linksForwardToForward, VG.node,
+					VG.rank, VG.path, FALDO.begin, FALDO.position, FALDO.reference)) {
+				long counted = Arrays.stream(Schema.values()).mapToLong(s -> statistics.predicateCount(s, predicate))
+						.sum();
+				evaluate("SELECT (COUNT(*) AS ?c) WHERE { ?s <" + predicate + "> ?o }", connection,
+						r -> assertEquals(((Literal) r.next().getValue("c")).longValue(), counted,
+								predicate.stringValue()));
+			}
+			evaluate("SELECT ?node WHERE { ?node rdf:value ?seq . FILTER(strlen(?seq) = 1) }", connection,
+					r -> assertEquals(10, r.stream().count()));
+		}
+		// The second sail reads the file instead of computing the statistics again
+		var loaded = getPathHandleGraphSail();
+		loaded.setStatisticsFile(file);
+		for (Schema schema : Schema.values()) {
+			assertEquals(statistics.predicateCount(schema, null), loaded.statistics().predicateCount(schema, null));
+		}
+		assertEquals(statistics.degrees().mean(), loaded.statistics().degrees().mean());
+		assertEquals(11, loaded.statistics().stepCount("x").longValue());
+	}
+
+	@Test
+	public void testExactEstimatesForOwnValues() {
+		var sail = getPathHandleGraphSail();
+		var ts = new PathHandleGraphTripleSource<>(sail);
+		ValueFactory vf = sail.getValueFactory();
+		IRI step = vf.createIRI(EXAMPLE_BASE, "path/x/step/3");
+		IRI node = vf.createIRI(EXAMPLE_BASE, "node/9");
+		IRI path = vf.createIRI(EXAMPLE_BASE, "path/x");
+		IRI position = vf.createIRI(EXAMPLE_BASE, "path/x/position/13");
+		assertEquals(1, ts.estimateCardinality(step, VG.node, null));
+		assertEquals(2, ts.estimateCardinality(step, RDF.TYPE, null));
+		assertEquals(0, ts.estimateCardinality(step, RDFS.LABEL, null));
+		// Node 9 links to 10 and 11, and is linked to from 7 and 8
+		assertEquals(2, ts.estimateCardinality(node, VG.links, null));
+		assertEquals(2, ts.estimateCardinality(null, VG.links, node));
+		// Estimating does not build the node step index, using it does
+		ts.estimateCardinality(null, VG.node, node);
+		assertNull(sail.nodeStepIndexIfBuilt());
+		sail.nodeStepIndex();
+		assertEquals(1, ts.estimateCardinality(null, VG.node, node));
+		assertEquals(11, ts.estimateCardinality(null, VG.path, path));
+		assertEquals(1, ts.estimateCardinality(null, FALDO.begin, position));
+		for (IRI subject : List.of(step, node, path, position)) {
+			long count = 0;
+			try (var statements = ts.getStatements(subject, null, null)) {
+				while (statements.hasNext()) {
+					statements.next();
+					count++;
+				}
+			}
+			assertEquals(count, ts.estimateCardinality(subject, null, null), subject.stringValue());
+		}
+	}
+
+	@Test
+	public void testStarEstimates() {
+		var sail = getPathHandleGraphSail();
+		var ts = new PathHandleGraphTripleSource<>(sail);
+		IRI path = sail.getValueFactory().createIRI(EXAMPLE_BASE, "path/x");
+		StarPattern onPath = new StarPattern(VG.path, path);
+		// Every step has one rank and visits one node
+		assertEquals(11, ts.estimateStarSubjectCount(
+				List.of(onPath, new StarPattern(VG.rank, null), new StarPattern(VG.node, null))));
+		assertEquals(0, ts.estimateStarSubjectCount(
+				List.of(onPath, new StarPattern(VG.node, null), new StarPattern(VG.reverseOfNode, null))));
+		assertEquals(0, ts.estimateStarSubjectCount(List.of(onPath, new StarPattern(RDF.TYPE, VG.Node))));
+		assertEquals(sail.pathGraph().nodeCount(), ts.estimateStarSubjectCount(
+				List.of(new StarPattern(RDF.TYPE, VG.Node), new StarPattern(RDF.VALUE, null))));
+	}
+
+	@Test
+	public void testAccessCosts() {
+		var sail = getPathHandleGraphSail();
+		assertEquals(AccessCosts.UNIFORM, sail.accessCosts());
+		sail.init();
+		try {
+			assertEquals(AccessCosts.UNIFORM, sail.accessCosts());
+			AccessCosts calibrated = AccessCosts.calibrate(sail);
+			assertEquals(1, calibrated.cost(AccessPath.STEP_SCAN));
+			for (AccessPath accessPath : AccessPath.values()) {
+				double cost = calibrated.cost(accessPath);
+				assertTrue(cost >= 1 && cost <= 1000, accessPath.name());
+			}
+			sail.setAccessCosts(calibrated);
+			assertEquals(calibrated, sail.accessCosts());
+			sail.setAccessCosts(AccessCosts.of(Map.of(AccessPath.STEP_LOOKUP, 100d)));
+			var ts = new PathHandleGraphTripleSource<>(sail);
+			IRI step = sail.getValueFactory().createIRI(EXAMPLE_BASE, "path/x/step/3");
+			assertEquals(100, ts.estimateCost(step, VG.node, null));
+			assertEquals(ts.estimateCardinality(null, VG.rank, null), ts.estimateCost(null, VG.rank, null));
+		} finally {
+			sail.shutDown();
+		}
+	}
+
 	private SailRepository getSailRepository() {
 		var pghs = getPathHandleGraphSail();
 		SailRepository instance = new SailRepository(pghs);
@@ -637,4 +954,126 @@ public class PathHandleGraphSailTest {
 
 		}
 	}
+
+	@Test
+	public void testStepStarQuery() {
+		SailRepository instance = getSailRepository();
+		String steps = "SELECT ?step ?rank ?node ?begin WHERE {?step vg:path <" + EXAMPLE_BASE
+				+ "path/x> ; vg:rank ?rank ; vg:node ?node ; faldo:begin/faldo:position ?begin}";
+		Consumer<TupleQueryResult> test = r -> {
+			Set<Long> ranks = new HashSet<>();
+			while (r.hasNext()) {
+				BindingSet next = r.next();
+				StepIRI<?> step = (StepIRI<?>) next.getValue("step");
+				long rank = ((Literal) next.getValue("rank")).longValue();
+				assertEquals(step.rank(), rank);
+				assertTrue(ranks.add(rank));
+				assertTrue(next.getValue("node") instanceof NodeIRI);
+				if (rank == 3) {
+					assertEquals(13, ((Literal) next.getValue("begin")).longValue());
+				}
+			}
+			assertTrue(ranks.contains(3L));
+		};
+		try (RepositoryConnection connection = instance.getConnection()) {
+			String explanation = prepareQuery(connection, steps).explain(Explanation.Level.Optimized).toString();
+			assertTrue(explanation.contains("StepStar"), explanation);
+			evaluate(steps, connection, test);
+		}
+	}
+
+	@Test
+	public void testNodeWithVariablePredicate() {
+		SailRepository instance = getSailRepository();
+		String all = "SELECT * WHERE {<" + EXAMPLE_BASE + "node/1> ?p ?o}";
+		String links = "SELECT * WHERE {<" + EXAMPLE_BASE + "node/1> ?p <" + EXAMPLE_BASE + "node/2>}";
+		try (RepositoryConnection connection = instance.getConnection()) {
+			// The type, the sequence and two edges as vg:links and oriented links
+			evaluate(all, connection, r -> assertEquals(6, r.stream().count()));
+			evaluate(links, connection, r -> assertEquals(Set.of(VG.links, VG.linksForwardToForward),
+					r.stream().map(b -> b.getValue("p")).collect(Collectors.toSet())));
+		}
+	}
+
+	@Test
+	public void testStepWithVariablePredicate() {
+		SailRepository instance = getSailRepository();
+		String step = "<" + EXAMPLE_BASE + "path/x/step/3>";
+		String all = "SELECT * WHERE {" + step + " ?p ?o}";
+		String begin = "SELECT * WHERE {" + step + " ?p <" + EXAMPLE_BASE + "path/x/position/13>}";
+		try (RepositoryConnection connection = instance.getConnection()) {
+			// Two types, the rank, path, node, begin and end
+			evaluate(all, connection, r -> {
+				Map<Value, Value> objects = new HashMap<>();
+				r.stream().filter(b -> !RDF.TYPE.equals(b.getValue("p")))
+						.forEach(b -> objects.put(b.getValue("p"), b.getValue("o")));
+				assertEquals(5, objects.size());
+				assertEquals(EXAMPLE_BASE + "path/x/position/13", objects.get(FALDO.begin).stringValue());
+				assertEquals(EXAMPLE_BASE + "path/x/position/16", objects.get(FALDO.end).stringValue());
+			});
+			evaluate(begin, connection, r -> assertEquals(List.of(FALDO.begin),
+					r.stream().map(b -> b.getValue("p")).collect(Collectors.toList())));
+		}
+	}
+
+	@Test
+	public void testStarWithVariableType() {
+		SailRepository instance = getSailRepository();
+		String labels = "SELECT * WHERE {?path a ?type ; rdfs:label ?label}";
+		String steps = "SELECT * WHERE {?step a ?type ; vg:rank ?rank ; vg:path ?path}";
+		try (RepositoryConnection connection = instance.getConnection()) {
+			evaluate(labels, connection, r -> assertEquals(2, r.stream().count()));
+			// Every step is both a vg:Step and a faldo:Region
+			evaluate(steps, connection, r -> assertEquals(32, r.stream().count()));
+		}
+	}
+
+	@Test
+	public void testNodeStarQuery() {
+		SailRepository instance = getSailRepository();
+		String links = "SELECT ?sequence ?link ?forward WHERE {<" + EXAMPLE_BASE
+				+ "node/9> rdf:value ?sequence ; vg:links ?link ; vg:linksForwardToForward ?forward}";
+		Consumer<TupleQueryResult> test = r -> {
+			Set<String> pairs = new HashSet<>();
+			while (r.hasNext()) {
+				BindingSet next = r.next();
+				assertTrue(next.getValue("sequence") instanceof Literal);
+				pairs.add(next.getValue("link").stringValue() + ' ' + next.getValue("forward").stringValue());
+			}
+			// Every combination of the two links of node 9
+			assertEquals(4, pairs.size());
+			assertTrue(pairs.contains(EXAMPLE_BASE + "node/10 " + EXAMPLE_BASE + "node/11"));
+		};
+		try (RepositoryConnection connection = instance.getConnection()) {
+			String explanation = prepareQuery(connection, links).explain(Explanation.Level.Optimized).toString();
+			assertTrue(explanation.contains("NodeStar"), explanation);
+			evaluate(links, connection, test);
+		}
+	}
+
+	@Test
+	public void testStepWindowQuery() {
+		SailRepository instance = getSailRepository();
+		String pairs = "SELECT ?rank ?next ?end ?begin WHERE {?step vg:path <" + EXAMPLE_BASE
+				+ "path/x> ; vg:rank ?rank ; faldo:end/faldo:position ?end . ?nextStep vg:path <" + EXAMPLE_BASE
+				+ "path/x> ; vg:rank ?next ; faldo:begin/faldo:position ?begin . FILTER(?next = ?rank + 1)}";
+		Consumer<TupleQueryResult> test = r -> {
+			Set<Long> ranks = new HashSet<>();
+			while (r.hasNext()) {
+				BindingSet next = r.next();
+				long rank = ((Literal) next.getValue("rank")).longValue();
+				assertEquals(rank + 1, ((Literal) next.getValue("next")).longValue());
+				assertEquals(((Literal) next.getValue("end")).longValue() + 1,
+						((Literal) next.getValue("begin")).longValue());
+				assertTrue(ranks.add(rank));
+			}
+			// Every step but the last is followed by one
+			assertEquals(10, ranks.size());
+		};
+		try (RepositoryConnection connection = instance.getConnection()) {
+			String explanation = prepareQuery(connection, pairs).explain(Explanation.Level.Optimized).toString();
+			assertTrue(explanation.contains("StepWindow"), explanation);
+			evaluate(pairs, connection, test);
+		}
+	}
 }
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.values;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class IriStringsTest {
+
+	private static final long[] NUMBERS = { 0, 1, 9, 10, 11, 99, 100, 12345, -1, -10, -987, Long.MAX_VALUE,
+			Long.MIN_VALUE };
+
+	@Test
+	public void testHashIsStringHash() {
+		String prefix = "http://example.org/vg/path/x";
+		for (long number : NUMBERS) {
+			String iri = prefix + "/step/" + number;
+			int hash = IriStrings.hash(IriStrings.hash(prefix.hashCode(), "/step/"), number);
+			assertEquals(iri.hashCode(), hash, iri);
+		}
+	}
+
+	@Test
+	public void testEquals() {
+		String prefix = "http://example.org/vg/node/";
+		for (long number : NUMBERS) {
+			String iri = prefix + number;
+			assertTrue(IriStrings.equals(iri, prefix, "", number), iri);
+			assertFalse(IriStrings.equals(iri + '0', prefix, "", number), iri);
+			assertFalse(IriStrings.equals(iri, prefix, "", number == 0 ? 1 : number / 10), iri);
+			assertFalse(IriStrings.equals(iri, prefix, "/step/", number), iri);
+		}
+		assertFalse(IriStrings.equals(prefix, prefix, "", 0));
+	}
+}
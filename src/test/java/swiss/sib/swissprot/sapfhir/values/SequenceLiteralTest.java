@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2024, SIB Swiss Institute of Bioinformatics
+ * and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 3 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 3 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package swiss.sib.swissprot.sapfhir.values;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.jupiter.api.Test;
+
+import io.github.jervenbolleman.handlegraph4j.iterators.AutoClosedIterator;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleEdgeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimpleNodeHandle;
+import swiss.sib.swissprot.handlegraph4j.simple.SimplePathGraph;
+import swiss.sib.swissprot.sapfhir.generator.SyntheticPangenomeGenerator;
+
+/**
+ *
+ * @author <a href="mailto:jerven.bolleman@sib.swiss">Jerven Bolleman</a>
+ */
+public class SequenceLiteralTest {
+
+	private final SimplePathGraph graph = SyntheticPangenomeGenerator.ofSize(200).build();
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testSameAsPlainLiterals() {
+		try (AutoClosedIterator<SimpleNodeHandle> nodes = graph.nodes()) {
+			while (nodes.hasNext()) {
+				SimpleNodeHandle node = nodes.next();
+				var sequence = new SequenceLiteral<SimpleNodeHandle, SimpleEdgeHandle>(graph.sequenceOf(node));
+				var withHandle = new SequenceLiteralWithNodeHandle<>(graph, node);
+				Literal plain = vf.createLiteral(graph.sequenceOf(node).asString());
+				for (Literal literal : new Literal[] { sequence, withHandle }) {
+					assertEquals(plain.hashCode(), literal.hashCode());
+					assertEquals(literal, plain);
+					assertEquals(plain, literal);
+					assertEquals(plain.getLabel(), literal.getLabel());
+					assertNotEquals(literal, vf.createLiteral(plain.getLabel() + "A"));
+					assertNotEquals(literal, vf.createLiteral(plain.getLabel(), "en"));
+				}
+				assertEquals(sequence, withHandle);
+				assertEquals(withHandle, sequence);
+			}
+		}
+	}
+
+	@Test
+	public void testDecodedOnce() {
+		try (AutoClosedIterator<SimpleNodeHandle> nodes = graph.nodes()) {
+			SimpleNodeHandle node = nodes.next();
+			var sequence = new SequenceLiteral<SimpleNodeHandle, SimpleEdgeHandle>(graph.sequenceOf(node));
+			var withHandle = new SequenceLiteralWithNodeHandle<>(graph, node);
+			assertSame(sequence.getLabel(), sequence.getLabel());
+			assertSame(withHandle.getLabel(), withHandle.stringValue());
+			assertSame(withHandle.sequence(), withHandle.sequence());
+			assertFalse(sequence.equals(null));
+		}
+	}
+}